@@ -10,7 +10,9 @@ import android.test.suitebuilder.annotation.LargeTest;
 import com.hrs.filltheformcompanion.ConfigurationStatusIdlingResource;
 import com.hrs.filltheformcompanion.FillTheFormCompanion;
 import com.hrs.filltheformcompanion.FillTheFormCompanionException;
+import com.hrs.filltheformcompanion.FillViewIdlingResource;
 import com.hrs.filltheformcompanion.NumberOfProfilesIdlingResource;
+import com.hrs.filltheformcompanion.ProfileSelectionIdlingResource;
 
 import org.junit.After;
 import org.junit.Before;
@@ -36,6 +38,8 @@ public class MainActivityDynamicTest {
     private FillTheFormCompanion companion;
     private NumberOfProfilesIdlingResource numberOfProfilesIdlingResource;
     private ConfigurationStatusIdlingResource configurationStatusIdlingResource;
+    private ProfileSelectionIdlingResource profileSelectionIdlingResource;
+    private FillViewIdlingResource fillViewIdlingResource;
 
     @Rule
     public ActivityTestRule<MainActivity> mActivityRule = new ActivityTestRule<>(MainActivity.class);
@@ -44,6 +48,8 @@ public class MainActivityDynamicTest {
     public void setUp() throws Exception {
         Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
         companion = new FillTheFormCompanion(context);
+        // Fail fast if FillTheForm service does not reply
+        companion.setIdlingResourceTimeoutMillis(10000);
         registerFillTheFormCompanionIdlingResources();
         companion.configureFillTheForm(FillTheFormCompanion.SOURCE_ASSETS, "sample_app_config.xml");
         // Set FillTheForm to fast mode.
@@ -58,12 +64,15 @@ public class MainActivityDynamicTest {
     private void registerFillTheFormCompanionIdlingResources() {
         configurationStatusIdlingResource = new ConfigurationStatusIdlingResource(companion);
         numberOfProfilesIdlingResource = new NumberOfProfilesIdlingResource(companion);
-        Espresso.registerIdlingResources(configurationStatusIdlingResource, numberOfProfilesIdlingResource);
+        profileSelectionIdlingResource = new ProfileSelectionIdlingResource(companion);
+        fillViewIdlingResource = new FillViewIdlingResource(companion);
+        Espresso.registerIdlingResources(configurationStatusIdlingResource, numberOfProfilesIdlingResource, profileSelectionIdlingResource, fillViewIdlingResource);
     }
 
     @After
     public void unregisterFillTheFormCompanionIdlingResources() {
-        Espresso.unregisterIdlingResources(configurationStatusIdlingResource, numberOfProfilesIdlingResource);
+        Espresso.unregisterIdlingResources(configurationStatusIdlingResource, numberOfProfilesIdlingResource, profileSelectionIdlingResource, fillViewIdlingResource);
+        companion.dumpIdlingResourceWaits();
     }
 
     private void clickOnEveryEditTextField(boolean performLongClickOnFirstField) {
@@ -123,8 +132,23 @@ public class MainActivityDynamicTest {
         companion.clearDialogData();
 
         for (int i = 0; i < numberOfProfiles; i++) {
+            // Jump directly to the profile, every profile could also be tested in a separate shard
+            companion.selectProfile(i);
             clickOnEveryEditTextField(i == 0);
-            companion.selectNextProfile();
+        }
+    }
+
+    @Test
+    public void testWithHeadlessFill() throws FillTheFormCompanionException {
+        String[] viewIds = {"first_name", "last_name", "email", "city", "state", "country", "phone", "zip_code", "comment"};
+        for (String viewId : viewIds) {
+            // Views are filled without showing FillTheForm dialog
+            companion.fillView(viewId);
+            // View related action to wait for the fill result
+            onView(withId(R.id.first_name)).perform(scrollTo());
+            if (!companion.isFillViewSuccessful()) {
+                throw new FillTheFormCompanionException(companion.getFillViewErrorMessage());
+            }
         }
     }
 
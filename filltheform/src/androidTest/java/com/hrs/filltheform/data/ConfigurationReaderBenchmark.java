@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.reader.ConfigurationReader;
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Compares XmlConfigurationFileReader and JsonConfigurationFileReader on identical data.
+ * The results are logged with the ConfigurationReaderBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConfigurationReaderBenchmark {
+
+    private static final String TAG = ConfigurationReaderBenchmark.class.getSimpleName();
+
+    private static final int NUMBER_OF_PROFILES = 20;
+    private static final int NUMBER_OF_IDS = 50;
+    private static final int WARM_UP_RUNS = 3;
+    private static final int MEASURED_RUNS = 15;
+
+    private Context context;
+    private byte[] xmlContent;
+    private byte[] jsonContent;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        StringBuilder xml = new StringBuilder("<fillTheFormConfig>\n<packages>\n<package>com.hrs.filltheformsample</package>\n</packages>\n<profiles>\n");
+        StringBuilder json = new StringBuilder("{\"packages\": [\"com.hrs.filltheformsample\"],\n\"profiles\": {\n");
+        for (int p = 0; p < NUMBER_OF_PROFILES; p++) {
+            xml.append("<profile name=\"Profile ").append(p).append("\">\n");
+            json.append(p == 0 ? "" : ",\n").append("\"Profile ").append(p).append("\": {\n");
+            for (int i = 0; i < NUMBER_OF_IDS; i++) {
+                String id = "view_id_" + i;
+                json.append(i == 0 ? "" : ",\n");
+                if (i % 10 == 0) {
+                    xml.append("<").append(id).append(">\n<value>random_first_name</value>\n<remember_last_entry_for>\n<id>view_id_1</id>\n<id>view_id_2</id>\n</remember_last_entry_for>\n</").append(id).append(">\n");
+                    json.append("\"").append(id).append("\": {\"value\": \"random_first_name\", \"remember_last_entry_for\": [\"view_id_1\", \"view_id_2\"]}");
+                } else if (i % 5 == 0) {
+                    xml.append("<").append(id).append(" label=\"Label ").append(i).append("\">Value ").append(i).append("</").append(id).append(">\n");
+                    json.append("\"").append(id).append("\": {\"value\": \"Value ").append(i).append("\", \"label\": \"Label ").append(i).append("\"}");
+                } else {
+                    xml.append("<").append(id).append(">Value ").append(i).append(" of &device_model;</").append(id).append(">\n");
+                    xml.append("<").append(id).append(">Other value ").append(i).append("</").append(id).append(">\n");
+                    json.append("\"").append(id).append("\": [\"Value ").append(i).append(" of &device_model;\", \"Other value ").append(i).append("\"]");
+                }
+            }
+            xml.append("</profile>\n");
+            json.append("}");
+        }
+        xml.append("</profiles>\n</fillTheFormConfig>\n");
+        json.append("}\n}\n");
+        xmlContent = xml.toString().getBytes(ConfigurationFormat.UTF_8);
+        jsonContent = json.toString().getBytes(ConfigurationFormat.UTF_8);
+    }
+
+    @Test
+    public void testReadersShouldReportIdenticalItems() throws Exception {
+        CollectingListener xmlListener = new CollectingListener();
+        new XmlConfigurationFileReader(context, xmlListener).readConfiguration(new ByteArrayInputStream(xmlContent));
+        CollectingListener jsonListener = new CollectingListener();
+        new JsonConfigurationFileReader(context, jsonListener).readConfiguration(new ByteArrayInputStream(jsonContent));
+
+        assertNull(xmlListener.errorMessage);
+        assertNull(jsonListener.errorMessage);
+        assertEquals(xmlListener.packageNames, jsonListener.packageNames);
+        assertEquals(xmlListener.items.size(), jsonListener.items.size());
+        for (int i = 0; i < xmlListener.items.size(); i++) {
+            ConfigurationItem xmlItem = xmlListener.items.get(i);
+            ConfigurationItem jsonItem = jsonListener.items.get(i);
+            assertEquals(xmlItem.getId(), jsonItem.getId());
+            assertEquals(xmlItem.getProfile(), jsonItem.getProfile());
+            assertEquals(xmlItem.getRawValue(), jsonItem.getRawValue());
+            assertEquals(xmlItem.getRawLabel(), jsonItem.getRawLabel());
+            assertEquals(xmlItem.getRememberLastEntryForIds(), jsonItem.getRememberLastEntryForIds());
+        }
+    }
+
+    @Test
+    public void benchmarkReaders() throws Exception {
+        long xmlMedian = measure(xmlContent, false);
+        long jsonMedian = measure(jsonContent, true);
+        Log.i(TAG, "Xml: " + xmlContent.length + " bytes, median " + xmlMedian / 1000 + " us");
+        Log.i(TAG, "Json: " + jsonContent.length + " bytes, median " + jsonMedian / 1000 + " us");
+    }
+
+    private long measure(byte[] content, boolean json) {
+        long[] durations = new long[MEASURED_RUNS];
+        for (int run = 0; run < WARM_UP_RUNS + MEASURED_RUNS; run++) {
+            CollectingListener listener = new CollectingListener();
+            ConfigurationReader reader = json ? new JsonConfigurationFileReader(context, listener) : new XmlConfigurationFileReader(context, listener);
+            long startTime = SystemClock.elapsedRealtimeNanos();
+            reader.readConfiguration(new ByteArrayInputStream(content));
+            long duration = SystemClock.elapsedRealtimeNanos() - startTime;
+            assertNull(listener.errorMessage);
+            if (run >= WARM_UP_RUNS) {
+                durations[run - WARM_UP_RUNS] = duration;
+            }
+        }
+        Arrays.sort(durations);
+        return durations[MEASURED_RUNS / 2];
+    }
+
+    private static class CollectingListener implements ConfigurationReaderListener {
+        final List<String> packageNames = new ArrayList<>();
+        final List<ConfigurationItem> items = new ArrayList<>();
+        String errorMessage;
+
+        @Override
+        public void onPackageName(String packageName) {
+            packageNames.add(packageName);
+        }
+
+        @Override
+        public void onConfigurationItem(ConfigurationItem configurationItem) {
+            items.add(configurationItem);
+        }
+
+        @Override
+        public void onReadingCompleted() {
+        }
+
+        @Override
+        public void onReadingFailed(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+    }
+}
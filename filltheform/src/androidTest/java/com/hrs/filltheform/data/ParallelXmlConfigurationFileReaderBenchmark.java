@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.reader.ConfigurationReader;
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Compares ParallelXmlConfigurationFileReader with XmlConfigurationFileReader on a generated configuration larger than 10 MB.
+ * The results are logged with the ParallelXmlConfigurationFileReaderBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParallelXmlConfigurationFileReaderBenchmark {
+
+    private static final String TAG = ParallelXmlConfigurationFileReaderBenchmark.class.getSimpleName();
+
+    private static final int MIN_SIZE_BYTES = 10 * 1024 * 1024;
+    private static final int NUMBER_OF_IDS = 1000;
+    private static final int RUNS = 3;
+
+    private Context context;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        StringBuilder xml = new StringBuilder(MIN_SIZE_BYTES + 1024 * 1024);
+        xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<fillTheFormConfig>\n<packages>\n<package>com.hrs.filltheformsample</package>\n</packages>\n<profiles>\n");
+        for (int p = 0; xml.length() < MIN_SIZE_BYTES; p++) {
+            xml.append("<profile name=\"Profile ").append(p).append("\">\n");
+            for (int i = 0; i < NUMBER_OF_IDS; i++) {
+                xml.append("    <view_id_").append(i).append(" label=\"Label ").append(i).append("\">Value ").append(p).append(" of &device_model;</view_id_").append(i).append(">\n");
+            }
+            xml.append("</profile>\n");
+            // Items without a profile between the profiles must keep their position
+            xml.append("<!-- <profile name=\"commented out\"> --><view_id_0>Item after profile ").append(p).append("</view_id_0>\n");
+        }
+        xml.append("</profiles>\n</fillTheFormConfig>\n");
+        content = xml.toString().getBytes(ConfigurationFormat.UTF_8);
+    }
+
+    @Test
+    public void testParallelReaderShouldReportItemsInDocumentOrder() throws Exception {
+        CollectingListener sequentialListener = new CollectingListener();
+        new XmlConfigurationFileReader(context, sequentialListener).readConfiguration(new ByteArrayInputStream(content));
+        CollectingListener parallelListener = new CollectingListener();
+        new ParallelXmlConfigurationFileReader(context, parallelListener).readConfiguration(new ByteArrayInputStream(content));
+
+        assertTrue(sequentialListener.completed);
+        assertTrue(parallelListener.completed);
+        assertEquals(sequentialListener.events.size(), parallelListener.events.size());
+        for (int i = 0; i < sequentialListener.events.size(); i++) {
+            assertEquals(sequentialListener.events.get(i), parallelListener.events.get(i));
+        }
+    }
+
+    @Test
+    public void benchmarkParallelReader() throws Exception {
+        long sequentialDuration = measure(false);
+        long parallelDuration = measure(true);
+        Log.i(TAG, "Configuration: " + content.length / 1024 + " KB, " + Runtime.getRuntime().availableProcessors() + " cores");
+        Log.i(TAG, "Sequential: best of " + RUNS + " " + sequentialDuration + " ms");
+        Log.i(TAG, "Parallel: best of " + RUNS + " " + parallelDuration + " ms");
+    }
+
+    private long measure(boolean parallel) {
+        long bestDuration = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            CollectingListener listener = new CollectingListener();
+            ConfigurationReader reader = parallel ? new ParallelXmlConfigurationFileReader(context, listener) : new XmlConfigurationFileReader(context, listener);
+            long startTime = SystemClock.elapsedRealtime();
+            reader.readConfiguration(new ByteArrayInputStream(content));
+            bestDuration = Math.min(bestDuration, SystemClock.elapsedRealtime() - startTime);
+            assertTrue(listener.completed);
+        }
+        return bestDuration;
+    }
+
+    private static class CollectingListener implements ConfigurationReaderListener {
+        final List<String> events = new ArrayList<>();
+        boolean completed;
+
+        @Override
+        public void onPackageName(String packageName) {
+            events.add(packageName);
+        }
+
+        @Override
+        public void onConfigurationItem(ConfigurationItem configurationItem) {
+            events.add(configurationItem.getProfile() + "/" + configurationItem.getId() + "=" + configurationItem.getRawValue() + " " + configurationItem.getRawLabel());
+        }
+
+        @Override
+        public void onReadingCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void onReadingFailed(String errorMessage) {
+            completed = false;
+        }
+    }
+}
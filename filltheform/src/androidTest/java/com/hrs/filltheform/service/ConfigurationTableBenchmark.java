@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.util.SimpleArrayMap;
+import android.util.Log;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Measures the heap retained per configuration item by ConfigurationData and by the previous storage,
+ * which kept one ConfigurationItem with its own strings and list for every item.
+ * The results are logged with the ConfigurationTableBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConfigurationTableBenchmark {
+
+    private static final String TAG = ConfigurationTableBenchmark.class.getSimpleName();
+
+    private static final int NUMBER_OF_PROFILES = 2000;
+    private static final int NUMBER_OF_IDS = 50;
+    private static final int NUMBER_OF_ITEMS = NUMBER_OF_PROFILES * NUMBER_OF_IDS;
+
+    @Test
+    public void benchmarkHeapPerItem() throws Exception {
+        long baseline = getUsedMemory();
+        SimpleArrayMap<String, List<ConfigurationItem>> itemLists = buildItemLists();
+        long itemListsBytes = getUsedMemory() - baseline;
+        assertEquals(NUMBER_OF_IDS, itemLists.size());
+        //noinspection UnusedAssignment
+        itemLists = null;
+
+        baseline = getUsedMemory();
+        ConfigurationData data = buildConfigurationData();
+        long tableBytes = getUsedMemory() - baseline;
+        assertEquals(NUMBER_OF_IDS, data.getIdGroups().size());
+        assertEquals(NUMBER_OF_PROFILES, data.getProfiles().size());
+
+        Log.i(TAG, "Item lists: " + itemListsBytes / NUMBER_OF_ITEMS + " bytes per item");
+        Log.i(TAG, "Configuration table: " + tableBytes / NUMBER_OF_ITEMS + " bytes per item");
+    }
+
+    private static SimpleArrayMap<String, List<ConfigurationItem>> buildItemLists() {
+        SimpleArrayMap<String, List<ConfigurationItem>> idGroups = new SimpleArrayMap<>();
+        for (int p = 0; p < NUMBER_OF_PROFILES; p++) {
+            for (int i = 0; i < NUMBER_OF_IDS; i++) {
+                // Every parsed item had its own id and profile strings
+                ConfigurationItem item = new ConfigurationItem("view_id_" + i, "Profile " + p, createValue(p, i));
+                List<ConfigurationItem> list = idGroups.get(item.getId());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    idGroups.put(item.getId(), list);
+                }
+                list.add(item);
+            }
+        }
+        return idGroups;
+    }
+
+    private static ConfigurationData buildConfigurationData() {
+        ConfigurationData.Builder builder = new ConfigurationData.Builder(FillTheFormCompanion.SOURCE_ASSETS, "config.xml");
+        for (int p = 0; p < NUMBER_OF_PROFILES; p++) {
+            for (int i = 0; i < NUMBER_OF_IDS; i++) {
+                builder.addConfigurationItem(new ConfigurationItem("view_id_" + i, "Profile " + p, createValue(p, i)));
+            }
+        }
+        return builder.build();
+    }
+
+    private static String createValue(int profile, int id) {
+        // Most values repeat between the profiles, like in the generated test configurations
+        return id % 5 == 0 ? "random_first_name" : "Value " + id + " " + profile % 10;
+    }
+
+    private static long getUsedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
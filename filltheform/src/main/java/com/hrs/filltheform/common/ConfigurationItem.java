@@ -18,140 +18,155 @@ package com.hrs.filltheform.common;
 import android.support.annotation.NonNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents one configuration item.
+ * Configuration items are immutable and are created with ConfigurationItem.Builder or one of the constructors.
+ * Every item has an identity which is assigned when the item is created, two items are equal only if they have the same identity.
  */
-public class ConfigurationItem {
+public final class ConfigurationItem {
 
-    private String id;
-    private String profile;
-    private String rawValue;
-    private String value;
-    private String label;
-    private List<String> rememberLastEntryForIds = new ArrayList<>();
-    private boolean lastEntryItem;
+    private static final AtomicInteger nextIdentity = new AtomicInteger();
+
+    private final int identity;
+    private final String id;
+    private final String profile;
+    private final String rawValue;
+    private final String label;
+    private final List<String> rememberLastEntryForIds;
 
     public ConfigurationItem(String id, String profile) {
-        this.id = id;
-        this.profile = profile;
+        this(id, profile, null);
     }
 
     public ConfigurationItem(String id, String profile, String rawValue) {
+        this(nextIdentity.getAndIncrement(), id, profile, rawValue, null, Collections.<String>emptyList());
+    }
+
+    private ConfigurationItem(int identity, String id, String profile, String rawValue, String label, List<String> rememberLastEntryForIds) {
+        this.identity = identity;
         this.id = id;
         this.profile = profile;
         this.rawValue = rawValue;
+        this.label = label;
+        this.rememberLastEntryForIds = rememberLastEntryForIds;
     }
 
-    public ConfigurationItem(@NonNull ConfigurationItem configurationItem) {
-        //noinspection ConstantConditions
-        if (configurationItem != null) {
-            this.id = configurationItem.id;
-            this.profile = configurationItem.profile;
-            this.rawValue = configurationItem.getRawValue();
-            this.value = configurationItem.getValue();
-            this.label = configurationItem.getLabel();
-            if (!configurationItem.getRememberLastEntryForIds().isEmpty()) {
-                for (String id : configurationItem.getRememberLastEntryForIds()) {
-                    rememberLastEntryForIds.add(id);
-                }
-            }
-            this.lastEntryItem = configurationItem.isLastEntryItem();
-        }
+    /**
+     * Reserves identities for items which are created again from stored data, like the rows of a loaded configuration.
+     * The same row should always be created with the same identity.
+     *
+     * @return First of the reserved identities.
+     */
+    public static int reserveIdentities(int count) {
+        return nextIdentity.getAndAdd(count);
     }
 
-    public String getId() {
-        return id;
+    public int getIdentity() {
+        return identity;
     }
 
-    public void setId(String id) {
-        this.id = id;
+    public String getId() {
+        return id;
     }
 
     public String getProfile() {
         return profile;
     }
 
-    public void setProfile(String profile) {
-        this.profile = profile;
-    }
-
-    public String getValue() {
-        return value;
-    }
-
-    public void setValue(String value) {
-        this.value = value;
-    }
-
-    public void setRawValue(String rawValue) {
-        this.rawValue = rawValue;
-    }
-
     public String getRawValue() {
         return rawValue;
     }
 
-    public String getLabel() {
-        if (label != null) {
-            return label;
-        } else {
-            return value;
-        }
-    }
-
-    public void setLabel(String label) {
-        this.label = label;
-    }
-
-    public boolean isLastEntryItem() {
-        return lastEntryItem;
-    }
-
-    public void setLastEntryItem(boolean lastEntryItem) {
-        this.lastEntryItem = lastEntryItem;
+    /**
+     * @return Label as defined in the configuration file or null.
+     */
+    public String getRawLabel() {
+        return label;
     }
 
     public boolean shouldRememberLastEntry() {
         return !rememberLastEntryForIds.isEmpty();
     }
 
+    /**
+     * @return Unmodifiable list of ids.
+     */
     public List<String> getRememberLastEntryForIds() {
         return rememberLastEntryForIds;
     }
 
-    public void rememberLastEntryForId(String id) {
-        rememberLastEntryForIds.add(id);
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ConfigurationItem && identity == ((ConfigurationItem) o).identity);
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof ConfigurationItem)) return false;
+    public int hashCode() {
+        return identity;
+    }
+
+    /**
+     * Builder for configuration items which are read in several steps. The builder is not thread-safe.
+     */
+    public static class Builder {
+        private final String id;
+        private final String profile;
+        private String rawValue;
+        private String label;
+        // Most items do not remember entries, they share the empty list until the first id is added
+        private List<String> rememberLastEntryForIds = Collections.emptyList();
+        private boolean hasIdentity;
+        private int identity;
+
+        public Builder(String id, String profile) {
+            this.id = id;
+            this.profile = profile;
+        }
 
-        ConfigurationItem that = (ConfigurationItem) o;
+        public String getId() {
+            return id;
+        }
 
-        if (lastEntryItem != that.lastEntryItem) return false;
-        if (id != null ? !id.equals(that.id) : that.id != null) return false;
-        if (profile != null ? !profile.equals(that.profile) : that.profile != null) return false;
-        if (rawValue != null ? !rawValue.equals(that.rawValue) : that.rawValue != null)
-            return false;
-        if (value != null ? !value.equals(that.value) : that.value != null) return false;
-        if (label != null ? !label.equals(that.label) : that.label != null) return false;
-        return rememberLastEntryForIds != null ? rememberLastEntryForIds.equals(that.rememberLastEntryForIds) : that.rememberLastEntryForIds == null;
+        public Builder setRawValue(String rawValue) {
+            this.rawValue = rawValue;
+            return this;
+        }
 
-    }
+        public Builder setLabel(String label) {
+            this.label = label;
+            return this;
+        }
 
-    @Override
-    public int hashCode() {
-        int result = id != null ? id.hashCode() : 0;
-        result = 31 * result + (profile != null ? profile.hashCode() : 0);
-        result = 31 * result + (rawValue != null ? rawValue.hashCode() : 0);
-        result = 31 * result + (value != null ? value.hashCode() : 0);
-        result = 31 * result + (label != null ? label.hashCode() : 0);
-        result = 31 * result + (rememberLastEntryForIds != null ? rememberLastEntryForIds.hashCode() : 0);
-        result = 31 * result + (lastEntryItem ? 1 : 0);
-        return result;
+        public Builder rememberLastEntryForId(String id) {
+            if (rememberLastEntryForIds.isEmpty()) {
+                rememberLastEntryForIds = new ArrayList<>(1);
+            }
+            rememberLastEntryForIds.add(id);
+            return this;
+        }
+
+        /**
+         * @param identity Identity reserved with {@link #reserveIdentities(int)}.
+         */
+        public Builder setIdentity(int identity) {
+            this.identity = identity;
+            this.hasIdentity = true;
+            return this;
+        }
+
+        /**
+         * The remembered ids are handed over to the built item without copying them, so the builder starts with no remembered ids again.
+         */
+        @NonNull
+        public ConfigurationItem build() {
+            List<String> ids = rememberLastEntryForIds.isEmpty() ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(rememberLastEntryForIds);
+            rememberLastEntryForIds = Collections.emptyList();
+            return new ConfigurationItem(hasIdentity ? identity : nextIdentity.getAndIncrement(), id, profile, rawValue, label, ids);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.common;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a delta update of the loaded configuration.
+ * The patch is a list of operations which are applied in order to the configuration with the base generation.
+ */
+public class ConfigurationPatch {
+
+    /**
+     * Typedef OperationType annotation.
+     */
+    @IntDef({OPERATION_ADD_PACKAGE,
+            OPERATION_REMOVE_PACKAGE,
+            OPERATION_REMOVE_PROFILE,
+            OPERATION_ADD_ITEM,
+            OPERATION_REPLACE_ITEMS,
+            OPERATION_REMOVE_ITEMS})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface OperationType {
+    }
+
+    public static final int OPERATION_ADD_PACKAGE = 0;
+    public static final int OPERATION_REMOVE_PACKAGE = 1;
+    public static final int OPERATION_REMOVE_PROFILE = 2;
+    public static final int OPERATION_ADD_ITEM = 3;
+    public static final int OPERATION_REPLACE_ITEMS = 4;
+    public static final int OPERATION_REMOVE_ITEMS = 5;
+
+    /**
+     * One patch operation. Package and profile operations use the name, item operations use the configuration item.
+     * Items are replaced and removed by their id and profile.
+     */
+    public static class Operation {
+
+        @OperationType
+        private final int type;
+        private final String name;
+        private final ConfigurationItem configurationItem;
+
+        private Operation(@OperationType int type, String name, ConfigurationItem configurationItem) {
+            this.type = type;
+            this.name = name;
+            this.configurationItem = configurationItem;
+        }
+
+        @OperationType
+        public int getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ConfigurationItem getConfigurationItem() {
+            return configurationItem;
+        }
+    }
+
+    private final int baseGeneration;
+    private final List<Operation> operations = new ArrayList<>();
+
+    public ConfigurationPatch(int baseGeneration) {
+        this.baseGeneration = baseGeneration;
+    }
+
+    public int getBaseGeneration() {
+        return baseGeneration;
+    }
+
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public void addPackage(String packageName) {
+        operations.add(new Operation(OPERATION_ADD_PACKAGE, packageName, null));
+    }
+
+    public void removePackage(String packageName) {
+        operations.add(new Operation(OPERATION_REMOVE_PACKAGE, packageName, null));
+    }
+
+    public void removeProfile(String profile) {
+        operations.add(new Operation(OPERATION_REMOVE_PROFILE, profile, null));
+    }
+
+    public void addItem(ConfigurationItem configurationItem) {
+        operations.add(new Operation(OPERATION_ADD_ITEM, null, configurationItem));
+    }
+
+    /**
+     * Replaces all items with the same id and profile. Several items for the same id and profile are added by calling this method
+     * only once and adding the remaining items with {@link #addItem(ConfigurationItem)}.
+     */
+    public void replaceItems(ConfigurationItem configurationItem) {
+        operations.add(new Operation(OPERATION_REPLACE_ITEMS, null, configurationItem));
+    }
+
+    public void removeItems(String id, String profile) {
+        operations.add(new Operation(OPERATION_REMOVE_ITEMS, null, new ConfigurationItem(id, profile)));
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.common.reader;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * ConfigurationIncludeListener additionally receives the include directives read by ConfigurationReader.
+ * Readers only report include directives to listeners which implement this interface, other listeners never see them.
+ */
+public interface ConfigurationIncludeListener extends ConfigurationReaderListener {
+    /**
+     * Called when ConfigurationReader has read an include directive, in order with the package names and configuration items.
+     *
+     * @param path   Path of the included configuration file.
+     * @param source Source of the included configuration file or null if it is the source of the including file.
+     */
+    void onInclude(@NonNull String path, @Nullable String source);
+}
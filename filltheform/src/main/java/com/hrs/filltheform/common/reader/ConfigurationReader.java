@@ -19,6 +19,8 @@ import android.support.annotation.NonNull;
 
 import com.hrs.filltheformcompanion.FillTheFormCompanion;
 
+import java.io.InputStream;
+
 /**
  * ConfigurationReader reads and parses the data from the configuration file.
  * It can report its status to ConfigurationReaderListener.
@@ -27,5 +29,10 @@ public interface ConfigurationReader {
 
     void readConfigurationFile(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath);
 
+    /**
+     * Parses the configuration while it is read from the stream. The stream is not closed.
+     */
+    void readConfiguration(@NonNull InputStream inputStream);
+
     String getConfigurationVariablePattern();
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.hrs.filltheform.common.reader.ConfigurationReader;
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ConfigurationFileReader opens the configuration file and lets the subclass parse its content.
+ */
+public abstract class ConfigurationFileReader implements ConfigurationReader {
+
+    private static final String TAG = ConfigurationFileReader.class.getSimpleName();
+
+    /**
+     * All readers use the same variable pattern, so a configuration can be converted between the formats without changing its values.
+     */
+    static final String CONFIGURATION_VARIABLE_PATTERN = "&(\\w+);";
+
+    protected final ConfigurationReaderListener configurationReaderListener;
+    private final ConfigurationFileSource configurationFileSource;
+
+    protected ConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener) {
+        this.configurationFileSource = new ConfigurationFileSource(context);
+        this.configurationReaderListener = configurationReaderListener;
+    }
+
+    @Override
+    public void readConfigurationFile(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+        InputStream inputStream;
+        try {
+            inputStream = configurationFileSource.openInputStream(source, configurationFilePath);
+        } catch (IOException | IllegalArgumentException e) {
+            configurationReaderListener.onReadingFailed(e.toString());
+            LogUtil.e(TAG, e.toString());
+            return;
+        }
+        try {
+            readConfiguration(inputStream, configurationFilePath);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // The configuration has already been read
+                LogUtil.e(TAG, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Parses the opened configuration file. The file path can be used to detect the format of the content.
+     */
+    public void readConfiguration(@NonNull InputStream inputStream, @NonNull String configurationFilePath) {
+        readConfiguration(inputStream);
+    }
+
+    @Override
+    public String getConfigurationVariablePattern() {
+        return CONFIGURATION_VARIABLE_PATTERN;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Environment;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ConfigurationFileSource opens configuration files from the assets, the external storage or any other uri.
+ * Streamed configurations are read only once while they are received, so they can not be opened here.
+ */
+public class ConfigurationFileSource {
+
+    public static final long UNKNOWN = -1;
+
+    private final Context appContext;
+
+    public ConfigurationFileSource(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    public InputStream openInputStream(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) throws IOException, IllegalArgumentException {
+        if (TextUtils.isEmpty(configurationFilePath)) {
+            throw new IllegalArgumentException("Configuration file path is empty");
+        }
+        if (source == FillTheFormCompanion.SOURCE_ASSETS) {
+            return appContext.getAssets().open(configurationFilePath);
+        } else if (source == FillTheFormCompanion.SOURCE_STREAM) {
+            throw new IOException("Streamed configuration " + configurationFilePath + " can not be read again");
+        } else {
+            Uri uri;
+            if (source == FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE) {
+                uri = Uri.fromFile(getExternalStorageFile(configurationFilePath));
+            } else {
+                uri = Uri.parse(configurationFilePath);
+            }
+            InputStream inputStream = appContext.getContentResolver().openInputStream(uri);
+            if (inputStream == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            return inputStream;
+        }
+    }
+
+    public static File getExternalStorageFile(@NonNull String configurationFilePath) {
+        File sdcard = Environment.getExternalStorageDirectory();
+        return new File(sdcard, configurationFilePath);
+    }
+
+    /**
+     * @return Configuration file if it is stored on the file system, otherwise null.
+     */
+    @Nullable
+    public File getFile(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+        if (source == FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE && !TextUtils.isEmpty(configurationFilePath)) {
+            return getExternalStorageFile(configurationFilePath);
+        }
+        return null;
+    }
+
+    /**
+     * Assets can only change when the app is updated, so the app update time is used as their modification time.
+     *
+     * @return Modification time of the configuration file or {@link #UNKNOWN}.
+     */
+    public long getLastModified(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+        if (source == FillTheFormCompanion.SOURCE_ASSETS) {
+            try {
+                return appContext.getPackageManager().getPackageInfo(appContext.getPackageName(), 0).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                return UNKNOWN;
+            }
+        }
+        File file = getFile(source, configurationFilePath);
+        if (file != null && file.exists()) {
+            return file.lastModified();
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return Length of the configuration file or {@link #UNKNOWN}.
+     */
+    public long getLength(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+        File file = getFile(source, configurationFilePath);
+        if (file != null && file.exists()) {
+            return file.length();
+        }
+        return UNKNOWN;
+    }
+}
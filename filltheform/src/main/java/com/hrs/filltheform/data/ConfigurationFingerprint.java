@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * ConfigurationFingerprint identifies the content of a configuration file.
+ * The length and the modification time are used as a fast path. Only when they do not match, the file is read again
+ * and its content digest is computed while it is parsed.
+ */
+public class ConfigurationFingerprint {
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long length;
+    private final long lastModified;
+    private final byte[] digest;
+
+    public ConfigurationFingerprint(long length, long lastModified, @NonNull byte[] digest) {
+        this.length = length;
+        this.lastModified = lastModified;
+        this.digest = digest;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    public boolean hasSameContent(@Nullable ConfigurationFingerprint other) {
+        return other != null && Arrays.equals(digest, other.digest);
+    }
+
+    /**
+     * Returns the previous fingerprint if the length and the modification time of the file have not changed since it was computed.
+     * The file is not read.
+     *
+     * @param previous Fingerprint of the currently loaded configuration file or null.
+     * @return The previous fingerprint or null if the file needs to be read again.
+     */
+    @Nullable
+    public static ConfigurationFingerprint getUnchanged(ConfigurationFileSource configurationFileSource, @FillTheFormCompanion.ConfigurationSource int source,
+                                                        @NonNull String configurationFilePath, @Nullable ConfigurationFingerprint previous) throws IOException {
+        if (previous == null) {
+            return null;
+        }
+        long lastModified = configurationFileSource.getLastModified(source, configurationFilePath);
+        if (lastModified != ConfigurationFileSource.UNKNOWN && previous.lastModified == lastModified
+                && previous.length == configurationFileSource.getLength(source, configurationFilePath)) {
+            return previous;
+        }
+        return null;
+    }
+
+    /**
+     * Opens the configuration file. The content is digested while it is read, so the fingerprint is computed in the same pass as parsing.
+     */
+    public static FingerprintInputStream open(ConfigurationFileSource configurationFileSource, @FillTheFormCompanion.ConfigurationSource int source,
+                                              @NonNull String configurationFilePath) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        // The metadata is taken before reading, a file changed in the meantime is read again on the next request
+        long length = configurationFileSource.getLength(source, configurationFilePath);
+        long lastModified = configurationFileSource.getLastModified(source, configurationFilePath);
+        InputStream inputStream = configurationFileSource.openInputStream(source, configurationFilePath);
+        return new FingerprintInputStream(inputStream, messageDigest, length, lastModified);
+    }
+
+    /**
+     * Input stream which digests the content of the configuration file while it is read.
+     */
+    public static class FingerprintInputStream extends DigestInputStream {
+        private final long length;
+        private final long lastModified;
+
+        FingerprintInputStream(InputStream inputStream, MessageDigest messageDigest, long length, long lastModified) {
+            super(inputStream, messageDigest);
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Reads the rest of the file, which the parser has not consumed, and returns the fingerprint of the whole content.
+         */
+        public ConfigurationFingerprint finish() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer) != -1) {
+                // Only digested
+            }
+            return new ConfigurationFingerprint(length, lastModified, getMessageDigest().digest());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * ConfigurationFormat detects the format of the configuration by the file extension or by the beginning of the content.
+ */
+public final class ConfigurationFormat {
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({FORMAT_UNKNOWN, FORMAT_XML, FORMAT_JSON})
+    public @interface Format {
+    }
+
+    public static final int FORMAT_UNKNOWN = 0;
+    public static final int FORMAT_XML = 1;
+    public static final int FORMAT_JSON = 2;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Number of bytes which can be skipped before the first significant character is found
+    private static final int SNIFF_LIMIT = 1024;
+
+    private ConfigurationFormat() {
+    }
+
+    /**
+     * @return Format matching the extension of the file or FORMAT_UNKNOWN, e.g. for content uris without an extension.
+     */
+    @Format
+    public static int fromFileName(@NonNull String configurationFilePath) {
+        String path = configurationFilePath.toLowerCase(Locale.ENGLISH);
+        if (path.endsWith(".json")) {
+            return FORMAT_JSON;
+        } else if (path.endsWith(".xml")) {
+            return FORMAT_XML;
+        }
+        return FORMAT_UNKNOWN;
+    }
+
+    /**
+     * Looks at the first character which is not a whitespace or a byte order mark. The stream is reset to its beginning.
+     *
+     * @param inputStream Stream supporting mark and reset.
+     * @return FORMAT_JSON if the content starts with an object or an array, otherwise FORMAT_XML.
+     */
+    @Format
+    public static int sniff(@NonNull InputStream inputStream) throws IOException {
+        inputStream.mark(SNIFF_LIMIT);
+        try {
+            for (int i = 0; i < SNIFF_LIMIT; i++) {
+                int b = inputStream.read();
+                switch (b) {
+                    case '{':
+                    case '[':
+                        return FORMAT_JSON;
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                    case '\n':
+                    // UTF-8 byte order mark
+                    case 0xEF:
+                    case 0xBB:
+                    case 0xBF:
+                        break;
+                    default:
+                        return FORMAT_XML;
+                }
+            }
+            return FORMAT_XML;
+        } finally {
+            inputStream.reset();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ConfigurationFragmentCache keeps the parsed content of the configuration files read by IncludingConfigurationFileReader.
+ * A cached fragment is used again as long as the fingerprint of its file has the same content, so only changed fragments are parsed.
+ * The cache is thread-safe and can be shared by all readers of one configuration.
+ */
+public class ConfigurationFragmentCache {
+
+    private final Map<String, Fragment> fragments = new HashMap<>();
+
+    @Nullable
+    synchronized Fragment get(String key) {
+        return fragments.get(key);
+    }
+
+    synchronized void put(String key, Fragment fragment) {
+        fragments.put(key, fragment);
+    }
+
+    /**
+     * Removes the fragments which are not used by the configuration anymore.
+     */
+    synchronized void retain(Collection<String> keys) {
+        fragments.keySet().retainAll(keys);
+    }
+
+    public synchronized void clear() {
+        fragments.clear();
+    }
+
+    /**
+     * Package names, configuration items and includes of one configuration file in document order.
+     */
+    static class Fragment {
+        final ConfigurationFingerprint fingerprint;
+        final List<Object> events;
+
+        Fragment(ConfigurationFingerprint fingerprint, List<Object> events) {
+            this.fingerprint = fingerprint;
+            this.events = events;
+        }
+    }
+}
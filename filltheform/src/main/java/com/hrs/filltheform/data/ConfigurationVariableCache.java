@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConfigurationVariableCache keeps the resolved values of configuration variables according to the cache policy of their provider.
+ * Static values do not change while the process is running and are resolved once.
+ * Session values are kept until they are invalidated, e.g. the device IP address is invalidated when the connectivity changes.
+ * Per-use values, like random data, are never cached.
+ * The cache can be used from any thread.
+ */
+class ConfigurationVariableCache {
+
+    private final ConcurrentHashMap<String, String> staticValues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> sessionValues = new ConcurrentHashMap<>();
+    // Every key has its own lock, so a value which is being loaded on the background thread is not loaded again
+    // and a slow value, like the IP address, does not block loading of the other values
+    private final ConcurrentHashMap<String, Object> loadLocks = new ConcurrentHashMap<>();
+    // Incremented on every invalidation, values loaded before an invalidation are not stored
+    private int sessionGeneration;
+
+    /**
+     * @return Cached value or the value resolved by the provider.
+     */
+    String get(String variableKey, ConfigurationVariableProvider provider) {
+        int cachePolicy = provider.getCachePolicy(variableKey);
+        if (cachePolicy == ConfigurationVariableProvider.CACHE_POLICY_PER_USE) {
+            return provider.getValue(variableKey);
+        }
+        ConcurrentHashMap<String, String> values = cachePolicy == ConfigurationVariableProvider.CACHE_POLICY_STATIC ? staticValues : sessionValues;
+        String value = values.get(variableKey);
+        if (value != null) {
+            return value;
+        }
+        synchronized (getLoadLock(variableKey)) {
+            value = values.get(variableKey);
+            if (value == null) {
+                int generation = getSessionGeneration();
+                value = provider.getValue(variableKey);
+                if (value != null) {
+                    put(values, variableKey, value, generation);
+                }
+            }
+        }
+        return value;
+    }
+
+    private Object getLoadLock(String variableKey) {
+        Object loadLock = loadLocks.get(variableKey);
+        if (loadLock == null) {
+            Object newLoadLock = new Object();
+            loadLock = loadLocks.putIfAbsent(variableKey, newLoadLock);
+            if (loadLock == null) {
+                loadLock = newLoadLock;
+            }
+        }
+        return loadLock;
+    }
+
+    boolean isCached(String variableKey) {
+        return staticValues.containsKey(variableKey) || sessionValues.containsKey(variableKey);
+    }
+
+    /**
+     * Removes all session values. It does not wait for a value which is being loaded, that value is not stored.
+     */
+    void invalidateSessionValues() {
+        synchronized (sessionValues) {
+            sessionGeneration++;
+            sessionValues.clear();
+        }
+    }
+
+    private int getSessionGeneration() {
+        synchronized (sessionValues) {
+            return sessionGeneration;
+        }
+    }
+
+    private void put(ConcurrentHashMap<String, String> values, String variableKey, String value, int generation) {
+        synchronized (sessionValues) {
+            if (values == staticValues || generation == sessionGeneration) {
+                values.put(variableKey, value);
+            }
+        }
+    }
+}
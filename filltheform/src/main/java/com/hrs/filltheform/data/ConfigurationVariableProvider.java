@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+
+/**
+ * ConfigurationVariableProvider provides the values of a set of configuration variables.
+ * Every provider declares its variable keys, the cost of resolving a value and how long a resolved value stays valid.
+ * Expensive values which are cached are resolved in advance on the background thread, so they do not slow down the dialog.
+ */
+public interface ConfigurationVariableProvider {
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({CACHE_POLICY_STATIC, CACHE_POLICY_SESSION, CACHE_POLICY_PER_USE})
+    @interface CachePolicy {
+    }
+
+    /**
+     * The value does not change while the process is running.
+     */
+    int CACHE_POLICY_STATIC = 0;
+    /**
+     * The value is valid until the session values are invalidated, e.g. when the connectivity changes.
+     */
+    int CACHE_POLICY_SESSION = 1;
+    /**
+     * The value is resolved again on every use.
+     */
+    int CACHE_POLICY_PER_USE = 2;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({COST_CHEAP, COST_EXPENSIVE})
+    @interface Cost {
+    }
+
+    int COST_CHEAP = 0;
+    /**
+     * The value should not be resolved on the main thread if it can be avoided.
+     */
+    int COST_EXPENSIVE = 1;
+
+    /**
+     * @return Keys of all variables provided by this provider. The keys must not change.
+     */
+    List<String> getVariableKeys();
+
+    @CachePolicy
+    int getCachePolicy(String variableKey);
+
+    @Cost
+    int getCost(String variableKey);
+
+    /**
+     * It can be called from any thread.
+     *
+     * @return Null if there is no value available for the provided variableKey.
+     */
+    String getValue(String variableKey);
+
+    /**
+     * Prepares everything the provider needs for resolving its values, e.g. loads data files. It is called from a background thread.
+     */
+    void warmUp();
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ConfigurationVariableRegistry resolves configuration variables using a set of providers.
+ * The index from variable key to provider is built once, when the registry is created.
+ * The resolved values are cached according to the cache policy of their provider. The registry can be used from any thread.
+ */
+class ConfigurationVariableRegistry {
+
+    private final List<ConfigurationVariableProvider> providers;
+    private final Map<String, ConfigurationVariableProvider> index;
+    private final ConfigurationVariableCache cache = new ConfigurationVariableCache();
+
+    /**
+     * @throws IllegalArgumentException If a variable key is provided by more than one provider.
+     */
+    ConfigurationVariableRegistry(List<ConfigurationVariableProvider> providers) {
+        this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+        Map<String, ConfigurationVariableProvider> index = new HashMap<>();
+        for (ConfigurationVariableProvider provider : providers) {
+            for (String variableKey : provider.getVariableKeys()) {
+                if (index.put(variableKey, provider) != null) {
+                    throw new IllegalArgumentException("Variable " + variableKey + " is provided more than once");
+                }
+            }
+        }
+        this.index = index;
+    }
+
+    boolean isVariableKey(String variableKey) {
+        return index.containsKey(variableKey);
+    }
+
+    /**
+     * @return True if the value of the variable is resolved again on every use, e.g. a random value.
+     */
+    boolean isResolvedOnEveryUse(String variableKey) {
+        ConfigurationVariableProvider provider = index.get(variableKey);
+        return provider != null && provider.getCachePolicy(variableKey) == ConfigurationVariableProvider.CACHE_POLICY_PER_USE;
+    }
+
+    /**
+     * @return Null if the variable is unknown or there is no value available.
+     */
+    String getValue(String variableKey) {
+        ConfigurationVariableProvider provider = index.get(variableKey);
+        if (provider == null) {
+            return null;
+        }
+        return cache.get(variableKey, provider);
+    }
+
+    /**
+     * Warms up all providers and resolves the expensive values which can be cached. It should be called from a background thread.
+     */
+    void preload() {
+        for (ConfigurationVariableProvider provider : providers) {
+            provider.warmUp();
+            for (String variableKey : provider.getVariableKeys()) {
+                if (provider.getCost(variableKey) == ConfigurationVariableProvider.COST_EXPENSIVE
+                        && provider.getCachePolicy(variableKey) != ConfigurationVariableProvider.CACHE_POLICY_PER_USE) {
+                    cache.get(variableKey, provider);
+                }
+            }
+        }
+    }
+
+    boolean isCached(String variableKey) {
+        return cache.isCached(variableKey);
+    }
+
+    void invalidateSessionValues() {
+        cache.invalidateSessionValues();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ConfigurationVariableResolver replaces the configuration variables in the raw values of configuration items.
+ * It is used by the dialog, the form filler and the configuration provider, so a value is rendered the same way everywhere.
+ * The compiled patterns are cached per pattern string, a configuration only defines one of them.
+ */
+public class ConfigurationVariableResolver {
+
+    public interface VariableValues {
+        /**
+         * @return Null if there is no value available for the provided variableKey.
+         */
+        @Nullable
+        String getValue(String variableKey);
+    }
+
+    private static final ConcurrentHashMap<String, Pattern> compiledPatterns = new ConcurrentHashMap<>();
+
+    private ConfigurationVariableResolver() {
+    }
+
+    /**
+     * Replaces all variables matching the pattern. Variables without a value are kept. The escaped new lines are replaced too.
+     *
+     * @param configurationVariablePattern Pattern of the variables, its first group is the variable key.
+     */
+    public static String replaceVariables(@NonNull String text, @NonNull String configurationVariablePattern, @NonNull VariableValues variableValues) {
+        String newText = text.replace("\\n", "\n");
+        Matcher m = getPattern(configurationVariablePattern).matcher(newText);
+        StringBuffer sb = new StringBuffer(newText.length());
+        while (m.find() && m.groupCount() > 0) {
+            String value = variableValues.getValue(m.group(1));
+            if (value != null) {
+                m.appendReplacement(sb, Matcher.quoteReplacement(value));
+            }
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    static Pattern getPattern(String configurationVariablePattern) {
+        Pattern pattern = compiledPatterns.get(configurationVariablePattern);
+        if (pattern == null) {
+            pattern = Pattern.compile(configurationVariablePattern);
+            Pattern previous = compiledPatterns.putIfAbsent(configurationVariablePattern, pattern);
+            if (previous != null) {
+                pattern = previous;
+            }
+        }
+        return pattern;
+    }
+}
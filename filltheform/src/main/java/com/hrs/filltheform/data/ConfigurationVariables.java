@@ -16,91 +16,155 @@
 package com.hrs.filltheform.data;
 
 import android.content.Context;
+import android.support.annotation.Nullable;
 
 import com.hrs.filltheform.R;
-import com.hrs.filltheform.util.LogUtil;
 
-import java.net.Inet4Address;
-import java.net.InetAddress;
-import java.net.NetworkInterface;
-import java.net.SocketException;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ConfigurationVariables defines variables that can be used in the configuration file.
  * These variables are useful when we want to provide more data about the device.
+ * <p/>
+ * The values are provided by a set of ConfigurationVariableProviders. A new variable is added by adding its provider
+ * to {@link #createDefaultProviders(Context)}. The default providers and the cache of their values are shared by all instances.
  */
 public class ConfigurationVariables {
 
-    private static final String TAG = ConfigurationVariables.class.getSimpleName();
+    /**
+     * Id of the configuration item which defines the seed of the random values, e.g. &lt;random_seed&gt;42&lt;/random_seed&gt;.
+     */
+    public static final String RANDOM_SEED_ID = "random_seed";
+    /**
+     * Id of the configuration item which defines the shard index used with the random seed.
+     */
+    public static final String RANDOM_SHARD_ID = "random_shard";
 
-    // Device info
-    private static final String DEVICE_MANUFACTURER = "device_manufacturer";
-    private static final String DEVICE_MODEL = "device_model";
-    private static final String DEVICE_ANDROID_VERSION = "device_android_version";
-    private static final String DEVICE_IP_ADDRESS = "device_ip_address";
+    private static ConfigurationVariableRegistry defaultRegistry;
+    private static RandomDataGenerator defaultRandomDataGenerator;
 
-    private final RandomDataGenerator randomDataGenerator;
-    private final String deviceIpAddressFailure;
-    private String deviceIpAddress;
+    private final ConfigurationVariableRegistry registry;
+    private final ConfigurationVariableResolver.VariableValues variableValues = new ConfigurationVariableResolver.VariableValues() {
+        @Override
+        public String getValue(String variableKey) {
+            return ConfigurationVariables.this.getValue(variableKey);
+        }
+    };
+    private final ConfigurationVariableResolver.VariableValues stableVariableValues = new ConfigurationVariableResolver.VariableValues() {
+        @Override
+        public String getValue(String variableKey) {
+            return registry.isResolvedOnEveryUse(variableKey) ? null : registry.getValue(variableKey);
+        }
+    };
 
     public ConfigurationVariables(Context context) {
-        this.deviceIpAddressFailure = context.getString(R.string.device_ip_address_failure);
-        this.randomDataGenerator = new RandomDataGenerator();
+        this.registry = getDefaultRegistry(context);
     }
 
-    public void clear() {
-        this.deviceIpAddress = null;
+    private static synchronized ConfigurationVariableRegistry getDefaultRegistry(Context context) {
+        if (defaultRegistry == null) {
+            defaultRandomDataGenerator = new RandomDataGenerator(context.getApplicationContext().getAssets());
+            defaultRegistry = new ConfigurationVariableRegistry(createDefaultProviders(context));
+        }
+        return defaultRegistry;
     }
 
-    public boolean isConfigurationVariableKey(String variableKey) {
-        switch (variableKey) {
-            case DEVICE_MANUFACTURER:
-            case DEVICE_MODEL:
-            case DEVICE_ANDROID_VERSION:
-            case DEVICE_IP_ADDRESS:
-                return true;
-            default:
-                return randomDataGenerator.isRandomVariableKey(variableKey);
+    private static List<ConfigurationVariableProvider> createDefaultProviders(Context context) {
+        List<ConfigurationVariableProvider> providers = new ArrayList<>();
+        providers.add(new DeviceVariableProvider(context.getString(R.string.device_ip_address_failure)));
+        providers.add(defaultRandomDataGenerator);
+        return providers;
+    }
+
+    /**
+     * Warms up the providers and resolves the expensive values which can be cached, so they do not have to be resolved on the main thread.
+     * It should be called from a background thread.
+     */
+    public void preload() {
+        registry.preload();
+    }
+
+    /**
+     * Forgets the session values of the default providers. It is called when the connectivity changes.
+     */
+    public static synchronized void invalidateSessionValues() {
+        if (defaultRegistry != null) {
+            defaultRegistry.invalidateSessionValues();
         }
     }
 
+    /**
+     * @return Metrics of the pre-generated random values or null if no configuration variables have been used yet.
+     */
+    @Nullable
+    public static synchronized RandomDataPoolMetrics getRandomDataPoolMetrics() {
+        return defaultRandomDataGenerator == null ? null : defaultRandomDataGenerator.getPoolMetrics();
+    }
+
+    /**
+     * Makes the random values reproducible. Every random variable starts a sequence which depends only on the seed and the shard index.
+     *
+     * @param shardIndex Non-negative index of the shard, parallel runs using different shards get different values.
+     */
+    public static synchronized void setRandomSeed(Context context, long seed, int shardIndex) {
+        getDefaultRegistry(context);
+        defaultRandomDataGenerator.setSeed(seed, shardIndex);
+    }
+
+    /**
+     * Random values are not reproducible anymore.
+     */
+    public static synchronized void clearRandomSeed() {
+        if (defaultRandomDataGenerator != null) {
+            defaultRandomDataGenerator.clearSeed();
+        }
+    }
+
+    public boolean isConfigurationVariableKey(String variableKey) {
+        return registry.isVariableKey(variableKey);
+    }
+
     /**
      * @param variableKey Defines the wanted value.
      * @return Null if there is no value available for the provided variableKey.
      */
     public String getValue(String variableKey) {
-        switch (variableKey) {
-            case DEVICE_MANUFACTURER:
-                return android.os.Build.MANUFACTURER;
-            case DEVICE_MODEL:
-                return android.os.Build.MODEL;
-            case DEVICE_ANDROID_VERSION:
-                return String.valueOf(android.os.Build.VERSION.SDK_INT);
-            case DEVICE_IP_ADDRESS:
-                if (deviceIpAddress == null) {
-                    deviceIpAddress = getLocalIpAddress();
-                }
-                return deviceIpAddress;
-            default:
-                return randomDataGenerator.getRandomContent(variableKey);
-        }
+        return registry.getValue(variableKey);
     }
 
-    private String getLocalIpAddress() {
-        try {
-            for (Enumeration<NetworkInterface> en = NetworkInterface.getNetworkInterfaces(); en.hasMoreElements(); ) {
-                NetworkInterface networkInterface = en.nextElement();
-                for (Enumeration<InetAddress> enumIpAddress = networkInterface.getInetAddresses(); enumIpAddress.hasMoreElements(); ) {
-                    InetAddress inetAddress = enumIpAddress.nextElement();
-                    if (!inetAddress.isLoopbackAddress() && inetAddress instanceof Inet4Address) {
-                        return inetAddress.getHostAddress();
-                    }
-                }
+    /**
+     * Resolves the value of a configuration item the same way as FillTheFormDialog does.
+     * If the raw value is a variable key, the variable value is returned. Otherwise all variables matching the pattern are replaced.
+     *
+     * @param rawValue                     Raw value of the configuration item.
+     * @param configurationVariablePattern Pattern of the variables or null if variables are not supported.
+     */
+    public String resolveValue(String rawValue, String configurationVariablePattern) {
+        return resolveValue(rawValue, configurationVariablePattern, variableValues);
+    }
+
+    /**
+     * Resolves the value like {@link #resolveValue(String, String)}, but keeps the variables which are resolved again on every use,
+     * e.g. the random values. Showing the configuration this way does not consume the random values or their seeded sequences.
+     */
+    public String resolveStableValue(String rawValue, String configurationVariablePattern) {
+        return resolveValue(rawValue, configurationVariablePattern, stableVariableValues);
+    }
+
+    private String resolveValue(String rawValue, String configurationVariablePattern, ConfigurationVariableResolver.VariableValues variableValues) {
+        if (rawValue == null) {
+            return null;
+        }
+        if (isConfigurationVariableKey(rawValue)) {
+            String value = variableValues.getValue(rawValue);
+            if (value != null) {
+                return value;
             }
-        } catch (SocketException ex) {
-            LogUtil.d(TAG, ex.toString());
         }
-        return deviceIpAddressFailure;
+        if (configurationVariablePattern == null) {
+            return rawValue;
+        }
+        return ConfigurationVariableResolver.replaceVariables(rawValue, configurationVariablePattern, variableValues);
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import com.hrs.filltheform.util.LogUtil;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * DeviceVariableProvider provides info about the device. The device info is static, the IP address is valid until the connectivity changes.
+ */
+class DeviceVariableProvider implements ConfigurationVariableProvider {
+
+    private static final String TAG = DeviceVariableProvider.class.getSimpleName();
+
+    private static final String DEVICE_MANUFACTURER = "device_manufacturer";
+    private static final String DEVICE_MODEL = "device_model";
+    private static final String DEVICE_ANDROID_VERSION = "device_android_version";
+    private static final String DEVICE_IP_ADDRESS = "device_ip_address";
+
+    private static final List<String> VARIABLE_KEYS = Collections.unmodifiableList(Arrays.asList(
+            DEVICE_MANUFACTURER, DEVICE_MODEL, DEVICE_ANDROID_VERSION, DEVICE_IP_ADDRESS));
+
+    private final String deviceIpAddressFailure;
+
+    DeviceVariableProvider(String deviceIpAddressFailure) {
+        this.deviceIpAddressFailure = deviceIpAddressFailure;
+    }
+
+    @Override
+    public List<String> getVariableKeys() {
+        return VARIABLE_KEYS;
+    }
+
+    @Override
+    public int getCachePolicy(String variableKey) {
+        return DEVICE_IP_ADDRESS.equals(variableKey) ? CACHE_POLICY_SESSION : CACHE_POLICY_STATIC;
+    }
+
+    @Override
+    public int getCost(String variableKey) {
+        return DEVICE_IP_ADDRESS.equals(variableKey) ? COST_EXPENSIVE : COST_CHEAP;
+    }
+
+    @Override
+    public String getValue(String variableKey) {
+        switch (variableKey) {
+            case DEVICE_MANUFACTURER:
+                return android.os.Build.MANUFACTURER;
+            case DEVICE_MODEL:
+                return android.os.Build.MODEL;
+            case DEVICE_ANDROID_VERSION:
+                return String.valueOf(android.os.Build.VERSION.SDK_INT);
+            case DEVICE_IP_ADDRESS:
+                return getLocalIpAddress();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void warmUp() {
+        // Nothing to prepare
+    }
+
+    private String getLocalIpAddress() {
+        try {
+            for (Enumeration<NetworkInterface> en = NetworkInterface.getNetworkInterfaces(); en.hasMoreElements(); ) {
+                NetworkInterface networkInterface = en.nextElement();
+                for (Enumeration<InetAddress> enumIpAddress = networkInterface.getInetAddresses(); enumIpAddress.hasMoreElements(); ) {
+                    InetAddress inetAddress = enumIpAddress.nextElement();
+                    if (!inetAddress.isLoopbackAddress() && inetAddress instanceof Inet4Address) {
+                        return inetAddress.getHostAddress();
+                    }
+                }
+            }
+        } catch (SocketException ex) {
+            LogUtil.d(TAG, ex.toString());
+        }
+        return deviceIpAddressFailure;
+    }
+}
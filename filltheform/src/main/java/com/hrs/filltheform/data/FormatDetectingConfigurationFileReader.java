@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+import com.hrs.filltheform.util.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * FormatDetectingConfigurationFileReader reads xml and json configuration files. The format is selected by the file extension,
+ * if the extension is unknown the beginning of the content is examined.
+ */
+public class FormatDetectingConfigurationFileReader extends ConfigurationFileReader {
+
+    private static final String TAG = FormatDetectingConfigurationFileReader.class.getSimpleName();
+
+    private final ConfigurationFileReader xmlReader;
+    private final JsonConfigurationFileReader jsonReader;
+
+    public FormatDetectingConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener) {
+        this(context, configurationReaderListener, true);
+    }
+
+    /**
+     * @param allowParallel False if large xml files must not be parsed on the worker threads, e.g. because the reader is already used on a worker thread.
+     */
+    public FormatDetectingConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener, boolean allowParallel) {
+        super(context, configurationReaderListener);
+        if (allowParallel) {
+            this.xmlReader = new ParallelXmlConfigurationFileReader(context, configurationReaderListener);
+        } else {
+            this.xmlReader = new XmlConfigurationFileReader(context, configurationReaderListener);
+        }
+        this.jsonReader = new JsonConfigurationFileReader(context, configurationReaderListener);
+    }
+
+    @Override
+    public void readConfiguration(@NonNull InputStream inputStream, @NonNull String configurationFilePath) {
+        int format = ConfigurationFormat.fromFileName(configurationFilePath);
+        if (format == ConfigurationFormat.FORMAT_UNKNOWN) {
+            readConfiguration(inputStream);
+        } else {
+            readConfiguration(inputStream, format);
+        }
+    }
+
+    @Override
+    public void readConfiguration(@NonNull InputStream inputStream) {
+        // Both parsers buffer the content anyway, the buffer is only needed to look at the beginning of the content
+        InputStream bufferedInputStream = new BufferedInputStream(inputStream);
+        int format;
+        try {
+            format = ConfigurationFormat.sniff(bufferedInputStream);
+        } catch (IOException e) {
+            configurationReaderListener.onReadingFailed(e.toString());
+            LogUtil.e(TAG, e.toString());
+            return;
+        }
+        readConfiguration(bufferedInputStream, format);
+    }
+
+    private void readConfiguration(InputStream inputStream, @ConfigurationFormat.Format int format) {
+        if (format == ConfigurationFormat.FORMAT_JSON) {
+            jsonReader.readConfiguration(inputStream);
+        } else {
+            xmlReader.readConfiguration(inputStream);
+        }
+    }
+}
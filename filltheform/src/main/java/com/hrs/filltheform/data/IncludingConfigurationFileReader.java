@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.reader.ConfigurationIncludeListener;
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheform.util.ThreadUtil;
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * IncludingConfigurationFileReader reads configuration files which include other configuration files.
+ * Every file is parsed on its own, so the included files can be parsed in parallel and cached in ConfigurationFragmentCache.
+ * The content of an included file is reported in place of its include directive. Include cycles and files which can not be read
+ * are reported with the chain of the including files. A file included more than once is reported only at its first include.
+ * Reading waits for the included files, so it should not be called from the main thread.
+ */
+public class IncludingConfigurationFileReader extends ConfigurationFileReader {
+
+    private static final String TAG = IncludingConfigurationFileReader.class.getSimpleName();
+
+    private static final String INCLUDE_CHAIN_SEPARATOR = " -> ";
+    private static final int NO_SOURCE = -1;
+
+    private final Context context;
+    private final ConfigurationFileSource configurationFileSource;
+    private final ConfigurationFragmentCache fragmentCache;
+    private ConfigurationFingerprint rootFingerprint;
+
+    public IncludingConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener, ConfigurationFragmentCache fragmentCache) {
+        super(context, configurationReaderListener);
+        this.context = context.getApplicationContext();
+        this.configurationFileSource = new ConfigurationFileSource(context);
+        this.fragmentCache = fragmentCache;
+    }
+
+    @Override
+    public void readConfigurationFile(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+        // The root file is not parsed on a worker thread, so its profiles can be parsed in parallel
+        FragmentResult root = loadFragment(source, configurationFilePath, true);
+        rootFingerprint = root.fingerprint;
+        readFragments(root);
+    }
+
+    /**
+     * @return Fingerprint of the root file read by the last call of readConfigurationFile or null if it could not be read.
+     * It is computed while the file is parsed, so it can be stored with the loaded configuration without reading the file again.
+     */
+    @Nullable
+    public ConfigurationFingerprint getRootFingerprint() {
+        return rootFingerprint;
+    }
+
+    @Override
+    public void readConfiguration(@NonNull InputStream inputStream) {
+        // Streamed content can only be read once, so it is not cached. Its includes need an explicit source.
+        FragmentRecorder recorder = new FragmentRecorder(NO_SOURCE);
+        new FormatDetectingConfigurationFileReader(context, recorder).readConfiguration(inputStream);
+        readFragments(new FragmentResult(null, recorder.events, recorder.getErrorMessage(), null));
+    }
+
+    private void readFragments(FragmentResult root) {
+        if (root.errorMessage != null) {
+            configurationReaderListener.onReadingFailed(root.errorMessage);
+            return;
+        }
+        Map<String, FragmentResult> fragments;
+        try {
+            fragments = loadIncludedFragments(root);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            configurationReaderListener.onReadingFailed(e.toString());
+            return;
+        } catch (ExecutionException e) {
+            LogUtil.e(TAG, e.toString());
+            configurationReaderListener.onReadingFailed(e.getCause().toString());
+            return;
+        }
+        List<String> chain = new ArrayList<>();
+        if (root.key != null) {
+            chain.add(root.key);
+        }
+        if (report(root, chain, fragments, new HashSet<String>())) {
+            List<String> usedKeys = new ArrayList<>(fragments.keySet());
+            if (root.key != null) {
+                usedKeys.add(root.key);
+            }
+            fragmentCache.retain(usedKeys);
+            configurationReaderListener.onReadingCompleted();
+        }
+    }
+
+    /**
+     * Loads all fragments included directly or indirectly by the root fragment. Fragments included by the same parent are loaded in parallel.
+     */
+    private Map<String, FragmentResult> loadIncludedFragments(FragmentResult root) throws InterruptedException, ExecutionException {
+        Map<String, FragmentResult> fragments = new HashMap<>();
+        List<FragmentResult> loaded = new ArrayList<>();
+        loaded.add(root);
+        while (!loaded.isEmpty()) {
+            Map<String, Future<FragmentResult>> wave = new LinkedHashMap<>();
+            for (FragmentResult fragment : loaded) {
+                for (Object event : fragment.events) {
+                    if (event instanceof Include) {
+                        final Include include = (Include) event;
+                        String key = include.getKey();
+                        if (!key.equals(root.key) && !fragments.containsKey(key) && !wave.containsKey(key)) {
+                            wave.put(key, ThreadUtil.submitToWorkers(new Callable<FragmentResult>() {
+                                @Override
+                                public FragmentResult call() {
+                                    return loadFragment(include.source, include.path, false);
+                                }
+                            }));
+                        }
+                    }
+                }
+            }
+            loaded = new ArrayList<>(wave.size());
+            for (Map.Entry<String, Future<FragmentResult>> entry : wave.entrySet()) {
+                FragmentResult fragment = entry.getValue().get();
+                fragments.put(entry.getKey(), fragment);
+                loaded.add(fragment);
+            }
+        }
+        return fragments;
+    }
+
+    /**
+     * Reports the fragment and its includes to the listener. Fragments which have already been reported are skipped,
+     * so a file included by two branches, e.g. A -> B -> D and A -> C -> D, is reported once.
+     *
+     * @param reportedKeys Keys of the fragments reported so far.
+     * @return False if reading failed and the failure has been reported.
+     */
+    private boolean report(FragmentResult fragment, List<String> chain, Map<String, FragmentResult> fragments, Set<String> reportedKeys) {
+        for (Object event : fragment.events) {
+            if (event instanceof ConfigurationItem) {
+                configurationReaderListener.onConfigurationItem((ConfigurationItem) event);
+            } else if (event instanceof Include) {
+                Include include = (Include) event;
+                String key = include.getKey();
+                boolean cycle = chain.contains(key);
+                chain.add(key);
+                if (cycle) {
+                    configurationReaderListener.onReadingFailed("Include cycle: " + TextUtils.join(INCLUDE_CHAIN_SEPARATOR, chain));
+                    return false;
+                }
+                if (!reportedKeys.add(key)) {
+                    chain.remove(chain.size() - 1);
+                    continue;
+                }
+                FragmentResult includedFragment = fragments.get(key);
+                if (includedFragment.errorMessage != null) {
+                    configurationReaderListener.onReadingFailed("Unable to include " + TextUtils.join(INCLUDE_CHAIN_SEPARATOR, chain) + ": " + includedFragment.errorMessage);
+                    return false;
+                }
+                if (configurationReaderListener instanceof ConfigurationIncludeListener) {
+                    ((ConfigurationIncludeListener) configurationReaderListener).onInclude(include.path, getSourceName(include.source));
+                }
+                if (!report(includedFragment, chain, fragments, reportedKeys)) {
+                    return false;
+                }
+                chain.remove(chain.size() - 1);
+            } else if (event instanceof InvalidInclude) {
+                configurationReaderListener.onReadingFailed(TextUtils.join(INCLUDE_CHAIN_SEPARATOR, chain) + ": " + ((InvalidInclude) event).errorMessage);
+                return false;
+            } else {
+                configurationReaderListener.onPackageName((String) event);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cached fragment if the length and the modification time of the file have not changed, otherwise parses the file.
+     * The content digest is computed while the file is parsed, so the file is read only once.
+     */
+    private FragmentResult loadFragment(@FillTheFormCompanion.ConfigurationSource int source, String configurationFilePath, boolean allowParallel) {
+        String key = getKey(source, configurationFilePath);
+        ConfigurationFragmentCache.Fragment cachedFragment = fragmentCache.get(key);
+        ConfigurationFingerprint.FingerprintInputStream inputStream;
+        try {
+            ConfigurationFingerprint unchanged = ConfigurationFingerprint.getUnchanged(configurationFileSource, source, configurationFilePath,
+                    cachedFragment != null ? cachedFragment.fingerprint : null);
+            if (unchanged != null) {
+                return new FragmentResult(key, cachedFragment.events, null, unchanged);
+            }
+            inputStream = ConfigurationFingerprint.open(configurationFileSource, source, configurationFilePath);
+        } catch (IOException | IllegalArgumentException e) {
+            return new FragmentResult(key, new ArrayList<>(), e.toString(), null);
+        }
+        FragmentRecorder recorder = new FragmentRecorder(source);
+        ConfigurationFingerprint fingerprint = null;
+        try {
+            new FormatDetectingConfigurationFileReader(context, recorder, allowParallel).readConfiguration(inputStream, configurationFilePath);
+            if (recorder.getErrorMessage() == null) {
+                fingerprint = inputStream.finish();
+            }
+        } catch (IOException e) {
+            // The fragment is not cached without its fingerprint
+            LogUtil.e(TAG, e.toString());
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                LogUtil.e(TAG, e.toString());
+            }
+        }
+        String errorMessage = recorder.getErrorMessage();
+        if (errorMessage == null && fingerprint != null) {
+            fragmentCache.put(key, new ConfigurationFragmentCache.Fragment(fingerprint, recorder.events));
+        }
+        return new FragmentResult(key, recorder.events, errorMessage, fingerprint);
+    }
+
+    private static String getKey(@FillTheFormCompanion.ConfigurationSource int source, String configurationFilePath) {
+        return getSourceName(source) + ":" + configurationFilePath;
+    }
+
+    private static String getSourceName(int source) {
+        switch (source) {
+            case FillTheFormCompanion.SOURCE_ASSETS:
+                return "assets";
+            case FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE:
+                return "external_storage";
+            default:
+                return "other";
+        }
+    }
+
+    private static int parseSource(@Nullable String sourceName, int includingSource) {
+        if (sourceName == null) {
+            return includingSource;
+        }
+        switch (sourceName) {
+            case "assets":
+                return FillTheFormCompanion.SOURCE_ASSETS;
+            case "external_storage":
+                return FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE;
+            case "other":
+                return FillTheFormCompanion.SOURCE_OTHER;
+            default:
+                return NO_SOURCE;
+        }
+    }
+
+    /**
+     * Include directive with the resolved source.
+     */
+    private static class Include {
+        @FillTheFormCompanion.ConfigurationSource
+        final int source;
+        final String path;
+
+        Include(@FillTheFormCompanion.ConfigurationSource int source, String path) {
+            this.source = source;
+            this.path = path;
+        }
+
+        String getKey() {
+            return IncludingConfigurationFileReader.getKey(source, path);
+        }
+    }
+
+    private static class InvalidInclude {
+        final String errorMessage;
+
+        InvalidInclude(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+    }
+
+    private static class FragmentResult {
+        // Null for streamed content
+        final String key;
+        final List<Object> events;
+        final String errorMessage;
+        // Null for streamed content or if the file could not be read
+        final ConfigurationFingerprint fingerprint;
+
+        FragmentResult(String key, List<Object> events, String errorMessage, ConfigurationFingerprint fingerprint) {
+            this.key = key;
+            this.events = events;
+            this.errorMessage = errorMessage;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Records the package names, items and includes of one fragment. Invalid include directives are recorded too,
+     * so they are reported with the include chain when the fragment is reported.
+     */
+    private static class FragmentRecorder implements ConfigurationIncludeListener {
+        private final int source;
+        private final List<Object> events = new ArrayList<>();
+        private String errorMessage;
+        private boolean completed;
+
+        FragmentRecorder(int source) {
+            this.source = source;
+        }
+
+        @Override
+        public void onPackageName(String packageName) {
+            events.add(packageName);
+        }
+
+        @Override
+        public void onConfigurationItem(ConfigurationItem configurationItem) {
+            events.add(configurationItem);
+        }
+
+        @Override
+        public void onInclude(@NonNull String path, @Nullable String sourceName) {
+            @SuppressWarnings("WrongConstant") int includeSource = parseSource(sourceName, source);
+            if (sourceName == null && includeSource == NO_SOURCE) {
+                events.add(new InvalidInclude("The include " + path + " in streamed content needs a source"));
+            } else if (includeSource == NO_SOURCE) {
+                events.add(new InvalidInclude("Unknown source " + sourceName + " of the include " + path));
+            } else {
+                events.add(new Include(includeSource, path));
+            }
+        }
+
+        @Override
+        public void onReadingCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void onReadingFailed(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+
+        String getErrorMessage() {
+            if (errorMessage == null && !completed) {
+                return "Reading has not been completed";
+            }
+            return errorMessage;
+        }
+    }
+}
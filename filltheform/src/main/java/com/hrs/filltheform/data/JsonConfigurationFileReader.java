@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.reader.ConfigurationIncludeListener;
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+import com.hrs.filltheform.util.LogUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * JsonConfigurationFileReader streams the json configuration file and reports the same items as XmlConfigurationFileReader.
+ * Items are defined with "id": "value". Repeated items are defined with an array and items with a label or remembered entries
+ * with an object, e.g. "city": {"value": "Imotski", "label": "I bet you have never been there", "remember_last_entry_for": ["country"]}.
+ * Profiles are defined with "profiles": {"any_name": {items}}, packages with "packages": [names] and items without a profile with "items": {items}.
+ * Other configuration files are included with "include": [{"path": "file", "source": "assets|external_storage|other"}].
+ */
+public class JsonConfigurationFileReader extends ConfigurationFileReader {
+
+    private static final String TAG = JsonConfigurationFileReader.class.getSimpleName();
+
+    public JsonConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener) {
+        super(context, configurationReaderListener);
+    }
+
+    @Override
+    public void readConfiguration(@NonNull InputStream inputStream) {
+        // The reader is not closed, the stream is closed by the caller
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, ConfigurationFormat.UTF_8));
+        reader.setLenient(true);
+        try {
+            parseConfigurationFile(reader);
+        } catch (IOException | IllegalStateException e) {
+            configurationReaderListener.onReadingFailed(e.toString());
+            LogUtil.e(TAG, e.toString());
+        }
+    }
+
+    private void parseConfigurationFile(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "packages":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        configurationReaderListener.onPackageName(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case "profiles":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String profile = reader.nextName();
+                        parseItems(reader, profile);
+                    }
+                    reader.endObject();
+                    break;
+                case "items":
+                    parseItems(reader, null);
+                    break;
+                case "include":
+                    parseIncludes(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        configurationReaderListener.onReadingCompleted();
+    }
+
+    private void parseIncludes(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String path = null;
+            String source = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "path":
+                        path = reader.nextString();
+                        break;
+                    case "source":
+                        source = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            if (path == null) {
+                throw new IllegalStateException("Include without a path");
+            }
+            if (configurationReaderListener instanceof ConfigurationIncludeListener) {
+                ((ConfigurationIncludeListener) configurationReaderListener).onInclude(path, source);
+            }
+        }
+        reader.endArray();
+    }
+
+    private void parseItems(JsonReader reader, String profile) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String id = reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    parseItem(reader, id, profile);
+                }
+                reader.endArray();
+            } else {
+                parseItem(reader, id, profile);
+            }
+        }
+        reader.endObject();
+    }
+
+    private void parseItem(JsonReader reader, String id, String profile) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            configurationReaderListener.onConfigurationItem(new ConfigurationItem(id, profile, reader.nextString()));
+            return;
+        }
+        ConfigurationItem.Builder itemBuilder = new ConfigurationItem.Builder(id, profile);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "value":
+                    itemBuilder.setRawValue(reader.nextString());
+                    break;
+                case "label":
+                    itemBuilder.setLabel(reader.nextString());
+                    break;
+                case "remember_last_entry_for":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        itemBuilder.rememberLastEntryForId(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        configurationReaderListener.onConfigurationItem(itemBuilder.build());
+    }
+}
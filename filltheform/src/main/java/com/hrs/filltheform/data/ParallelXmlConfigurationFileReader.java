@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.reader.ConfigurationIncludeListener;
+import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheform.util.ThreadUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelXmlConfigurationFileReader splits large xml configuration files at the profile boundaries and parses the profiles on the worker threads.
+ * The rest of the document is parsed on the calling thread, every profile is replaced by a marker item there.
+ * The results are reported in document order, so the listener receives the same callbacks as from XmlConfigurationFileReader.
+ * Small files and files which can not be split are parsed by XmlConfigurationFileReader.
+ */
+public class ParallelXmlConfigurationFileReader extends ConfigurationFileReader {
+
+    private static final String TAG = ParallelXmlConfigurationFileReader.class.getSimpleName();
+
+    static final int PARALLEL_THRESHOLD_BYTES = 1024 * 1024;
+    private static final int TASKS_PER_WORKER = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Not a valid resource name, so it can not clash with a configured view id
+    private static final String PROFILE_MARKER = "filltheform.profile-marker";
+
+    private final Context context;
+    private final XmlConfigurationFileReader sequentialReader;
+
+    public ParallelXmlConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener) {
+        super(context, configurationReaderListener);
+        this.context = context.getApplicationContext();
+        this.sequentialReader = new XmlConfigurationFileReader(context, configurationReaderListener);
+    }
+
+    @Override
+    public void readConfiguration(@NonNull InputStream inputStream) {
+        Content content = new Content();
+        try {
+            content.readFrom(inputStream);
+        } catch (IOException e) {
+            configurationReaderListener.onReadingFailed(e.toString());
+            LogUtil.e(TAG, e.toString());
+            return;
+        }
+        List<int[]> profiles = null;
+        if (content.size() >= PARALLEL_THRESHOLD_BYTES && ThreadUtil.getNumberOfWorkers() > 1) {
+            profiles = XmlProfileScanner.findProfiles(content.getBytes(), content.size());
+        }
+        if (profiles == null || profiles.size() < 2 || !readInParallel(content, profiles)) {
+            sequentialReader.readConfiguration(content.toInputStream());
+        }
+    }
+
+    /**
+     * @return False if the content could not be parsed in parallel. Then nothing has been reported to the listener yet.
+     */
+    private boolean readInParallel(Content content, List<int[]> profiles) {
+        int numberOfTasks = Math.min(profiles.size(), ThreadUtil.getNumberOfWorkers() * TASKS_PER_WORKER);
+        RecordingListener[] profileResults = new RecordingListener[profiles.size()];
+        List<Future<?>> futures = new ArrayList<>(numberOfTasks);
+        for (int task = 0; task < numberOfTasks; task++) {
+            int first = task * profiles.size() / numberOfTasks;
+            int last = (task + 1) * profiles.size() / numberOfTasks;
+            futures.add(ThreadUtil.submitToWorkers(new ProfileTask(content, profiles, first, last, profileResults)));
+        }
+        RecordingListener documentResult = parse(new ByteArrayInputStream(createDocumentWithMarkers(content, profiles)));
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            LogUtil.e(TAG, e.toString());
+            return false;
+        }
+        // Errors are reported by the sequential reader, so that the message and the items read before the error are the same
+        if (!documentResult.completed) {
+            return false;
+        }
+        for (RecordingListener profileResult : profileResults) {
+            if (!profileResult.completed) {
+                return false;
+            }
+        }
+        LogUtil.d(TAG, "Parsed " + profiles.size() + " profiles in " + numberOfTasks + " tasks");
+        for (Object event : documentResult.events) {
+            if (event instanceof ConfigurationItem && PROFILE_MARKER.equals(((ConfigurationItem) event).getId())) {
+                profileResults[Integer.parseInt(((ConfigurationItem) event).getRawValue())].replayTo(configurationReaderListener);
+            } else {
+                RecordingListener.replay(event, configurationReaderListener);
+            }
+        }
+        configurationReaderListener.onReadingCompleted();
+        return true;
+    }
+
+    private static byte[] createDocumentWithMarkers(Content content, List<int[]> profiles) {
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        int offset = 0;
+        for (int i = 0; i < profiles.size(); i++) {
+            int[] profile = profiles.get(i);
+            document.write(content.getBytes(), offset, profile[0] - offset);
+            byte[] marker = ("<" + PROFILE_MARKER + ">" + i + "</" + PROFILE_MARKER + ">").getBytes(ConfigurationFormat.UTF_8);
+            document.write(marker, 0, marker.length);
+            offset = profile[1];
+        }
+        document.write(content.getBytes(), offset, content.size() - offset);
+        return document.toByteArray();
+    }
+
+    private RecordingListener parse(InputStream inputStream) {
+        RecordingListener recordingListener = new RecordingListener();
+        new XmlConfigurationFileReader(context, recordingListener).readConfiguration(inputStream);
+        return recordingListener;
+    }
+
+    /**
+     * Parses a range of consecutive profiles, every profile is a separate document.
+     */
+    private class ProfileTask implements Callable<Void> {
+        private final Content content;
+        private final List<int[]> profiles;
+        private final int first;
+        private final int last;
+        private final RecordingListener[] results;
+
+        ProfileTask(Content content, List<int[]> profiles, int first, int last, RecordingListener[] results) {
+            this.content = content;
+            this.profiles = profiles;
+            this.first = first;
+            this.last = last;
+            this.results = results;
+        }
+
+        @Override
+        public Void call() {
+            for (int i = first; i < last; i++) {
+                int[] profile = profiles.get(i);
+                results[i] = parse(new ByteArrayInputStream(content.getBytes(), profile[0], profile[1] - profile[0]));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the reported package names, items and includes in their order.
+     */
+    private static class RecordingListener implements ConfigurationIncludeListener {
+        private final List<Object> events = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void onPackageName(String packageName) {
+            events.add(packageName);
+        }
+
+        @Override
+        public void onConfigurationItem(ConfigurationItem configurationItem) {
+            events.add(configurationItem);
+        }
+
+        @Override
+        public void onInclude(@NonNull String path, String source) {
+            events.add(new String[]{path, source});
+        }
+
+        @Override
+        public void onReadingCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void onReadingFailed(String errorMessage) {
+            completed = false;
+        }
+
+        void replayTo(ConfigurationReaderListener listener) {
+            for (Object event : events) {
+                replay(event, listener);
+            }
+        }
+
+        static void replay(Object event, ConfigurationReaderListener listener) {
+            if (event instanceof ConfigurationItem) {
+                listener.onConfigurationItem((ConfigurationItem) event);
+            } else if (event instanceof String[]) {
+                if (listener instanceof ConfigurationIncludeListener) {
+                    String[] include = (String[]) event;
+                    ((ConfigurationIncludeListener) listener).onInclude(include[0], include[1]);
+                }
+            } else {
+                listener.onPackageName((String) event);
+            }
+        }
+    }
+
+    /**
+     * The whole configuration file, read without copying the buffer again.
+     */
+    private static class Content extends ByteArrayOutputStream {
+
+        Content() {
+            super(BUFFER_SIZE);
+        }
+
+        void readFrom(InputStream inputStream) throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                write(buffer, 0, read);
+            }
+        }
+
+        byte[] getBytes() {
+            return buf;
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
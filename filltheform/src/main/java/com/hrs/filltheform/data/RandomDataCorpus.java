@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * RandomDataCorpus contains the lists of names, places and formats used by SeededRandomData for every supported language.
+ * The corpus is bundled as a binary asset which is memory-mapped, a value is read by its offset without parsing the corpus.
+ * The asset is generated from the text files in the corpus directory of the module, see RandomDataCorpusWriter in the unit tests.
+ * <p/>
+ * Layout of the asset, all numbers are big-endian:
+ * <pre>
+ * int magic, int version, int number of lists, int number of languages
+ * per language: int offset of the language tag, int offset of every list or 0 if the language does not define the list
+ * per list: int number of values, int offset of every value
+ * per string: unsigned short number of bytes, UTF-8 bytes
+ * </pre>
+ * Lists missing in a language are taken from the default language, which is the first one.
+ * The corpus is read-only and can be used by several threads.
+ */
+final class RandomDataCorpus {
+
+    static final String ASSET_NAME = "random_data_corpus.bin";
+
+    static final int MAGIC = 0x46544443;
+    static final int VERSION = 1;
+
+    /**
+     * Supported languages, the first one is the default language.
+     */
+    static final String[] LANGUAGES = {"en", "de"};
+    static final int DEFAULT_LANGUAGE = 0;
+
+    static final int FIRST_NAMES_MALE = 0;
+    static final int FIRST_NAMES_FEMALE = 1;
+    static final int LAST_NAMES = 2;
+    static final int CITIES = 3;
+    static final int STATES = 4;
+    static final int STATE_ABBREVIATIONS = 5;
+    static final int COUNTRIES = 6;
+    /**
+     * In patterns, # is replaced with a digit and % with a digit other than 0.
+     */
+    static final int ZIP_CODE_PATTERNS = 7;
+    static final int PHONE_PATTERNS = 8;
+    static final int EMAIL_DOMAINS = 9;
+    static final int WORDS = 10;
+
+    /**
+     * Names of the lists in the text files, in the order of the list constants.
+     */
+    static final String[] LIST_NAMES = {
+            "first_names_male", "first_names_female", "last_names", "cities", "states", "state_abbreviations",
+            "countries", "zip_code_patterns", "phone_patterns", "email_domains", "words"};
+
+    static final int HEADER_SIZE = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int languageEntrySize;
+    // Index of every supported language in the corpus
+    private final int[] languageIndices;
+
+    private RandomDataCorpus(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != LIST_NAMES.length) {
+            throw new IOException("Unknown random data corpus format");
+        }
+        this.languageEntrySize = 4 + 4 * LIST_NAMES.length;
+        int numberOfLanguages = buffer.getInt(12);
+        if (numberOfLanguages < 1 || HEADER_SIZE + (long) numberOfLanguages * languageEntrySize > buffer.limit()) {
+            throw new IOException("Corrupted random data corpus");
+        }
+        this.languageIndices = new int[LANGUAGES.length];
+        for (int i = 0; i < LANGUAGES.length; i++) {
+            languageIndices[i] = DEFAULT_LANGUAGE;
+        }
+        for (int index = 0; index < numberOfLanguages; index++) {
+            int entryOffset = HEADER_SIZE + index * languageEntrySize;
+            // The tag offset and the list offsets
+            for (int field = 0; field <= LIST_NAMES.length; field++) {
+                checkOffset(buffer.getInt(entryOffset + 4 * field));
+            }
+            String tag = readString(buffer.getInt(entryOffset));
+            for (int i = 0; i < LANGUAGES.length; i++) {
+                if (LANGUAGES[i].equals(tag)) {
+                    languageIndices[i] = index;
+                }
+            }
+        }
+        for (int list = 0; list < LIST_NAMES.length; list++) {
+            if (getListOffset(DEFAULT_LANGUAGE, list) == 0) {
+                throw new IOException("Random data corpus misses the list " + LIST_NAMES[list]);
+            }
+        }
+    }
+
+    /**
+     * Wraps a buffer containing the corpus. The position and the limit of the buffer must not be changed afterwards.
+     */
+    static RandomDataCorpus wrap(ByteBuffer buffer) throws IOException {
+        return new RandomDataCorpus(buffer.slice());
+    }
+
+    /**
+     * Maps the corpus from the assets. The asset is stored uncompressed, so it can be mapped directly from the APK.
+     * If it is compressed anyway, it is read into memory. This method does I/O and should be called from a background thread.
+     */
+    static RandomDataCorpus open(AssetManager assetManager) throws IOException {
+        AssetFileDescriptor assetFileDescriptor;
+        try {
+            assetFileDescriptor = assetManager.openFd(ASSET_NAME);
+        } catch (FileNotFoundException e) {
+            return wrap(readFully(assetManager.open(ASSET_NAME)));
+        }
+        // Closing the stream closes the asset file descriptor, the mapping stays valid
+        try (FileInputStream inputStream = assetFileDescriptor.createInputStream()) {
+            return wrap(inputStream.getChannel().map(FileChannel.MapMode.READ_ONLY, assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength()));
+        }
+    }
+
+    private static ByteBuffer readFully(InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] bytes = new byte[8192];
+            int read;
+            while ((read = in.read(bytes)) != -1) {
+                out.write(bytes, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    /**
+     * @return Index of the language in {@link #LANGUAGES} or -1 if the language is not supported.
+     */
+    static int getLanguage(String language) {
+        for (int i = 0; i < LANGUAGES.length; i++) {
+            if (LANGUAGES[i].equals(language)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param language Index of the language in {@link #LANGUAGES}.
+     * @param list     One of the list constants.
+     */
+    int size(int language, int list) {
+        return buffer.getInt(getListOffset(language, list));
+    }
+
+    /**
+     * @return Value with the index in the list of the language.
+     */
+    String get(int language, int list, int index) {
+        int listOffset = getListOffset(language, list);
+        if (index < 0 || index >= buffer.getInt(listOffset)) {
+            throw new IndexOutOfBoundsException("Invalid index " + index + " of the list " + LIST_NAMES[list]);
+        }
+        return readString(buffer.getInt(listOffset + 4 + 4 * index));
+    }
+
+    private int getListOffset(int language, int list) {
+        int listOffset = buffer.getInt(HEADER_SIZE + languageIndices[language] * languageEntrySize + 4 + 4 * list);
+        if (listOffset == 0) {
+            listOffset = buffer.getInt(HEADER_SIZE + languageIndices[DEFAULT_LANGUAGE] * languageEntrySize + 4 + 4 * list);
+        }
+        return listOffset;
+    }
+
+    private String readString(int offset) {
+        // Absolute reads do not change the buffer, so the corpus can be shared between threads
+        int length = buffer.getShort(offset) & 0xffff;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private void checkOffset(int offset) throws IOException {
+        if (offset < 0 || offset > buffer.limit() - 4) {
+            throw new IOException("Corrupted random data corpus");
+        }
+    }
+}
@@ -15,111 +15,186 @@
  */
 package com.hrs.filltheform.data;
 
-import com.thedeanda.lorem.Lorem;
-import com.thedeanda.lorem.LoremIpsum;
+import android.content.res.AssetManager;
+
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheform.util.ThreadUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
 
 /**
  * RandomDataGenerator defines constants that can be used in the configuration file.
  * These constants indicate which type of random data is needed for which id.
- * The following library is used for generating random content: https://github.com/mdeanda/lorem
+ * The values are sampled from the bundled RandomDataCorpus. Names, places, emails, phone numbers and zip codes can be localized
+ * by adding the language to the key, e.g. random_city_de. The keys without language use the default language of the corpus.
+ * Random values are never cached, every use gets a new value. The values are pre-generated in a RandomDataPool,
+ * which is filled when the generator is warmed up and refilled on the background thread, so getting a value does not touch the corpus on the main thread.
+ * <p/>
+ * When a seed is set, the values are generated by SeededRandomData with that seed. They are reproducible and the pool is not used.
  */
-class RandomDataGenerator {
-
-    private static final String FIRST_NAME = "random_first_name";
-    private static final String FIRST_NAME_MALE = "random_first_name_male";
-    private static final String FIRST_NAME_FEMALE = "random_first_name_female";
-    private static final String LAST_NAME = "random_last_name";
-
-    private static final String NAME = "random_name";
-    private static final String NAME_MALE = "random_name_male";
-    private static final String NAME_FEMALE = "random_name_female";
-
-    private static final String EMAIL = "random_email";
-    private static final String EMAIL_LOCAL_PART = "random_email_local_part";
-    private static final String CITY = "random_city";
-    private static final String COUNTRY = "random_country";
-    private static final String PHONE = "random_phone";
-    private static final String STATE_ABBREVIATION = "random_state_abbreviation";
-    private static final String STATE = "random_state";
-    private static final String ZIP_CODE = "random_zip_code";
-
-    private static final String WORD = "random_word";
-    private static final String TEXT = "random_text";
-    private static final String PARAGRAPH = "random_paragraph";
-
-    private final Lorem lorem;
-
-    public RandomDataGenerator() {
-        this.lorem = LoremIpsum.getInstance();
+class RandomDataGenerator implements ConfigurationVariableProvider {
+
+    private static final String TAG = RandomDataGenerator.class.getSimpleName();
+
+    static final String FIRST_NAME = "random_first_name";
+    static final String FIRST_NAME_MALE = "random_first_name_male";
+    static final String FIRST_NAME_FEMALE = "random_first_name_female";
+    static final String LAST_NAME = "random_last_name";
+
+    static final String NAME = "random_name";
+    static final String NAME_MALE = "random_name_male";
+    static final String NAME_FEMALE = "random_name_female";
+
+    static final String EMAIL = "random_email";
+    static final String EMAIL_LOCAL_PART = "random_email_local_part";
+    static final String CITY = "random_city";
+    static final String COUNTRY = "random_country";
+    static final String PHONE = "random_phone";
+    static final String STATE_ABBREVIATION = "random_state_abbreviation";
+    static final String STATE = "random_state";
+    static final String ZIP_CODE = "random_zip_code";
+
+    static final String WORD = "random_word";
+    static final String TEXT = "random_text";
+    static final String PARAGRAPH = "random_paragraph";
+
+    /**
+     * Keys which have a variant for every language of the corpus.
+     */
+    static final List<String> LOCALIZED_KEYS = Collections.unmodifiableList(Arrays.asList(
+            FIRST_NAME, FIRST_NAME_MALE, FIRST_NAME_FEMALE, LAST_NAME,
+            NAME, NAME_MALE, NAME_FEMALE,
+            EMAIL, EMAIL_LOCAL_PART, CITY, COUNTRY, PHONE, STATE_ABBREVIATION, STATE, ZIP_CODE));
+
+    static final List<String> VARIABLE_KEYS = createVariableKeys();
+
+    private static final int POOL_CAPACITY = 8;
+
+    private final AssetManager assetManager;
+    private RandomDataCorpus corpus;
+    private boolean corpusFailed;
+    // Generator of the pooled values, its seed is random
+    private SeededRandomData unseededRandomData;
+
+    // Generator of reproducible values or null if no seed is set
+    private volatile SeededRandomData seededRandomData;
+
+    private final RandomDataPool pool = new RandomDataPool(VARIABLE_KEYS, POOL_CAPACITY, new RandomDataPool.Generator() {
+        @Override
+        public String generate(String key) {
+            SeededRandomData unseededRandomData = getUnseededRandomData();
+            return unseededRandomData == null ? null : unseededRandomData.next(key);
+        }
+    }, new Executor() {
+        @Override
+        public void execute(@SuppressWarnings("NullableProblems") Runnable runnable) {
+            ThreadUtil.runInBackground(runnable);
+        }
+    });
+
+    RandomDataGenerator(AssetManager assetManager) {
+        this.assetManager = assetManager;
+    }
+
+    private static List<String> createVariableKeys() {
+        List<String> keys = new ArrayList<>(LOCALIZED_KEYS);
+        keys.addAll(Arrays.asList(WORD, TEXT, PARAGRAPH));
+        for (String language : RandomDataCorpus.LANGUAGES) {
+            for (String key : LOCALIZED_KEYS) {
+                keys.add(getLocalizedKey(key, language));
+            }
+        }
+        return Collections.unmodifiableList(keys);
     }
 
-    public boolean isRandomVariableKey(String variableKey) {
-        switch (variableKey) {
-            case FIRST_NAME:
-            case FIRST_NAME_MALE:
-            case FIRST_NAME_FEMALE:
-            case LAST_NAME:
-            case NAME:
-            case NAME_MALE:
-            case NAME_FEMALE:
-            case EMAIL:
-            case EMAIL_LOCAL_PART:
-            case CITY:
-            case COUNTRY:
-            case PHONE:
-            case STATE_ABBREVIATION:
-            case STATE:
-            case ZIP_CODE:
-            case WORD:
-            case TEXT:
-            case PARAGRAPH:
-                return true;
-            default:
-                return false;
+    /**
+     * @return Key of the variable which uses the lists of the language, e.g. random_city_de.
+     */
+    static String getLocalizedKey(String key, String language) {
+        return key + "_" + language;
+    }
+
+    /**
+     * Mapping of the corpus does I/O, so it is done on first use or in advance using {@link #warmUp()}.
+     *
+     * @return Corpus or null if it cannot be opened.
+     */
+    private synchronized RandomDataCorpus getCorpus() {
+        if (corpus == null && !corpusFailed) {
+            try {
+                corpus = RandomDataCorpus.open(assetManager);
+            } catch (IOException e) {
+                LogUtil.e(TAG, "Unable to open the random data corpus: " + e.toString());
+                corpusFailed = true;
+            }
         }
+        return corpus;
     }
 
-    public String getRandomContent(String key) {
-        switch (key) {
-            case FIRST_NAME:
-                return lorem.getFirstName();
-            case FIRST_NAME_MALE:
-                return lorem.getFirstNameMale();
-            case FIRST_NAME_FEMALE:
-                return lorem.getFirstNameFemale();
-            case LAST_NAME:
-                return lorem.getLastName();
-            case NAME:
-                return lorem.getName();
-            case NAME_MALE:
-                return lorem.getNameMale();
-            case NAME_FEMALE:
-                return lorem.getNameFemale();
-            case EMAIL:
-                return lorem.getEmail();
-            case EMAIL_LOCAL_PART:
-                return lorem.getEmail().replaceAll("@.*", "");
-            case CITY:
-                return lorem.getCity();
-            case COUNTRY:
-                return lorem.getCountry();
-            case PHONE:
-                return lorem.getPhone();
-            case STATE_ABBREVIATION:
-                return lorem.getStateAbbr();
-            case STATE:
-                return lorem.getStateFull();
-            case ZIP_CODE:
-                return lorem.getZipCode();
-            case WORD:
-                return lorem.getWords(1);
-            case TEXT:
-                return lorem.getWords(1, 20);
-            case PARAGRAPH:
-                return lorem.getParagraphs(1, 20);
-            default:
-                return null;
+    private synchronized SeededRandomData getUnseededRandomData() {
+        if (unseededRandomData == null) {
+            RandomDataCorpus corpus = getCorpus();
+            if (corpus != null) {
+                unseededRandomData = new SeededRandomData(new Random().nextLong(), 0, VARIABLE_KEYS, corpus);
+            }
         }
+        return unseededRandomData;
+    }
+
+    @Override
+    public List<String> getVariableKeys() {
+        return VARIABLE_KEYS;
+    }
+
+    @Override
+    public int getCachePolicy(String variableKey) {
+        return CACHE_POLICY_PER_USE;
+    }
+
+    @Override
+    public int getCost(String variableKey) {
+        return COST_CHEAP;
+    }
+
+    @Override
+    public void warmUp() {
+        getUnseededRandomData();
+        pool.fill();
     }
 
+    @Override
+    public String getValue(String key) {
+        SeededRandomData seededRandomData = this.seededRandomData;
+        if (seededRandomData != null) {
+            return seededRandomData.next(key);
+        }
+        return pool.take(key);
+    }
+
+    /**
+     * Starts reproducible sequences of values for the seed. The sequences start again even if the seed has not changed.
+     * It maps the corpus if it has not been mapped yet.
+     *
+     * @param shardIndex Non-negative index of the shard, different shards get different values.
+     */
+    void setSeed(long seed, int shardIndex) {
+        RandomDataCorpus corpus = getCorpus();
+        if (corpus != null) {
+            seededRandomData = new SeededRandomData(seed, shardIndex, VARIABLE_KEYS, corpus);
+        }
+    }
+
+    void clearSeed() {
+        seededRandomData = null;
+    }
+
+    RandomDataPoolMetrics getPoolMetrics() {
+        return pool.getMetrics();
+    }
 }
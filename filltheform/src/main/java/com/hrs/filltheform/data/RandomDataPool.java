@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RandomDataPool keeps pre-generated random values for every key in a fixed-capacity ring buffer.
+ * Taking a value from the pool is cheap. When a pool drops below the low watermark, all pools are refilled on the refill executor.
+ * If a pool is empty, the value is generated on the calling thread and counted as a miss.
+ * The pool can be used from any thread.
+ */
+class RandomDataPool {
+
+    /**
+     * Generates new random values. It is called from the refill executor and on a miss from the calling thread.
+     */
+    interface Generator {
+        String generate(String key);
+    }
+
+    private final Map<String, Ring> rings = new HashMap<>();
+    private final Generator generator;
+    private final Executor refillExecutor;
+    private final int lowWatermark;
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+    private final RandomDataPoolMetrics metrics = new RandomDataPoolMetrics();
+
+    private final Runnable refillRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // Values taken during the refill schedule the next one
+            refillScheduled.set(false);
+            fill();
+        }
+    };
+
+    /**
+     * @param keys     Keys of the pooled values. The pools are empty until they are filled.
+     * @param capacity Number of values kept for every key.
+     */
+    RandomDataPool(List<String> keys, int capacity, Generator generator, Executor refillExecutor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        for (String key : keys) {
+            rings.put(key, new Ring(capacity));
+        }
+        this.generator = generator;
+        this.refillExecutor = refillExecutor;
+        this.lowWatermark = (capacity + 1) / 2;
+    }
+
+    /**
+     * @return Pre-generated value or a new value if the pool is empty.
+     */
+    String take(String key) {
+        Ring ring = rings.get(key);
+        if (ring == null) {
+            return generator.generate(key);
+        }
+        String value = ring.poll();
+        if (value != null) {
+            metrics.onHit();
+        } else {
+            metrics.onMiss();
+            value = generator.generate(key);
+        }
+        if (ring.size() < lowWatermark) {
+            scheduleRefill();
+        }
+        return value;
+    }
+
+    /**
+     * Fills all pools up to their capacity on the calling thread.
+     */
+    void fill() {
+        long start = System.nanoTime();
+        int values = 0;
+        for (Map.Entry<String, Ring> entry : rings.entrySet()) {
+            Ring ring = entry.getValue();
+            while (!ring.isFull()) {
+                // The value is generated outside of the lock, so taking values is not blocked
+                if (!ring.offer(generator.generate(entry.getKey()))) {
+                    break;
+                }
+                values++;
+            }
+        }
+        if (values > 0) {
+            metrics.onRefill(values, System.nanoTime() - start);
+        }
+    }
+
+    int size(String key) {
+        Ring ring = rings.get(key);
+        return ring == null ? 0 : ring.size();
+    }
+
+    RandomDataPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled.compareAndSet(false, true)) {
+            refillExecutor.execute(refillRunnable);
+        }
+    }
+
+    /**
+     * Fixed-capacity ring buffer of values, the oldest value is taken first.
+     */
+    private static class Ring {
+        private final String[] values;
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            this.values = new String[capacity];
+        }
+
+        synchronized boolean offer(String value) {
+            if (value == null || size == values.length) {
+                return false;
+            }
+            values[(head + size) % values.length] = value;
+            size++;
+            return true;
+        }
+
+        synchronized String poll() {
+            if (size == 0) {
+                return null;
+            }
+            String value = values[head];
+            values[head] = null;
+            head = (head + 1) % values.length;
+            size--;
+            return value;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized boolean isFull() {
+            return size == values.length;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RandomDataPoolMetrics counts how the pre-generated random values are used.
+ * A hit is a value taken from the pool, a miss is a value which had to be generated on the calling thread because the pool was empty.
+ */
+public class RandomDataPoolMetrics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refills = new AtomicLong();
+    private final AtomicLong refilledValues = new AtomicLong();
+    private final AtomicLong lastRefillNanos = new AtomicLong();
+    private final AtomicLong totalRefillNanos = new AtomicLong();
+
+    void onHit() {
+        hits.incrementAndGet();
+    }
+
+    void onMiss() {
+        misses.incrementAndGet();
+    }
+
+    void onRefill(int values, long nanos) {
+        refills.incrementAndGet();
+        refilledValues.addAndGet(values);
+        lastRefillNanos.set(nanos);
+        totalRefillNanos.addAndGet(nanos);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of background refills.
+     */
+    public long getRefills() {
+        return refills.get();
+    }
+
+    /**
+     * @return Number of values generated by all background refills.
+     */
+    public long getRefilledValues() {
+        return refilledValues.get();
+    }
+
+    public long getLastRefillMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastRefillNanos.get());
+    }
+
+    public long getTotalRefillMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalRefillNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "hits: " + getHits() + ", misses: " + getMisses() + ", refills: " + getRefills()
+                + ", refilled values: " + getRefilledValues() + ", last refill: " + getLastRefillMillis() + " ms";
+    }
+}
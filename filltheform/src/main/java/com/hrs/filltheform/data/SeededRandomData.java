@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SeededRandomData generates reproducible random values. Value k of a key is computed only from the seed, the key and k
+ * with the SplitMix64 hash, so it does not depend on the values which were generated before or on other threads.
+ * <p/>
+ * Every key has its own sequence counter, taking the next value is lock-free. Every shard starts its sequences at a different
+ * index and the ranges of the shards do not overlap, so parallel test runs using the same seed get different values.
+ * Emails contain the sequence index and never collide within one seed.
+ * <p/>
+ * The values are sampled from the RandomDataCorpus. Localized keys, e.g. random_city_de, use the lists of their language.
+ */
+final class SeededRandomData {
+
+    static final int SHARD_BITS = 32;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final int MAX_WORDS = 20;
+    private static final int MAX_PARAGRAPHS = 20;
+
+    private final long seed;
+    private final int shardIndex;
+    private final RandomDataCorpus corpus;
+    private final Map<String, Sequence> sequences;
+
+    /**
+     * @param shardIndex Non-negative index of the shard which generates the values.
+     */
+    SeededRandomData(long seed, int shardIndex, List<String> keys, RandomDataCorpus corpus) {
+        if (shardIndex < 0) {
+            throw new IllegalArgumentException("Shard index must not be negative");
+        }
+        this.seed = seed;
+        this.shardIndex = shardIndex;
+        this.corpus = corpus;
+        Map<String, Sequence> sequences = new HashMap<>();
+        long firstIndex = (long) shardIndex << SHARD_BITS;
+        for (String key : keys) {
+            sequences.put(key, new Sequence(key, firstIndex));
+        }
+        this.sequences = Collections.unmodifiableMap(sequences);
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * @return Next value in the sequence of the key or null if the key is unknown.
+     */
+    String next(String key) {
+        Sequence sequence = sequences.get(key);
+        if (sequence == null) {
+            return null;
+        }
+        return generate(key, sequence, sequence.counter.getAndIncrement());
+    }
+
+    /**
+     * @return Value with the index in the sequence of the key or null if the key is unknown.
+     */
+    String generate(String key, long index) {
+        Sequence sequence = sequences.get(key);
+        if (sequence == null) {
+            return null;
+        }
+        return generate(key, sequence, index);
+    }
+
+    private String generate(String key, Sequence sequence, long index) {
+        Stream stream = new Stream(mix64(seed ^ mix64(key.hashCode())) + index * GOLDEN_GAMMA);
+        int language = sequence.language;
+        switch (sequence.baseKey) {
+            case RandomDataGenerator.FIRST_NAME:
+                return stream.pick(language, stream.nextBoolean() ? RandomDataCorpus.FIRST_NAMES_MALE : RandomDataCorpus.FIRST_NAMES_FEMALE);
+            case RandomDataGenerator.FIRST_NAME_MALE:
+                return stream.pick(language, RandomDataCorpus.FIRST_NAMES_MALE);
+            case RandomDataGenerator.FIRST_NAME_FEMALE:
+                return stream.pick(language, RandomDataCorpus.FIRST_NAMES_FEMALE);
+            case RandomDataGenerator.LAST_NAME:
+                return stream.pick(language, RandomDataCorpus.LAST_NAMES);
+            case RandomDataGenerator.NAME:
+                return generateName(stream, language, stream.nextBoolean() ? RandomDataCorpus.FIRST_NAMES_MALE : RandomDataCorpus.FIRST_NAMES_FEMALE);
+            case RandomDataGenerator.NAME_MALE:
+                return generateName(stream, language, RandomDataCorpus.FIRST_NAMES_MALE);
+            case RandomDataGenerator.NAME_FEMALE:
+                return generateName(stream, language, RandomDataCorpus.FIRST_NAMES_FEMALE);
+            case RandomDataGenerator.EMAIL:
+                return generateEmailLocalPart(stream, language, index) + "@" + stream.pick(language, RandomDataCorpus.EMAIL_DOMAINS);
+            case RandomDataGenerator.EMAIL_LOCAL_PART:
+                return generateEmailLocalPart(stream, language, index);
+            case RandomDataGenerator.CITY:
+                return stream.pick(language, RandomDataCorpus.CITIES);
+            case RandomDataGenerator.COUNTRY:
+                return stream.pick(language, RandomDataCorpus.COUNTRIES);
+            case RandomDataGenerator.PHONE:
+                return fillPattern(stream, stream.pick(language, RandomDataCorpus.PHONE_PATTERNS));
+            case RandomDataGenerator.STATE_ABBREVIATION:
+                return stream.pick(language, RandomDataCorpus.STATE_ABBREVIATIONS);
+            case RandomDataGenerator.STATE:
+                return stream.pick(language, RandomDataCorpus.STATES);
+            case RandomDataGenerator.ZIP_CODE:
+                return fillPattern(stream, stream.pick(language, RandomDataCorpus.ZIP_CODE_PATTERNS));
+            case RandomDataGenerator.WORD:
+                return stream.pick(language, RandomDataCorpus.WORDS);
+            case RandomDataGenerator.TEXT:
+                return generateWords(stream, language, 1 + stream.nextInt(MAX_WORDS));
+            case RandomDataGenerator.PARAGRAPH:
+                return generateParagraphs(stream, language, 1 + stream.nextInt(MAX_PARAGRAPHS));
+            default:
+                return null;
+        }
+    }
+
+    private static String generateName(Stream stream, int language, int firstNames) {
+        return stream.pick(language, firstNames) + " " + stream.pick(language, RandomDataCorpus.LAST_NAMES);
+    }
+
+    private static String generateEmailLocalPart(Stream stream, int language, long index) {
+        // The index makes the email unique within the seed
+        String firstName = stream.pick(language, stream.nextBoolean() ? RandomDataCorpus.FIRST_NAMES_MALE : RandomDataCorpus.FIRST_NAMES_FEMALE);
+        return toAscii((firstName + "." + stream.pick(language, RandomDataCorpus.LAST_NAMES)).toLowerCase(Locale.ENGLISH).replace(' ', '_'))
+                + "." + Long.toString(index, Character.MAX_RADIX);
+    }
+
+    /**
+     * Transliterates the German umlauts and sharp s, e.g. to "juergen.mueller", and removes the accents of other letters.
+     */
+    static String toAscii(String text) {
+        String transliterated = text.replace("\u00e4", "ae").replace("\u00f6", "oe").replace("\u00fc", "ue").replace("\u00df", "ss");
+        return Normalizer.normalize(transliterated, Normalizer.Form.NFD).replaceAll("[^\\p{ASCII}]", "");
+    }
+
+    private static String fillPattern(Stream stream, String pattern) {
+        StringBuilder sb = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '#') {
+                sb.append((char) ('0' + stream.nextInt(10)));
+            } else if (c == '%') {
+                sb.append((char) ('1' + stream.nextInt(9)));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String generateWords(Stream stream, int language, int numberOfWords) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numberOfWords; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(stream.pick(language, RandomDataCorpus.WORDS));
+        }
+        return sb.toString();
+    }
+
+    private static String generateParagraphs(Stream stream, int language, int numberOfParagraphs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numberOfParagraphs; i++) {
+            if (i > 0) {
+                sb.append("\n\n");
+            }
+            int numberOfSentences = 2 + stream.nextInt(5);
+            for (int j = 0; j < numberOfSentences; j++) {
+                if (j > 0) {
+                    sb.append(' ');
+                }
+                String sentence = generateWords(stream, language, 4 + stream.nextInt(9));
+                sb.append(Character.toUpperCase(sentence.charAt(0))).append(sentence, 1, sentence.length()).append('.');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * SplitMix64 finalizer, a bijective hash with good avalanche behaviour.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Sequence of one key. A localized key uses the generator of its base key with the lists of its language.
+     */
+    private static class Sequence {
+        final AtomicLong counter;
+        final String baseKey;
+        final int language;
+
+        Sequence(String key, long firstIndex) {
+            this.counter = new AtomicLong(firstIndex);
+            String baseKey = key;
+            int language = RandomDataCorpus.DEFAULT_LANGUAGE;
+            for (int i = 0; i < RandomDataCorpus.LANGUAGES.length; i++) {
+                String suffix = "_" + RandomDataCorpus.LANGUAGES[i];
+                if (key.endsWith(suffix) && RandomDataGenerator.LOCALIZED_KEYS.contains(key.substring(0, key.length() - suffix.length()))) {
+                    baseKey = key.substring(0, key.length() - suffix.length());
+                    language = i;
+                }
+            }
+            this.baseKey = baseKey;
+            this.language = language;
+        }
+    }
+
+    /**
+     * SplitMix64 stream starting at the hashed state of one value. It is used by one thread only.
+     */
+    private class Stream {
+        private long state;
+
+        Stream(long state) {
+            this.state = mix64(state);
+        }
+
+        long nextLong() {
+            state += GOLDEN_GAMMA;
+            return mix64(state);
+        }
+
+        int nextInt(int bound) {
+            // The high bits are used, the modulo bias is negligible for the small bounds used here
+            return (int) ((nextLong() >>> 1) % bound);
+        }
+
+        boolean nextBoolean() {
+            return nextLong() < 0;
+        }
+
+        String pick(int language, int list) {
+            return corpus.get(language, list, nextInt(corpus.size(language, list)));
+        }
+    }
+}
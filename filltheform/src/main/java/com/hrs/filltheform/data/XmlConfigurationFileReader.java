@@ -16,23 +16,18 @@
 package com.hrs.filltheform.data;
 
 import android.content.Context;
-import android.net.Uri;
-import android.os.Environment;
 import android.support.annotation.NonNull;
-import android.text.TextUtils;
 import android.util.Xml;
 
 import com.hrs.filltheform.common.ConfigurationItem;
-import com.hrs.filltheform.common.reader.ConfigurationReader;
+import com.hrs.filltheform.common.reader.ConfigurationIncludeListener;
 import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
 import com.hrs.filltheform.util.LogUtil;
-import com.hrs.filltheformcompanion.FillTheFormCompanion;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
@@ -40,27 +35,22 @@ import java.util.Locale;
 /**
  * XmlConfigurationFileReader is responsible for parsing the data from the xml configuration file and setting up the ServiceConfiguration.
  * One configuration item is defined with <id>value</id>. It is recommended to group more configuration items inside the appropriate <profile name="any_name"></profile> tag.
+ * Other configuration files are included with <include path="file" source="assets|external_storage|other"/>.
  */
-public class XmlConfigurationFileReader implements ConfigurationReader {
+public class XmlConfigurationFileReader extends ConfigurationFileReader {
 
     private static final String TAG = XmlConfigurationFileReader.class.getSimpleName();
-    private static final String CONFIGURATION_VARIABLE_PATTERN = "&(\\w+);";
-
-    private final ConfigurationReaderListener configurationReaderListener;
-    private final Context appContext;
 
     public XmlConfigurationFileReader(Context context, ConfigurationReaderListener configurationReaderListener) {
-        this.appContext = context;
-        this.configurationReaderListener = configurationReaderListener;
+        super(context, configurationReaderListener);
     }
 
-    public void readConfigurationFile(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+    @Override
+    public void readConfiguration(@NonNull InputStream inputStream) {
         try {
             XmlPullParserFactory pullParserFactory = XmlPullParserFactory.newInstance();
             XmlPullParser parser = pullParserFactory.newPullParser();
 
-            InputStream inputStream = getInputStream(source, configurationFilePath);
-
             parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
             parser.setFeature(Xml.FEATURE_RELAXED, true);
             parser.setInput(inputStream, null);
@@ -73,29 +63,11 @@ public class XmlConfigurationFileReader implements ConfigurationReader {
         }
     }
 
-    private InputStream getInputStream(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) throws IOException, IllegalArgumentException {
-        if (TextUtils.isEmpty(configurationFilePath)) {
-            throw new IllegalArgumentException("Configuration file path is empty");
-        }
-        if (source == FillTheFormCompanion.SOURCE_ASSETS) {
-            return appContext.getAssets().open(configurationFilePath);
-        } else {
-            Uri uri;
-            if (source == FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE) {
-                File sdcard = Environment.getExternalStorageDirectory();
-                File file = new File(sdcard, configurationFilePath);
-                uri = Uri.fromFile(file);
-            } else {
-                uri = Uri.parse(configurationFilePath);
-            }
-            return appContext.getContentResolver().openInputStream(uri);
-        }
-    }
-
     private void parseConfigurationFile(XmlPullParser parser) throws XmlPullParserException, IOException {
         int eventType = parser.getEventType();
         String profile = null;
-        ConfigurationItem configurationItem = null;
+        // Item which is being read, it is reported when its end tag is reached
+        ConfigurationItem.Builder itemBuilder = null;
         String name;
 
         while (eventType != XmlPullParser.END_DOCUMENT) {
@@ -106,22 +78,24 @@ public class XmlConfigurationFileReader implements ConfigurationReader {
                     name = parser.getName();
                     if (name.equalsIgnoreCase("package")) {
                         configurationReaderListener.onPackageName(parser.nextText());
+                    } else if (name.equalsIgnoreCase("include") && itemBuilder == null) {
+                        onInclude(parser.getAttributeValue(null, "path"), parser.getAttributeValue(null, "source"));
                     } else if (name.equalsIgnoreCase("profile")) {
                         profile = parser.getAttributeValue(null, "name");
-                    } else if (configurationItem == null && (profile != null || !isParentName(name))) {
-                        String label = parser.getAttributeValue(null, "label");
-                        if (parser.next() == XmlPullParser.TEXT) {
-                            configurationItem = new ConfigurationItem(name, profile, parser.getText());
-                            configurationItem.setLabel(label);
-                            configurationReaderListener.onConfigurationItem(configurationItem);
+                    } else if (itemBuilder == null && (profile != null || !isParentName(name))) {
+                        itemBuilder = new ConfigurationItem.Builder(name, profile).setLabel(parser.getAttributeValue(null, "label"));
+                        eventType = parser.next();
+                        if (eventType == XmlPullParser.TEXT) {
+                            itemBuilder.setRawValue(parser.getText());
                         } else {
-                            configurationItem = new ConfigurationItem(name, profile);
+                            // The item has no text, the next event is handled as usual
+                            continue;
                         }
-                    } else if (configurationItem != null && (profile != null || !isParentName(name))) {
+                    } else if (itemBuilder != null && (profile != null || !isParentName(name))) {
                         if (name.equalsIgnoreCase("value")) {
-                            configurationItem.setRawValue(parser.nextText());
+                            itemBuilder.setRawValue(parser.nextText());
                         } else if (name.equalsIgnoreCase("id")) {
-                            configurationItem.rememberLastEntryForId(parser.nextText());
+                            itemBuilder.rememberLastEntryForId(parser.nextText());
                         }
                     }
                     break;
@@ -129,8 +103,9 @@ public class XmlConfigurationFileReader implements ConfigurationReader {
                     name = parser.getName();
                     if (name.equalsIgnoreCase("profile") && profile != null) {
                         profile = null;
-                    } else if (configurationItem != null && name.equalsIgnoreCase(configurationItem.getId())) {
-                        configurationItem = null;
+                    } else if (itemBuilder != null && name.equalsIgnoreCase(itemBuilder.getId())) {
+                        configurationReaderListener.onConfigurationItem(itemBuilder.build());
+                        itemBuilder = null;
                     }
                     break;
                 default:
@@ -142,6 +117,15 @@ public class XmlConfigurationFileReader implements ConfigurationReader {
         configurationReaderListener.onReadingCompleted();
     }
 
+    private void onInclude(String path, String source) throws XmlPullParserException {
+        if (path == null) {
+            throw new XmlPullParserException("Include without a path");
+        }
+        if (configurationReaderListener instanceof ConfigurationIncludeListener) {
+            ((ConfigurationIncludeListener) configurationReaderListener).onInclude(path, source);
+        }
+    }
+
     private boolean isParentName(String name) {
         switch (name.toUpperCase(Locale.ENGLISH)) {
             case "FILLTHEFORMCONFIG":
@@ -152,9 +136,4 @@ public class XmlConfigurationFileReader implements ConfigurationReader {
                 return false;
         }
     }
-
-    @Override
-    public String getConfigurationVariablePattern() {
-        return CONFIGURATION_VARIABLE_PATTERN;
-    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.NonNull;
+import android.util.Xml;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.ConfigurationPatch;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * XmlConfigurationPatchReader parses a configuration patch. Items inside item operations are defined the same way as in the configuration file:
+ * <pre>
+ * &lt;fillTheFormPatch&gt;
+ *     &lt;addPackage&gt;com.example.app&lt;/addPackage&gt;
+ *     &lt;removePackage&gt;com.example.old&lt;/removePackage&gt;
+ *     &lt;removeProfile name="old_profile"/&gt;
+ *     &lt;replaceItems profile="my_profile"&gt;&lt;first_name&gt;Max&lt;/first_name&gt;&lt;/replaceItems&gt;
+ *     &lt;addItems profile="my_profile"&gt;&lt;email&gt;max@example.com&lt;/email&gt;&lt;/addItems&gt;
+ *     &lt;removeItems profile="my_profile"&gt;&lt;phone/&gt;&lt;/removeItems&gt;
+ * &lt;/fillTheFormPatch&gt;
+ * </pre>
+ * Item operations without the profile attribute apply to the items which are defined outside of any profile.
+ */
+public class XmlConfigurationPatchReader {
+
+    private static final String TAG_PATCH = "filltheformpatch";
+    private static final String TAG_ADD_PACKAGE = "addpackage";
+    private static final String TAG_REMOVE_PACKAGE = "removepackage";
+    private static final String TAG_REMOVE_PROFILE = "removeprofile";
+    private static final String TAG_ADD_ITEMS = "additems";
+    private static final String TAG_REPLACE_ITEMS = "replaceitems";
+    private static final String TAG_REMOVE_ITEMS = "removeitems";
+
+    public ConfigurationPatch readPatch(int baseGeneration, @NonNull String patch) throws XmlPullParserException, IOException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setFeature(Xml.FEATURE_RELAXED, true);
+        parser.setInput(new StringReader(patch));
+
+        ConfigurationPatch configurationPatch = new ConfigurationPatch(baseGeneration);
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                readOperation(parser, configurationPatch);
+            }
+            eventType = parser.next();
+        }
+        return configurationPatch;
+    }
+
+    private void readOperation(XmlPullParser parser, ConfigurationPatch configurationPatch) throws XmlPullParserException, IOException {
+        String name = parser.getName().toLowerCase(Locale.ENGLISH);
+        String profile = parser.getAttributeValue(null, "profile");
+        switch (name) {
+            case TAG_PATCH:
+                break;
+            case TAG_ADD_PACKAGE:
+                configurationPatch.addPackage(parser.nextText().trim());
+                break;
+            case TAG_REMOVE_PACKAGE:
+                configurationPatch.removePackage(parser.nextText().trim());
+                break;
+            case TAG_REMOVE_PROFILE:
+                configurationPatch.removeProfile(parser.getAttributeValue(null, "name"));
+                break;
+            case TAG_ADD_ITEMS:
+                readItems(parser, configurationPatch, profile, false);
+                break;
+            case TAG_REPLACE_ITEMS:
+                readItems(parser, configurationPatch, profile, true);
+                break;
+            case TAG_REMOVE_ITEMS:
+                String operationName = parser.getName();
+                while (nextInside(parser, operationName)) {
+                    if (parser.getEventType() == XmlPullParser.START_TAG) {
+                        configurationPatch.removeItems(parser.getName(), profile);
+                    }
+                }
+                break;
+            default:
+                throw new XmlPullParserException("Unknown patch operation: " + parser.getName(), parser, null);
+        }
+    }
+
+    private void readItems(XmlPullParser parser, ConfigurationPatch configurationPatch, String profile, boolean replace) throws XmlPullParserException, IOException {
+        String operationName = parser.getName();
+        Set<String> replacedIds = new HashSet<>();
+        while (nextInside(parser, operationName)) {
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+            ConfigurationItem configurationItem = readItem(parser, profile);
+            // The first item with the same id replaces the existing items, the following items are added to it
+            if (replace && replacedIds.add(configurationItem.getId())) {
+                configurationPatch.replaceItems(configurationItem);
+            } else {
+                configurationPatch.addItem(configurationItem);
+            }
+        }
+    }
+
+    private ConfigurationItem readItem(XmlPullParser parser, String profile) throws XmlPullParserException, IOException {
+        String id = parser.getName();
+        ConfigurationItem.Builder itemBuilder = new ConfigurationItem.Builder(id, profile).setLabel(parser.getAttributeValue(null, "label"));
+        while (nextInside(parser, id)) {
+            int eventType = parser.getEventType();
+            if (eventType == XmlPullParser.TEXT && !parser.isWhitespace()) {
+                itemBuilder.setRawValue(parser.getText());
+            } else if (eventType == XmlPullParser.START_TAG) {
+                if (parser.getName().equalsIgnoreCase("value")) {
+                    itemBuilder.setRawValue(parser.nextText());
+                } else if (parser.getName().equalsIgnoreCase("id")) {
+                    itemBuilder.rememberLastEntryForId(parser.nextText());
+                }
+            }
+        }
+        return itemBuilder.build();
+    }
+
+    /**
+     * Moves to the next event and checks whether the parser is still inside of the element with the given name.
+     */
+    private static boolean nextInside(XmlPullParser parser, String elementName) throws XmlPullParserException, IOException {
+        int eventType = parser.next();
+        if (eventType == XmlPullParser.END_DOCUMENT) {
+            throw new XmlPullParserException("Element is not closed: " + elementName, parser, null);
+        }
+        return eventType != XmlPullParser.END_TAG || !elementName.equals(parser.getName());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * XmlProfileScanner finds the byte ranges of the profile elements without parsing the configuration.
+ * Only tags, comments and CDATA sections are recognized. Every profile element is a well-formed document on its own,
+ * so the profiles can be parsed independently of each other.
+ */
+final class XmlProfileScanner {
+
+    private static final byte[] COMMENT_START = "<!--".getBytes(ConfigurationFormat.UTF_8);
+    private static final byte[] COMMENT_END = "-->".getBytes(ConfigurationFormat.UTF_8);
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes(ConfigurationFormat.UTF_8);
+    private static final byte[] CDATA_END = "]]>".getBytes(ConfigurationFormat.UTF_8);
+    private static final byte[] PROCESSING_INSTRUCTION_END = "?>".getBytes(ConfigurationFormat.UTF_8);
+    private static final String PROFILE = "profile";
+
+    private XmlProfileScanner() {
+    }
+
+    /**
+     * @return Start and end offsets of all profile elements in document order or null if the content can not be split,
+     * e.g. because it is not encoded in UTF-8, declares a DOCTYPE or contains nested profiles.
+     */
+    @Nullable
+    static List<int[]> findProfiles(byte[] content, int length) {
+        if (length >= 2 && (content[0] == (byte) 0xFE || content[0] == (byte) 0xFF)) {
+            // UTF-16 byte order mark
+            return null;
+        }
+        List<int[]> profiles = new ArrayList<>();
+        int profileStart = -1;
+        int i = 0;
+        while (i < length) {
+            if (content[i] != '<') {
+                i++;
+                continue;
+            }
+            if (startsWith(content, length, i, COMMENT_START)) {
+                i = skipPast(content, length, i + COMMENT_START.length, COMMENT_END);
+            } else if (startsWith(content, length, i, CDATA_START)) {
+                i = skipPast(content, length, i + CDATA_START.length, CDATA_END);
+            } else if (i + 1 < length && content[i + 1] == '!') {
+                // Entities declared in a DOCTYPE would be unknown to the parsers of the single profiles
+                return null;
+            } else if (i + 1 < length && content[i + 1] == '?') {
+                int end = skipPast(content, length, i + 2, PROCESSING_INSTRUCTION_END);
+                if (end < 0 || !isUtf8Declaration(content, i, end)) {
+                    return null;
+                }
+                i = end;
+            } else {
+                int tagEnd = findTagEnd(content, length, i);
+                if (tagEnd < 0) {
+                    return null;
+                }
+                boolean endTag = i + 1 < length && content[i + 1] == '/';
+                if (isTagName(content, length, endTag ? i + 2 : i + 1, PROFILE)) {
+                    if (endTag) {
+                        if (profileStart < 0) {
+                            return null;
+                        }
+                        profiles.add(new int[]{profileStart, tagEnd + 1});
+                        profileStart = -1;
+                    } else if (profileStart >= 0) {
+                        return null;
+                    } else if (content[tagEnd - 1] == '/') {
+                        profiles.add(new int[]{i, tagEnd + 1});
+                    } else {
+                        profileStart = i;
+                    }
+                }
+                i = tagEnd + 1;
+            }
+            if (i < 0) {
+                return null;
+            }
+        }
+        return profileStart < 0 ? profiles : null;
+    }
+
+    private static boolean startsWith(byte[] content, int length, int offset, byte[] prefix) {
+        if (offset + prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (content[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Offset after the end marker or -1 if it is not found.
+     */
+    private static int skipPast(byte[] content, int length, int offset, byte[] end) {
+        for (int i = offset; i + end.length <= length; i++) {
+            if (startsWith(content, length, i, end)) {
+                return i + end.length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Offset of the closing '>' of the tag, quoted attribute values are skipped.
+     */
+    private static int findTagEnd(byte[] content, int length, int offset) {
+        byte quote = 0;
+        for (int i = offset + 1; i < length; i++) {
+            byte b = content[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTagName(byte[] content, int length, int offset, String name) {
+        if (offset + name.length() >= length) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase((char) content[offset + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+        byte next = content[offset + name.length()];
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\r' || next == '\n';
+    }
+
+    private static boolean isUtf8Declaration(byte[] content, int start, int end) {
+        String declaration = new String(content, start, end - start, ConfigurationFormat.UTF_8).toLowerCase(Locale.ENGLISH);
+        int encoding = declaration.indexOf("encoding");
+        return encoding < 0 || declaration.indexOf("utf-8", encoding) >= 0;
+    }
+}
@@ -25,7 +25,6 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import com.hrs.filltheform.R;
-import com.hrs.filltheform.common.ConfigurationItem;
 
 /**
  * Adapter for the list of items shown in the FillTheFormDialog.
@@ -69,7 +68,7 @@ public class ConfigurationItemsAdapter extends RecyclerView.Adapter<Configuratio
 
     @Override
     public void onBindViewHolder(final ViewHolder viewHolder, int position) {
-        ConfigurationItem configurationItem = model.getConfigurationItem(position);
+        RenderedItem configurationItem = model.getConfigurationItem(position);
 
         if (configurationItem != null) {
             viewHolder.valueTextView.setText(configurationItem.getLabel());
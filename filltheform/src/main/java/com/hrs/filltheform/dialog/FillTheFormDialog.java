@@ -16,8 +16,6 @@
 package com.hrs.filltheform.dialog;
 
 import android.annotation.SuppressLint;
-import android.content.ClipData;
-import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -25,12 +23,9 @@ import android.content.res.Resources;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
-import android.os.Build;
-import android.os.Bundle;
 import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.text.TextUtils;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -45,15 +40,38 @@ import com.hrs.filltheform.common.ConfigurationItem;
 import com.hrs.filltheform.common.PropertyChangedListener;
 import com.hrs.filltheform.data.ConfigurationVariables;
 import com.hrs.filltheform.main.MainActivity;
+import com.hrs.filltheform.util.NodeTextUtil;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * FillTheFormDialog shows a list of input data available for the selected AccessibilityNode. It also gives the option to open the MainActivity.
  */
 public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDialogModel.FillTheFormDialogModelHelper, FillTheFormDialogModel.ActionCallbacks {
 
+    /**
+     * FillTheFormDialogListener executes the dialog actions which are handled by the service.
+     */
+    public interface FillTheFormDialogListener {
+
+        /**
+         * @param rootNode Root node of the window with the selected node. It is recycled after this call.
+         * @param profile  Selected profile or null.
+         */
+        void onFillAllRequested(AccessibilityNodeInfoCompat rootNode, String profile);
+
+        /**
+         * @param filledNode Node which has just been filled. It is recycled when the next node is shown.
+         */
+        void onAdvanceToNextFieldRequested(AccessibilityNodeInfoCompat filledNode);
+    }
+
     private static final String FAST_MODE_ENABLED_KEY = "fast_mode_enabled_key";
+    private static final String AUTO_ADVANCE_ENABLED_KEY = "auto_advance_enabled_key";
+    private static final int PRE_CREATED_NORMAL_ITEM_VIEW_HOLDERS = 4;
+    private static final float AUTO_ADVANCE_ENABLED_ALPHA = 1f;
+    private static final float AUTO_ADVANCE_DISABLED_ALPHA = 0.4f;
 
     private WindowManager windowManager;
     private FrameLayout dialogView;
@@ -63,13 +81,16 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
     private View dialogMenu;
     private RecyclerView configurationItemsView;
     private ImageButton fastModeButton;
+    private ImageButton autoAdvanceButton;
 
     private final Context context;
     private final FillTheFormDialogModel model;
+    private final LastEntryFile lastEntryFile;
     private final int dialogInitialOffset;
     private final ConfigurationVariables configurationVariables;
     private ConfigurationItemsAdapter configurationItemsAdapter;
     private AccessibilityNodeInfoCompat selectedNodeInfo;
+    private FillTheFormDialogListener fillTheFormDialogListener;
 
     public FillTheFormDialog(Context context) {
         this.context = context;
@@ -81,21 +102,47 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         int expandedDialogHeight = resources.getDimensionPixelOffset(R.dimen.expanded_dialog_height);
         this.dialogInitialOffset = normalDialogWidth;
         // Set up the model
-        this.model = new FillTheFormDialogModel(this);
+        this.lastEntryFile = new LastEntryFile(context);
+        LastEntryStore lastEntryStore = new LastEntryStore(resources.getInteger(R.integer.last_entries_capacity),
+                resources.getInteger(R.integer.last_entries_per_id), lastEntryFile);
+        this.model = new FillTheFormDialogModel(this, lastEntryStore);
         model.setPropertyChangedListener(this);
         model.setActionCallbacks(this);
         model.setNormalDialogDimensions(normalDialogWidth, normalDialogHeight);
         model.setExpandedDialogDimensions(expandedDialogWidth, expandedDialogHeight);
         model.setStatusBarHeight(getStatusBarHeight());
+        // Init configuration variables
+        this.configurationVariables = new ConfigurationVariables(context);
+    }
+
+    /**
+     * Inflates the dialog view, pre-creates the item view holders and reads the fast mode config.
+     * It is called by the service when the main thread is idle. If the dialog is needed earlier, it is prepared on first use.
+     */
+    public void prepare() {
+        if (dialogView != null) {
+            return;
+        }
         // Prepare dialog view
         prepareDialogView();
+        preCreateItemViewHolders();
         // Read fast mode config from shared prefs
         readFastModeConfigFromSharedPreferences();
-        // Init configuration variables
-        this.configurationVariables = new ConfigurationVariables(context);
+        readAutoAdvanceConfigFromSharedPreferences();
+        // Start reading the stored last entries
+        model.restoreLastEntries();
+    }
+
+    public void setFillTheFormDialogListener(FillTheFormDialogListener fillTheFormDialogListener) {
+        this.fillTheFormDialogListener = fillTheFormDialogListener;
+    }
+
+    public boolean isPrepared() {
+        return dialogView != null;
     }
 
     public void showDialog(AccessibilityNodeInfoCompat nodeInfo, int accessibilityEventType, List<ConfigurationItem> selectedConfigurationItems) {
+        prepare();
         if (selectedNodeInfo != null) {
             selectedNodeInfo.recycle();
             selectedNodeInfo = null;
@@ -126,6 +173,13 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         model.clearData();
     }
 
+    /**
+     * Writes the last entries which have not been written yet. It is called when the service is destroyed.
+     */
+    public void saveLastEntries() {
+        lastEntryFile.flush();
+    }
+
     private int getStatusBarHeight() {
         Resources resources = context.getResources();
         int resourceId = resources.getIdentifier("status_bar_height", "dimen", "android");
@@ -195,6 +249,20 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
                 model.onOpenFillTheFormAppButtonClicked();
             }
         });
+        ImageButton fillAllButton = (ImageButton) dialogContent.findViewById(R.id.fill_all_button);
+        fillAllButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                model.onFillAllButtonClicked();
+            }
+        });
+        autoAdvanceButton = (ImageButton) dialogContent.findViewById(R.id.auto_advance_button);
+        autoAdvanceButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                model.toggleAutoAdvance();
+            }
+        });
         fastModeButton = (ImageButton) dialogContent.findViewById(R.id.fast_mode_button);
         fastModeButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -213,6 +281,14 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         dialogView.addView(dialogContent);
     }
 
+    private void preCreateItemViewHolders() {
+        RecyclerView.RecycledViewPool recycledViewPool = configurationItemsView.getRecycledViewPool();
+        for (int i = 0; i < PRE_CREATED_NORMAL_ITEM_VIEW_HOLDERS; i++) {
+            recycledViewPool.putRecycledView(configurationItemsAdapter.createViewHolder(configurationItemsView, FillTheFormDialogModel.VIEW_TYPE_NORMAL_ITEM));
+        }
+        recycledViewPool.putRecycledView(configurationItemsAdapter.createViewHolder(configurationItemsView, FillTheFormDialogModel.VIEW_TYPE_SELECTED_ITEM));
+    }
+
     // Setting up the dialog position
 
     private void setUpInitialDialogPosition() {
@@ -230,57 +306,6 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         model.setDialogPosition(dialogParams.x, dialogParams.y);
     }
 
-    // Fill selected node with data
-
-    private void fillTheSelectedNodeWithData(String inputData) {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-            fillPreLollipop(inputData);
-        } else {
-            Bundle arguments = new Bundle();
-            arguments.putCharSequence(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, inputData);
-            selectedNodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_SET_TEXT, arguments);
-        }
-    }
-
-    private void fillPreLollipop(String inputData) {
-        boolean shouldRecycle = true;
-        AccessibilityNodeInfoCompat nodeInfo = null;
-        List<AccessibilityNodeInfoCompat> nodeInfoList = selectedNodeInfo.findAccessibilityNodeInfosByViewId(selectedNodeInfo.getViewIdResourceName());
-        if (nodeInfoList != null && nodeInfoList.size() > 0) {
-            nodeInfo = nodeInfoList.get(0);
-        }
-        if (nodeInfo == null) {
-            nodeInfo = selectedNodeInfo;
-            shouldRecycle = false;
-        }
-        selectAll(nodeInfo);
-        copyToClipboard(inputData);
-        nodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_PASTE);
-        if (shouldRecycle) {
-            nodeInfo.recycle();
-        }
-    }
-
-    private void copyToClipboard(String inputData) {
-        ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
-        ClipData clip = ClipData.newPlainText(inputData, inputData);
-        clipboard.setPrimaryClip(clip);
-    }
-
-    private void selectAll(AccessibilityNodeInfoCompat nodeInfo) {
-        if (!TextUtils.isEmpty(nodeInfo.getText())) {
-            Bundle arguments = new Bundle();
-            arguments.putInt(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_SELECTION_START_INT, 0);
-            arguments.putInt(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_SELECTION_END_INT, nodeInfo.getText().length());
-            nodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_SET_SELECTION, arguments);
-        }
-    }
-
-    private void pasteTheData(String inputData) {
-        copyToClipboard(inputData);
-        selectedNodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_PASTE);
-    }
-
     // FillTheFormDialogModelHelper methods
 
     @Override
@@ -293,11 +318,6 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         return configurationVariables.getValue(variableKey);
     }
 
-    @Override
-    public void clearConfigurationVariables() {
-        configurationVariables.clear();
-    }
-
     // Fast mode shared prefs management
 
     private void storeFastModeConfigInSharedPreferences(boolean enabled) {
@@ -312,10 +332,23 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         model.setFastModeEnabled(fastModeEnabled);
     }
 
+    private void storeAutoAdvanceConfigInSharedPreferences(boolean enabled) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(MainActivity.MY_SHARED_PREFERENCES, Context.MODE_PRIVATE).edit();
+        editor.putBoolean(AUTO_ADVANCE_ENABLED_KEY, enabled);
+        editor.apply();
+    }
+
+    private void readAutoAdvanceConfigFromSharedPreferences() {
+        SharedPreferences prefs = context.getSharedPreferences(MainActivity.MY_SHARED_PREFERENCES, Context.MODE_PRIVATE);
+        boolean autoAdvanceEnabled = prefs.getBoolean(AUTO_ADVANCE_ENABLED_KEY, false);
+        model.setAutoAdvanceEnabled(autoAdvanceEnabled);
+    }
+
     // Handle property changes
 
     @Override
     public void onPropertyChanged(String property) {
+        prepare();
         switch (property) {
             case FillTheFormDialogModel.PROPERTY_DIALOG_VISIBILITY:
                 if (model.isDialogVisible()) {
@@ -374,6 +407,9 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
                     fastModeButton.setImageResource(R.drawable.ic_normal_mode);
                 }
                 break;
+            case FillTheFormDialogModel.PROPERTY_AUTO_ADVANCE_BUTTON_ICON:
+                autoAdvanceButton.setAlpha(model.isAutoAdvanceEnabled() ? AUTO_ADVANCE_ENABLED_ALPHA : AUTO_ADVANCE_DISABLED_ALPHA);
+                break;
             default:
                 break;
         }
@@ -389,13 +425,13 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
     }
 
     @Override
-    public void setText(String text) {
-        fillTheSelectedNodeWithData(text);
+    public boolean setText(String text) {
+        return NodeTextUtil.setText(context, selectedNodeInfo, text);
     }
 
     @Override
     public void pasteText(String text) {
-        pasteTheData(text);
+        NodeTextUtil.pasteText(context, selectedNodeInfo, text);
     }
 
     @Override
@@ -403,6 +439,34 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         storeFastModeConfigInSharedPreferences(enabled);
     }
 
+    @Override
+    public void saveAutoAdvanceState(boolean enabled) {
+        storeAutoAdvanceConfigInSharedPreferences(enabled);
+    }
+
+    @Override
+    public void advanceToNextField() {
+        if (fillTheFormDialogListener != null && selectedNodeInfo != null) {
+            fillTheFormDialogListener.onAdvanceToNextFieldRequested(selectedNodeInfo);
+        }
+    }
+
+    @Override
+    public void fillAll(String profile) {
+        if (fillTheFormDialogListener == null || selectedNodeInfo == null) {
+            return;
+        }
+        // The dialog window might be the active window now, so the window of the selected node is used
+        AccessibilityNodeInfoCompat rootNode = AccessibilityNodeInfoCompat.obtain(selectedNodeInfo);
+        AccessibilityNodeInfoCompat parent;
+        while ((parent = rootNode.getParent()) != null) {
+            rootNode.recycle();
+            rootNode = parent;
+        }
+        fillTheFormDialogListener.onFillAllRequested(rootNode, profile);
+        rootNode.recycle();
+    }
+
     // Dialog view
 
     private void removeDialogView() {
@@ -431,10 +495,36 @@ public class FillTheFormDialog implements PropertyChangedListener, FillTheFormDi
         model.setFastModeEnabled(false);
     }
 
+    public void setAutoAdvanceEnabled(boolean enabled) {
+        model.setAutoAdvanceEnabled(enabled);
+    }
+
+    public boolean isDialogVisible() {
+        return model.isDialogVisible();
+    }
+
     public void selectNextProfile() {
         model.selectNextProfile();
     }
 
+    /**
+     * @return Index of the selected profile or -1 if the profile does not exist.
+     */
+    public int selectProfile(String profile) {
+        return model.selectProfile(profile);
+    }
+
+    /**
+     * @return Name of the selected profile or null if the index is out of range.
+     */
+    public String selectProfile(int index) {
+        return model.selectProfile(index);
+    }
+
+    public void onConfigurationReloaded(List<String> profiles, Set<String> ids) {
+        model.onConfigurationReloaded(profiles, ids);
+    }
+
     public void setProfiles(List<String> profiles) {
         model.setProfiles(profiles);
     }
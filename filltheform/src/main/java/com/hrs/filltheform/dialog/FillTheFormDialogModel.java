@@ -20,6 +20,7 @@ import android.support.annotation.VisibleForTesting;
 
 import com.hrs.filltheform.common.ConfigurationItem;
 import com.hrs.filltheform.common.PropertyChangedListener;
+import com.hrs.filltheform.data.ConfigurationVariableResolver;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -30,8 +31,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 /**
  * This model class holds the state and manages behavior of the FillTheFormDialog.
@@ -46,8 +46,6 @@ class FillTheFormDialogModel {
         boolean isConfigurationVariableKey(String variableKey);
 
         String getConfigurationVariableValue(String variableKey);
-
-        void clearConfigurationVariables();
     }
 
     /**
@@ -57,11 +55,20 @@ class FillTheFormDialogModel {
 
         void openFillTheFormApp();
 
-        void setText(String text);
+        /**
+         * @return True if the text has been set.
+         */
+        boolean setText(String text);
 
         void pasteText(String text);
 
         void saveFastModeState(boolean enabled);
+
+        void fillAll(String profile);
+
+        void saveAutoAdvanceState(boolean enabled);
+
+        void advanceToNextField();
     }
 
     /**
@@ -103,6 +110,7 @@ class FillTheFormDialogModel {
     public static final String PROPERTY_DIALOG_POSITION = "property_dialog_position";
     public static final String PROPERTY_DIALOG_INITIAL_POSITION = "property_dialog_initial_position";
     public static final String PROPERTY_FAST_MODE_BUTTON_ICON = "property_fast_mode_button_icon";
+    public static final String PROPERTY_AUTO_ADVANCE_BUTTON_ICON = "property_auto_advance_button_icon";
     public static final String PROPERTY_DATA_SET = "property_data_set";
     public static final String PROPERTY_DATA_SET_SCROLL_POSITION = "property_data_set_scroll_position";
 
@@ -138,22 +146,40 @@ class FillTheFormDialogModel {
     private long startClickTime;
 
     // Configuration items data
-    private List<ConfigurationItem> sortedConfigurationItems;
+    private List<RenderedItem> sortedConfigurationItems;
     private ConfigurationItem selectedConfigItem;
+    // Last entry of the selected row or null if the selected row shows a configuration item
+    private LastEntry selectedLastEntry;
     private String configurationVariablePattern;
+    private final ConfigurationVariableResolver.VariableValues variableValues = new ConfigurationVariableResolver.VariableValues() {
+        @Override
+        public String getValue(String variableKey) {
+            return helper.getConfigurationVariableValue(variableKey);
+        }
+    };
 
     // Profiles
     private List<String> profiles;
+    private Map<String, Integer> profileIndices = new HashMap<>();
     private int selectedProfileIndex;
+    // Profile selected by name or index, it is used for sorting until an item is selected
+    private String requestedProfile;
 
     // Fast mode
     private boolean fastModeEnabled;
+    // Auto advance to the next field after a fill in fast mode
+    private boolean autoAdvanceEnabled;
 
     // Saved last entries
-    private Map<String, ConfigurationItem> lastEntries = new HashMap<>();
+    private final LastEntryStore lastEntries;
 
     public FillTheFormDialogModel(FillTheFormDialogModelHelper helper) {
+        this(helper, new LastEntryStore());
+    }
+
+    public FillTheFormDialogModel(FillTheFormDialogModelHelper helper, LastEntryStore lastEntries) {
         this.helper = helper;
+        this.lastEntries = lastEntries;
     }
 
     public void setActionCallbacks(ActionCallbacks actionCallbacks) {
@@ -175,37 +201,33 @@ class FillTheFormDialogModel {
     }
 
     public void onRemoveItemButtonClicked(int position) {
-        ConfigurationItem configurationItem = sortedConfigurationItems.get(position);
-        lastEntries.remove(configurationItem.getId());
+        LastEntry lastEntry = sortedConfigurationItems.get(position).getLastEntry();
+        if (lastEntry != null) {
+            lastEntries.remove(lastEntry);
+        }
         sortedConfigurationItems.remove(position);
         notifyPropertyChanged(PROPERTY_DATA_SET);
     }
 
     @VisibleForTesting
     String getSelectedConfigItemValue() {
-        if (selectedConfigItem != null && selectedConfigItem.isLastEntryItem()) {
-            return selectedConfigItem.getValue();
+        if (selectedLastEntry != null) {
+            return selectedLastEntry.getValue();
         }
-
-        ConfigurationItem preparedConfigurationItem = prepareSelectedConfigurationItemForInput();
-        if (preparedConfigurationItem != null) {
-            String value = preparedConfigurationItem.getValue();
-            if (preparedConfigurationItem.shouldRememberLastEntry()) {
-                rememberLastEntry(preparedConfigurationItem);
-            }
-            return value;
+        if (selectedConfigItem == null) {
+            return null;
         }
 
-        return null;
+        String value = getSelectedConfigItemValueForInput();
+        if (value != null && selectedConfigItem.shouldRememberLastEntry()) {
+            rememberLastEntry(selectedConfigItem, value);
+        }
+        return value;
     }
 
-    private void rememberLastEntry(ConfigurationItem preparedConfigurationItem) {
-        for (String id : preparedConfigurationItem.getRememberLastEntryForIds()) {
-            ConfigurationItem item = new ConfigurationItem(preparedConfigurationItem);
-            item.setLabel(preparedConfigurationItem.getValue());
-            item.setRawValue(preparedConfigurationItem.getValue());
-            item.setLastEntryItem(true);
-            lastEntries.put(id, item);
+    private void rememberLastEntry(ConfigurationItem configurationItem, String value) {
+        for (String id : configurationItem.getRememberLastEntryForIds()) {
+            lastEntries.put(new LastEntry(id, configurationItem, value));
         }
     }
 
@@ -217,8 +239,10 @@ class FillTheFormDialogModel {
         }
     }
 
-    private void setSelectedConfigItem(ConfigurationItem selectedConfigItem) {
-        this.selectedConfigItem = selectedConfigItem;
+    private void setSelectedConfigItem(RenderedItem selectedItem) {
+        this.selectedConfigItem = selectedItem != null ? selectedItem.getConfigurationItem() : null;
+        this.selectedLastEntry = selectedItem != null ? selectedItem.getLastEntry() : null;
+        this.requestedProfile = null;
     }
 
     private void selectItemWithNextProfile() {
@@ -232,7 +256,7 @@ class FillTheFormDialogModel {
         selectedProfileIndex = (selectedProfileIndex + 1) % profiles.size();
         String selectedProfile = profiles.get(selectedProfileIndex);
         for (int i = 0; i < sortedConfigurationItems.size(); i++) {
-            ConfigurationItem item = sortedConfigurationItems.get(i);
+            RenderedItem item = sortedConfigurationItems.get(i);
             if (item.getProfile() != null && item.getProfile().equals(selectedProfile)) {
                 setSelectedConfigItem(item);
                 break;
@@ -243,50 +267,160 @@ class FillTheFormDialogModel {
     // Profiles
 
     public void setProfiles(List<String> profiles) {
-        this.profiles = profiles;
+        setProfilesWithIndices(profiles);
         selectedProfileIndex = 0;
+        requestedProfile = null;
+    }
+
+    private void setProfilesWithIndices(List<String> profiles) {
+        this.profiles = profiles;
+        profileIndices.clear();
+        if (profiles != null) {
+            for (int i = 0; i < profiles.size(); i++) {
+                profileIndices.put(profiles.get(i), i);
+            }
+        }
     }
 
     public void selectNextProfile() {
         selectItemWithNextProfile();
     }
 
+    /**
+     * Selects the profile by its name. The item with this profile is selected in the current list,
+     * otherwise the profile is put on top when the dialog is shown next time.
+     *
+     * @return Index of the selected profile or -1 if the profile does not exist.
+     */
+    public int selectProfile(String profile) {
+        Integer index = profileIndices.get(profile);
+        if (index == null) {
+            return -1;
+        }
+        selectProfile(index.intValue());
+        return index;
+    }
+
+    /**
+     * Selects the profile by its index in the list of profiles.
+     *
+     * @return Name of the selected profile or null if the index is out of range.
+     */
+    public String selectProfile(int index) {
+        if (profiles == null || index < 0 || index >= profiles.size()) {
+            return null;
+        }
+        selectedProfileIndex = index;
+        String profile = profiles.get(index);
+        RenderedItem item = findItemWithProfile(profile);
+        if (item != null) {
+            setSelectedConfigItem(item);
+        } else {
+            requestedProfile = profile;
+        }
+        return profile;
+    }
+
+    private RenderedItem findItemWithProfile(String profile) {
+        if (sortedConfigurationItems != null) {
+            for (RenderedItem item : sortedConfigurationItems) {
+                if (!item.isLastEntry() && profile.equals(item.getProfile())) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the profiles after the configuration has been reloaded.
+     * The selected profile, the selected item and the last entries are kept if their profiles and ids still exist.
+     *
+     * @param ids Ids of all items in the reloaded configuration.
+     */
+    void onConfigurationReloaded(List<String> profiles, Set<String> ids) {
+        String selectedProfile = getSelectedProfile();
+        setProfilesWithIndices(profiles);
+        Integer index = profileIndices.get(selectedProfile);
+        selectedProfileIndex = index != null ? index : 0;
+        if (requestedProfile != null && !profileIndices.containsKey(requestedProfile)) {
+            requestedProfile = null;
+        }
+        lastEntries.retainIds(ids);
+        String selectedId = selectedLastEntry != null ? selectedLastEntry.getId() : selectedConfigItem != null ? selectedConfigItem.getId() : null;
+        if (selectedConfigItem != null
+                && (!ids.contains(selectedId) || (selectedConfigItem.getProfile() != null && (profiles == null || !profiles.contains(selectedConfigItem.getProfile()))))) {
+            setSelectedConfigItem(null);
+        }
+    }
+
+    /**
+     * @return Requested profile, or the profile of the last selected item, or null.
+     */
+    private String getPreferredProfile() {
+        if (requestedProfile != null) {
+            return requestedProfile;
+        }
+        return selectedConfigItem != null ? selectedConfigItem.getProfile() : null;
+    }
+
+    private String getSelectedProfile() {
+        if (profiles == null || selectedProfileIndex >= profiles.size()) {
+            return null;
+        }
+        return profiles.get(selectedProfileIndex);
+    }
+
     // Configuration items data
 
     private void setSortedConfigurationItems(List<ConfigurationItem> selectedConfigurationItems) {
-        final List<ConfigurationItem> sortedConfigurationItems = sortConfigurationItems(selectedConfigurationItems);
-        addLastEntryIfAvailable(sortedConfigurationItems);
-        this.sortedConfigurationItems = sortedConfigurationItems;
+        final List<ConfigurationItem> sortedItems = sortConfigurationItems(selectedConfigurationItems);
+        final List<RenderedItem> renderedItems = new ArrayList<>(sortedItems.size() + 1);
+        // Values which are already rendered for the previous list are kept, the items are compared by their identity
+        Map<ConfigurationItem, RenderedItem> previousItems = new HashMap<>();
+        if (sortedConfigurationItems != null) {
+            for (RenderedItem item : sortedConfigurationItems) {
+                if (!item.isLastEntry()) {
+                    previousItems.put(item.getConfigurationItem(), item);
+                }
+            }
+        }
+        for (ConfigurationItem configurationItem : sortedItems) {
+            RenderedItem item = previousItems.get(configurationItem);
+            renderedItems.add(item != null ? item : new RenderedItem(configurationItem));
+        }
+        addLastEntriesIfAvailable(renderedItems);
+        this.sortedConfigurationItems = renderedItems;
     }
 
-    private void addLastEntryIfAvailable(List<ConfigurationItem> sortedConfigurationItems) {
-        if (sortedConfigurationItems.isEmpty()) {
+    private void addLastEntriesIfAvailable(List<RenderedItem> renderedItems) {
+        if (renderedItems.isEmpty()) {
             return;
         }
-        String id = sortedConfigurationItems.get(0).getId();
-        if (lastEntries.containsKey(id)) {
-            ConfigurationItem lastEntry = lastEntries.get(id);
-            lastEntry.setId(id);
-            sortedConfigurationItems.add(0, lastEntry);
+        List<LastEntry> idLastEntries = lastEntries.get(renderedItems.get(0).getConfigurationItem().getId());
+        // The newest entry is on top
+        for (int i = 0; i < idLastEntries.size(); i++) {
+            renderedItems.add(i, new RenderedItem(idLastEntries.get(i)));
         }
     }
 
     private List<ConfigurationItem> sortConfigurationItems(List<ConfigurationItem> selectedConfigurationItems) {
         final List<ConfigurationItem> sortedConfigurationItems = new ArrayList<>(selectedConfigurationItems);
 
-        // Sort the list by last used profile
-        if (selectedConfigItem != null && selectedConfigItem.getProfile() != null) {
+        // Sort the list by requested or last used profile
+        final String preferredProfile = getPreferredProfile();
+        if (preferredProfile != null) {
             // If the same field is selected again - the last selected item should go on top
-            boolean removedSelectedItem = sortedConfigurationItems.remove(selectedConfigItem);
+            boolean removedSelectedItem = requestedProfile == null && selectedLastEntry == null && sortedConfigurationItems.remove(selectedConfigItem);
 
             // Last used profile group should be on top
             Collections.sort(sortedConfigurationItems, new Comparator<ConfigurationItem>() {
                 @Override
                 public int compare(ConfigurationItem lhs, ConfigurationItem rhs) {
                     if (lhs.getProfile() != null
-                            && lhs.getProfile().equalsIgnoreCase(selectedConfigItem.getProfile())
+                            && lhs.getProfile().equalsIgnoreCase(preferredProfile)
                             && rhs.getProfile() != null
-                            && !rhs.getProfile().equals(selectedConfigItem.getProfile())) {
+                            && !rhs.getProfile().equals(preferredProfile)) {
                         return -1;
                     } else {
                         return 0;
@@ -302,8 +436,15 @@ class FillTheFormDialogModel {
         return sortedConfigurationItems;
     }
 
+    /**
+     * @return Configuration items of the dialog list, the last entry is represented by the item it was entered with.
+     */
     public List<ConfigurationItem> getSortedConfigurationItems() {
-        return sortedConfigurationItems;
+        List<ConfigurationItem> configurationItems = new ArrayList<>(sortedConfigurationItems.size());
+        for (RenderedItem item : sortedConfigurationItems) {
+            configurationItems.add(item.getConfigurationItem());
+        }
+        return configurationItems;
     }
 
     public int getItemsCount() {
@@ -314,80 +455,80 @@ class FillTheFormDialogModel {
     public int getSortedConfigItemType(int position) {
         @ViewType int result = VIEW_TYPE_NORMAL_ITEM;
         if (sortedConfigurationItems != null) {
-            if (position == sortedConfigurationItems.indexOf(selectedConfigItem)) {
+            if (position == indexOfSelectedConfigItem()) {
                 result = VIEW_TYPE_SELECTED_ITEM;
             }
-            if (sortedConfigurationItems.get(position).isLastEntryItem()) {
+            if (sortedConfigurationItems.get(position).isLastEntry()) {
                 result |= VIEW_TYPE_REMOVABLE_ITEM;
             }
         }
         return result;
     }
 
-    public ConfigurationItem getConfigurationItem(int position) {
-        ConfigurationItem configurationItem = sortedConfigurationItems.get(position);
-        return prepareConfigurationItemForDialogList(configurationItem);
+    private int indexOfSelectedConfigItem() {
+        if (selectedConfigItem != null) {
+            for (int i = 0; i < sortedConfigurationItems.size(); i++) {
+                RenderedItem item = sortedConfigurationItems.get(i);
+                if (item.getLastEntry() == selectedLastEntry && item.getConfigurationItem().equals(selectedConfigItem)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
     }
 
-    private ConfigurationItem prepareConfigurationItemForDialogList(ConfigurationItem configurationItem) {
-        if (configurationItem != null && configurationItem.getValue() == null) {
-            if (configurationVariablePattern != null) {
-                String newConfigurationItemValue = replaceVariableKeysWithValues(configurationItem.getRawValue());
-                configurationItem.setValue(newConfigurationItemValue);
-            } else {
-                configurationItem.setValue(configurationItem.getRawValue());
-            }
+    public RenderedItem getConfigurationItem(int position) {
+        RenderedItem item = sortedConfigurationItems.get(position);
+        if (item.getValue() == null) {
+            item.setValue(renderValue(item.getConfigurationItem().getRawValue()));
         }
-        return configurationItem;
+        return item;
     }
 
-    private ConfigurationItem prepareSelectedConfigurationItemForInput() {
-        if (selectedConfigItem != null) {
-            // Check if the selected config item raw value is configuration variable key
-            if (helper.isConfigurationVariableKey(selectedConfigItem.getRawValue())) {
-                String configurationVariableValue = helper.getConfigurationVariableValue(selectedConfigItem.getRawValue());
-                if (configurationVariableValue != null) {
-                    ConfigurationItem preparedConfigurationItem = new ConfigurationItem(selectedConfigItem);
-                    preparedConfigurationItem.setValue(configurationVariableValue);
-                    return preparedConfigurationItem;
-                }
-            } else if (selectedConfigItem.getValue() == null) {
-                ConfigurationItem preparedConfigurationItem = new ConfigurationItem(prepareConfigurationItemForDialogList(selectedConfigItem));
-                selectedConfigItem.setValue(null);
-                return preparedConfigurationItem;
-            } else {
-                ConfigurationItem preparedConfigurationItem = new ConfigurationItem(selectedConfigItem);
-                selectedConfigItem.setValue(null);
-                return preparedConfigurationItem;
-            }
+    private String renderValue(String rawValue) {
+        if (configurationVariablePattern != null) {
+            return ConfigurationVariableResolver.replaceVariables(rawValue, configurationVariablePattern, variableValues);
         }
-        return null;
+        return rawValue;
     }
 
-    private String replaceVariableKeysWithValues(String text) {
-        String newText = text.replace("\\n", "\n");
-        // If entry contains variables then we will replace them with appropriate values
-        Pattern pattern = Pattern.compile(configurationVariablePattern);
-        Matcher m = pattern.matcher(newText);
-        StringBuffer sb = new StringBuffer(newText.length());
-        while (m.find() && m.groupCount() > 0) {
-            String variableKey = m.group(1);
-            String value = helper.getConfigurationVariableValue(variableKey);
-            if (value != null) {
-                m.appendReplacement(sb, Matcher.quoteReplacement(value));
-            }
+    /**
+     * The value shown in the dialog list is used for the input, the row is rendered again the next time it is shown.
+     */
+    private String getSelectedConfigItemValueForInput() {
+        String rawValue = selectedConfigItem.getRawValue();
+        // Check if the selected config item raw value is configuration variable key
+        if (helper.isConfigurationVariableKey(rawValue)) {
+            return helper.getConfigurationVariableValue(rawValue);
+        }
+        int index = indexOfSelectedConfigItem();
+        RenderedItem item = index >= 0 ? sortedConfigurationItems.get(index) : null;
+        String value = item != null ? item.getValue() : null;
+        if (value == null) {
+            value = renderValue(rawValue);
+        }
+        if (item != null) {
+            item.setValue(null);
         }
-        m.appendTail(sb);
-        return sb.toString();
+        return value;
     }
 
     void init(String configurationVariablePattern) {
         setConfigurationVariablePattern(configurationVariablePattern);
     }
 
+    /**
+     * Starts restoring the last entries stored by the previous service instance.
+     */
+    void restoreLastEntries() {
+        lastEntries.restore();
+    }
+
     void clearData() {
         this.lastEntries.clear();
         this.selectedConfigItem = null;
+        this.selectedLastEntry = null;
+        this.requestedProfile = null;
     }
 
     private void setConfigurationVariablePattern(String configurationVariablePattern) {
@@ -517,7 +658,6 @@ class FillTheFormDialogModel {
         } else if (!isDialogVisible() && (modelEventType == EVENT_TYPE_VIEW_CLICKED || modelEventType == EVENT_TYPE_VIEW_FOCUSED)) {
             return;
         }
-        helper.clearConfigurationVariables();
         setSortedConfigurationItems(selectedConfigurationItems);
         if (!isDialogVisible()) {
             setExpandIconVisible(true);
@@ -528,8 +668,12 @@ class FillTheFormDialogModel {
         notifyPropertyChanged(PROPERTY_DATA_SET_SCROLL_POSITION);
         if (isFastModeEnabled() || modelEventType == EVENT_TYPE_VIEW_LONG_CLICKED) {
             setSelectedConfigItem(sortedConfigurationItems.get(0));
-            actionCallbacks.setText(getSelectedConfigItemValue());
+            boolean textSet = actionCallbacks.setText(getSelectedConfigItemValue());
             notifyPropertyChanged(PROPERTY_DATA_SET);
+            // The next field is only filled if the text has reached the current one
+            if (textSet && isFastModeEnabled() && isAutoAdvanceEnabled()) {
+                actionCallbacks.advanceToNextField();
+            }
         }
     }
 
@@ -575,6 +719,16 @@ class FillTheFormDialogModel {
         setDialogExpanded(false);
     }
 
+    // Fill all button
+
+    public void onFillAllButtonClicked() {
+        if (isDialogVisible()) {
+            String profile = getPreferredProfile();
+            actionCallbacks.fillAll(profile != null ? profile : getSelectedProfile());
+            setDialogExpanded(false);
+        }
+    }
+
     // Open fill the form app button
 
     public void onOpenFillTheFormAppButtonClicked() {
@@ -615,6 +769,28 @@ class FillTheFormDialogModel {
         return fastModeEnabled;
     }
 
+    // Auto advance
+
+    public void toggleAutoAdvance() {
+        setAutoAdvanceEnabled(!autoAdvanceEnabled);
+    }
+
+    public void setAutoAdvanceEnabled(boolean enabled) {
+        boolean saveAutoAdvanceToSharedPrefs = autoAdvanceEnabled != enabled;
+        this.autoAdvanceEnabled = enabled;
+        if (saveAutoAdvanceToSharedPrefs) {
+            actionCallbacks.saveAutoAdvanceState(isAutoAdvanceEnabled());
+        }
+        notifyPropertyChanged(PROPERTY_AUTO_ADVANCE_BUTTON_ICON);
+    }
+
+    /**
+     * @return True if the next configured field should be filled after every fill in fast mode.
+     */
+    public boolean isAutoAdvanceEnabled() {
+        return autoAdvanceEnabled;
+    }
+
     // Property changes
 
     public void setPropertyChangedListener(PropertyChangedListener propertyChangedListener) {
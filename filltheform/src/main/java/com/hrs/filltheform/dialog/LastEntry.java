@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.dialog;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+
+/**
+ * Value which was entered with a configuration item and is remembered for another id.
+ */
+class LastEntry {
+
+    private final String id;
+    private final ConfigurationItem configurationItem;
+    private final String value;
+
+    /**
+     * @param id                Id for which the entry is remembered.
+     * @param configurationItem Item which was selected when the value was entered.
+     */
+    LastEntry(String id, ConfigurationItem configurationItem, String value) {
+        this.id = id;
+        this.configurationItem = configurationItem;
+        this.value = value;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    ConfigurationItem getConfigurationItem() {
+        return configurationItem;
+    }
+
+    String getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.dialog;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheform.util.ThreadUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LastEntryFile persists the last entries in the app-private storage.
+ * The file is read and written on the background thread. Changes are collected for a short time and written together,
+ * so remembering an entry does not do any I/O on the main thread.
+ */
+class LastEntryFile implements LastEntryStore.Persistence {
+
+    private static final String TAG = LastEntryFile.class.getSimpleName();
+
+    private static final String FILE_NAME = "last_entries.bin";
+    private static final int MAGIC = 0x46544c45;
+    private static final int VERSION = 1;
+    private static final int NO_STRING = -1;
+    private static final long WRITE_DELAY_MILLIS = 2000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Store with changes which have not been written yet or null
+    private LastEntryStore changedStore;
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!changedStore.isRestored()) {
+                // Writing now would replace the stored entries which have not been read yet
+                handler.postDelayed(this, WRITE_DELAY_MILLIS);
+                return;
+            }
+            final List<LastEntry> entries = changedStore.getEntries();
+            changedStore = null;
+            ThreadUtil.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    write(entries);
+                }
+            });
+        }
+    };
+
+    LastEntryFile(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    @Override
+    public void read(final LastEntryStore store) {
+        ThreadUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                final List<LastEntry> entries = read();
+                ThreadUtil.postOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        store.onRestored(entries);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onChanged(LastEntryStore store) {
+        if (changedStore == null) {
+            changedStore = store;
+            handler.postDelayed(writeRunnable, WRITE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Starts writing the pending changes immediately. It should be called on the main thread before the service is destroyed.
+     */
+    void flush() {
+        if (changedStore != null && changedStore.isRestored()) {
+            handler.removeCallbacks(writeRunnable);
+            writeRunnable.run();
+        }
+    }
+
+    private List<LastEntry> read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LogUtil.d(TAG, "Unknown last entries format");
+                return Collections.emptyList();
+            }
+            int numberOfEntries = in.readInt();
+            List<LastEntry> entries = new ArrayList<>(numberOfEntries);
+            for (int i = 0; i < numberOfEntries; i++) {
+                String id = readString(in);
+                ConfigurationItem configurationItem = new ConfigurationItem(readString(in), readString(in), readString(in));
+                // The value is the raw value of the restored item
+                entries.add(new LastEntry(id, configurationItem, configurationItem.getRawValue()));
+            }
+            return entries;
+        } catch (FileNotFoundException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            LogUtil.e(TAG, e.toString());
+            return Collections.emptyList();
+        }
+    }
+
+    private void write(List<LastEntry> entries) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (LastEntry lastEntry : entries) {
+                writeString(out, lastEntry.getId());
+                writeString(out, lastEntry.getConfigurationItem().getId());
+                writeString(out, lastEntry.getConfigurationItem().getProfile());
+                writeString(out, lastEntry.getValue());
+            }
+        } catch (IOException e) {
+            LogUtil.e(TAG, e.toString());
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            LogUtil.e(TAG, "Unable to replace the last entries");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(NO_STRING);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NO_STRING) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Corrupted last entries");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.dialog;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LastEntryStore keeps the remembered last entries of the dialog.
+ * Up to entriesPerId entries are kept for every id in a small ring buffer, the newest entry replaces the oldest one.
+ * When more than capacity ids have entries, the entries of the least recently used id are evicted.
+ * <p/>
+ * The stored entries are restored from the persistence on first use. The persistence reads them asynchronously,
+ * entries which are remembered before the restore is finished are kept on top of the restored ones.
+ * Every change is reported to the persistence, which is expected to write the entries in batches.
+ * The store is not thread-safe and should be used from the main thread only.
+ */
+class LastEntryStore {
+
+    /**
+     * Storage of the last entries.
+     */
+    interface Persistence {
+
+        /**
+         * Reads the stored entries and passes them to {@link #onRestored(List)} on the main thread.
+         */
+        void read(LastEntryStore store);
+
+        /**
+         * Called after every change. The current entries are read with {@link #getEntries()}.
+         */
+        void onChanged(LastEntryStore store);
+    }
+
+    static final int DEFAULT_CAPACITY = 100;
+    static final int DEFAULT_ENTRIES_PER_ID = 1;
+
+    private final int capacity;
+    private final int entriesPerId;
+    private final Persistence persistence;
+    // Ids in the order of their last use, the least recently used id is first
+    private final LinkedHashMap<String, Entries> entries;
+
+    private boolean restoreRequested;
+    private boolean restored;
+    // Ids retained with retainIds() before the stored entries were restored or null
+    private Set<String> retainedIds;
+
+    LastEntryStore() {
+        this(DEFAULT_CAPACITY, DEFAULT_ENTRIES_PER_ID, null);
+    }
+
+    LastEntryStore(int capacity, int entriesPerId, @Nullable Persistence persistence) {
+        if (capacity < 1 || entriesPerId < 1) {
+            throw new IllegalArgumentException("Capacity and entries per id must be positive");
+        }
+        this.capacity = capacity;
+        this.entriesPerId = entriesPerId;
+        this.persistence = persistence;
+        this.entries = new LinkedHashMap<String, Entries>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entries> eldest) {
+                return size() > LastEntryStore.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Starts restoring the stored entries if it has not been started yet.
+     */
+    void restore() {
+        if (!restoreRequested) {
+            restoreRequested = true;
+            if (persistence != null) {
+                persistence.read(this);
+            } else {
+                restored = true;
+            }
+        }
+    }
+
+    boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * @return Entries remembered for the id, the newest entry is first.
+     */
+    List<LastEntry> get(String id) {
+        restore();
+        Entries idEntries = entries.get(id);
+        if (idEntries == null) {
+            return Collections.emptyList();
+        }
+        List<LastEntry> result = new ArrayList<>(idEntries.size);
+        for (int i = 0; i < idEntries.size; i++) {
+            result.add(idEntries.get(i));
+        }
+        return result;
+    }
+
+    void put(LastEntry lastEntry) {
+        restore();
+        add(lastEntry);
+        notifyChanged();
+    }
+
+    boolean remove(LastEntry lastEntry) {
+        Entries idEntries = entries.get(lastEntry.getId());
+        if (idEntries == null || !idEntries.remove(lastEntry)) {
+            return false;
+        }
+        if (idEntries.size == 0) {
+            entries.remove(lastEntry.getId());
+        }
+        notifyChanged();
+        return true;
+    }
+
+    /**
+     * Removes the entries of all ids which are not in the given set.
+     */
+    void retainIds(Set<String> ids) {
+        if (!restored) {
+            retainedIds = ids;
+        }
+        if (entries.keySet().retainAll(ids)) {
+            notifyChanged();
+        }
+    }
+
+    void clear() {
+        // Entries which are restored later must not come back
+        restored = true;
+        restoreRequested = true;
+        retainedIds = null;
+        entries.clear();
+        notifyChanged();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return All entries, the entries of the least recently used id and the oldest entries of every id are first.
+     */
+    List<LastEntry> getEntries() {
+        List<LastEntry> result = new ArrayList<>();
+        for (Entries idEntries : entries.values()) {
+            for (int i = idEntries.size - 1; i >= 0; i--) {
+                result.add(idEntries.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the restored entries below the entries which have been remembered since the store was created.
+     *
+     * @param restoredEntries Entries in the order of {@link #getEntries()}.
+     */
+    void onRestored(List<LastEntry> restoredEntries) {
+        if (restored) {
+            return;
+        }
+        restored = true;
+        List<LastEntry> newEntries = getEntries();
+        entries.clear();
+        for (LastEntry lastEntry : restoredEntries) {
+            if (retainedIds == null || retainedIds.contains(lastEntry.getId())) {
+                add(lastEntry);
+            }
+        }
+        retainedIds = null;
+        for (LastEntry lastEntry : newEntries) {
+            add(lastEntry);
+        }
+    }
+
+    private void add(LastEntry lastEntry) {
+        Entries idEntries = entries.get(lastEntry.getId());
+        if (idEntries == null) {
+            idEntries = new Entries(entriesPerId);
+            entries.put(lastEntry.getId(), idEntries);
+        }
+        idEntries.add(lastEntry);
+    }
+
+    private void notifyChanged() {
+        if (persistence != null) {
+            persistence.onChanged(this);
+        }
+    }
+
+    /**
+     * Ring buffer with the entries of one id.
+     */
+    private static class Entries {
+        private final LastEntry[] buffer;
+        // Index of the newest entry
+        private int head = -1;
+        private int size;
+
+        Entries(int capacity) {
+            this.buffer = new LastEntry[capacity];
+        }
+
+        void add(LastEntry lastEntry) {
+            head = (head + 1) % buffer.length;
+            buffer[head] = lastEntry;
+            size = Math.min(size + 1, buffer.length);
+        }
+
+        /**
+         * @param index 0 is the newest entry.
+         */
+        LastEntry get(int index) {
+            return buffer[(head - index + buffer.length) % buffer.length];
+        }
+
+        boolean remove(LastEntry lastEntry) {
+            for (int i = 0; i < size; i++) {
+                if (get(i) == lastEntry) {
+                    // Move the newer entries one position towards the older ones
+                    for (int j = i; j > 0; j--) {
+                        buffer[(head - j + buffer.length) % buffer.length] = get(j - 1);
+                    }
+                    buffer[head] = null;
+                    head = (head - 1 + buffer.length) % buffer.length;
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
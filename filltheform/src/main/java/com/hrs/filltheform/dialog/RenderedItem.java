@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.dialog;
+
+import android.support.annotation.Nullable;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+
+/**
+ * One row of the dialog list. It keeps the value rendered for the configuration item, the configuration item itself is never copied.
+ */
+class RenderedItem {
+
+    private final ConfigurationItem configurationItem;
+    private final LastEntry lastEntry;
+    private String value;
+
+    RenderedItem(ConfigurationItem configurationItem) {
+        this.configurationItem = configurationItem;
+        this.lastEntry = null;
+    }
+
+    RenderedItem(LastEntry lastEntry) {
+        this.configurationItem = lastEntry.getConfigurationItem();
+        this.lastEntry = lastEntry;
+        this.value = lastEntry.getValue();
+    }
+
+    public ConfigurationItem getConfigurationItem() {
+        return configurationItem;
+    }
+
+    public String getProfile() {
+        return configurationItem.getProfile();
+    }
+
+    /**
+     * @return Rendered value or null if the value has not been rendered yet.
+     */
+    @Nullable
+    public String getValue() {
+        return value;
+    }
+
+    void setValue(@Nullable String value) {
+        this.value = value;
+    }
+
+    public String getLabel() {
+        if (lastEntry == null && configurationItem.getRawLabel() != null) {
+            return configurationItem.getRawLabel();
+        }
+        return value;
+    }
+
+    boolean isLastEntry() {
+        return lastEntry != null;
+    }
+
+    /**
+     * @return Last entry shown in this row or null if the row shows a configuration item.
+     */
+    @Nullable
+    LastEntry getLastEntry() {
+        return lastEntry;
+    }
+}
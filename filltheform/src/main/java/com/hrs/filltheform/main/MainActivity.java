@@ -15,10 +15,7 @@
  */
 package com.hrs.filltheform.main;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
@@ -37,7 +34,7 @@ import android.widget.TextView;
 
 import com.hrs.filltheform.R;
 import com.hrs.filltheform.common.PropertyChangedListener;
-import com.hrs.filltheform.service.MyAccessibilityService;
+import com.hrs.filltheform.service.ConfigurationState;
 import com.hrs.filltheform.util.ToastUtil;
 import com.hrs.filltheformcompanion.FillTheFormCompanion;
 
@@ -73,13 +70,10 @@ public class MainActivity extends AppCompatActivity implements PropertyChangedLi
     private LinearLayout loadedPackageNamesContainer;
     private LinearLayout loadedPackageNamesList;
 
-    private BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
+    private ConfigurationState.Observer configurationStateObserver = new ConfigurationState.Observer() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equalsIgnoreCase(MyAccessibilityService.INTENT_SEND_LOADED_PACKAGE_NAMES)) {
-                List<String> loadedPackageNames = intent.getStringArrayListExtra(MyAccessibilityService.INTENT_EXTRA_PACKAGE_NAMES);
-                model.onPackageNamesLoaded(loadedPackageNames);
-            }
+        public void onLoadedPackageNamesChanged(List<String> packageNames) {
+            model.onPackageNamesLoaded(packageNames);
         }
     };
 
@@ -155,13 +149,8 @@ public class MainActivity extends AppCompatActivity implements PropertyChangedLi
     protected void onResume() {
         super.onResume();
         checkPermissions();
-        // Register broadcast receiver
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(MyAccessibilityService.INTENT_SEND_LOADED_PACKAGE_NAMES);
-        registerReceiver(broadcastReceiver, intentFilter);
-        // Ask for package names
-        Intent intent = new Intent(MyAccessibilityService.INTENT_ASK_FOR_LOADED_PACKAGE_NAMES);
-        sendBroadcast(intent);
+        // The loaded package names are received immediately if the configuration is available
+        ConfigurationState.subscribe(configurationStateObserver);
     }
 
     private void checkPermissions() {
@@ -184,7 +173,7 @@ public class MainActivity extends AppCompatActivity implements PropertyChangedLi
     @Override
     protected void onPause() {
         super.onPause();
-        unregisterReceiver(broadcastReceiver);
+        ConfigurationState.unsubscribe(configurationStateObserver);
     }
 
     // Options menu
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+import com.hrs.filltheformcompanion.IFillTheFormCallback;
+import com.hrs.filltheformcompanion.IFillTheFormService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * CompanionService exposes IFillTheFormService to FillTheFormCompanion as a bound service.
+ * Requests are handled by the running MyAccessibilityService on the main thread, exactly like the companion broadcasts.
+ * Every bound request gets an id which is unique in the service, the reply echoing this id is delivered to the callback of the request
+ * instead of being broadcast. The ids of the companions can not be used for this, every companion counts its requests on its own.
+ */
+public class CompanionService extends Service {
+
+    private static final String TAG = CompanionService.class.getSimpleName();
+
+    private static final long STATUS_TIMEOUT_MILLIS = 2000;
+    private static final String ERROR_SERVICE_NOT_RUNNING = "FillTheForm service is not running";
+
+    // Accessed on the main thread only
+    private static MyAccessibilityService accessibilityService;
+    private static final List<PendingRequest> pendingRequests = new ArrayList<>();
+    private static int lastServiceRequestId = FillTheFormCompanion.REQUEST_ID_NONE;
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final IFillTheFormService.Stub binder = new IFillTheFormService.Stub() {
+
+        @Override
+        public int getInterfaceVersion() {
+            return FillTheFormCompanion.SERVICE_INTERFACE_VERSION;
+        }
+
+        @Override
+        public Bundle getStatus() {
+            FutureTask<Bundle> statusTask = new FutureTask<>(new Callable<Bundle>() {
+                @Override
+                public Bundle call() {
+                    return accessibilityService != null ? accessibilityService.getCompanionStatus() : null;
+                }
+            });
+            mainHandler.post(statusTask);
+            try {
+                return statusTask.get(STATUS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                LogUtil.e(TAG, e.toString());
+                return null;
+            }
+        }
+
+        @Override
+        public void configure(int requestId, int source, String configurationFilePath, boolean forceReload, boolean watchForChanges, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_READ_CONFIGURATION_FILE);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_SOURCE, source);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_PATH, configurationFilePath);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FORCE_RELOAD, forceReload);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_WATCH_CONFIGURATION_FILE, watchForChanges);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_FINISHED, callback);
+        }
+
+        @Override
+        public void configureWithContent(int requestId, ParcelFileDescriptor content, String name, IFillTheFormCallback callback) {
+            // The intent is not parceled, so it can carry the file descriptor to MyAccessibilityService
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_READ_CONFIGURATION_CONTENT);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_CONTENT, content);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_PATH, name);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_FINISHED, callback);
+        }
+
+        @Override
+        public void applyConfigurationPatch(int requestId, int baseGeneration, String patch, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_APPLY_CONFIGURATION_PATCH);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_GENERATION, baseGeneration);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_PATCH, patch);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_PATCH_RESULT, callback);
+        }
+
+        @Override
+        public void requestNumberOfProfiles(int requestId, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_REQUEST_NUMBER_OF_PROFILES);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_SEND_NUMBER_OF_PROFILES, callback);
+        }
+
+        @Override
+        public void selectProfileByName(int requestId, String profileName, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_SELECT_PROFILE);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME, profileName);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_SELECTED_PROFILE, callback);
+        }
+
+        @Override
+        public void selectProfileByIndex(int requestId, int profileIndex, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_SELECT_PROFILE);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_INDEX, profileIndex);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_SELECTED_PROFILE, callback);
+        }
+
+        @Override
+        public void fillView(int requestId, String viewId, String profile, int entry, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_FILL_VIEW);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_VIEW_ID, viewId);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME, profile);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_ENTRY, entry);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_FILL_VIEW_RESULT, callback);
+        }
+
+        @Override
+        public void fillAll(int requestId, String profile, IFillTheFormCallback callback) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_FILL_ALL);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME, profile);
+            sendRequest(requestId, intent, FillTheFormCompanion.INTENT_REPORT_FILL_ALL_RESULT, callback);
+        }
+    };
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    private static void sendRequest(final int requestId, final Intent intent, final String replyAction, final IFillTheFormCallback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                int serviceRequestId = nextServiceRequestId();
+                PendingRequest pendingRequest = new PendingRequest(serviceRequestId, requestId, replyAction, callback);
+                intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_REQUEST_ID, serviceRequestId);
+                if (accessibilityService == null) {
+                    closeContent(intent);
+                    Bundle result = new Bundle();
+                    result.putString(FillTheFormCompanion.INTENT_EXTRA_ERROR_MESSAGE, ERROR_SERVICE_NOT_RUNNING);
+                    pendingRequest.complete(result);
+                    return;
+                }
+                pendingRequests.add(pendingRequest);
+                accessibilityService.handleCompanionIntent(intent);
+            }
+        });
+    }
+
+    private static int nextServiceRequestId() {
+        lastServiceRequestId++;
+        if (lastServiceRequestId <= FillTheFormCompanion.REQUEST_ID_NONE) {
+            lastServiceRequestId = FillTheFormCompanion.REQUEST_ID_NONE + 1;
+        }
+        return lastServiceRequestId;
+    }
+
+    private static void closeContent(Intent intent) {
+        ParcelFileDescriptor content = intent.getParcelableExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_CONTENT);
+        if (content != null) {
+            try {
+                content.close();
+            } catch (IOException e) {
+                LogUtil.e(TAG, e.toString());
+            }
+        }
+    }
+
+    // MyAccessibilityService support, called on the main thread
+
+    static void attach(MyAccessibilityService service) {
+        accessibilityService = service;
+    }
+
+    static void detach() {
+        accessibilityService = null;
+        Bundle result = new Bundle();
+        result.putString(FillTheFormCompanion.INTENT_EXTRA_ERROR_MESSAGE, ERROR_SERVICE_NOT_RUNNING);
+        for (PendingRequest pendingRequest : pendingRequests) {
+            pendingRequest.complete(result);
+        }
+        pendingRequests.clear();
+    }
+
+    /**
+     * Completes the pending request whose id is echoed by the reply.
+     *
+     * @return True if the reply has been delivered to its bound request.
+     */
+    static boolean deliverReply(Intent reply) {
+        int serviceRequestId = reply.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_REQUEST_ID, FillTheFormCompanion.REQUEST_ID_NONE);
+        if (serviceRequestId == FillTheFormCompanion.REQUEST_ID_NONE) {
+            return false;
+        }
+        for (Iterator<PendingRequest> iterator = pendingRequests.iterator(); iterator.hasNext(); ) {
+            PendingRequest pendingRequest = iterator.next();
+            if (pendingRequest.serviceRequestId == serviceRequestId) {
+                iterator.remove();
+                Bundle result = reply.getExtras();
+                // The service request id is not known to the companion
+                result.remove(FillTheFormCompanion.INTENT_EXTRA_REQUEST_ID);
+                pendingRequest.complete(result);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Request waiting for its reply from MyAccessibilityService.
+     */
+    private static class PendingRequest {
+        private final int serviceRequestId;
+        // Id created by the companion
+        private final int requestId;
+        private final String replyAction;
+        private final IFillTheFormCallback callback;
+
+        PendingRequest(int serviceRequestId, int requestId, String replyAction, IFillTheFormCallback callback) {
+            this.serviceRequestId = serviceRequestId;
+            this.requestId = requestId;
+            this.replyAction = replyAction;
+            this.callback = callback;
+        }
+
+        void complete(Bundle result) {
+            if (callback == null) {
+                return;
+            }
+            try {
+                callback.onRequestCompleted(requestId, replyAction, result);
+            } catch (RemoteException e) {
+                // The companion has died, nothing to report
+                LogUtil.d(TAG, e.toString());
+            }
+        }
+    }
+}
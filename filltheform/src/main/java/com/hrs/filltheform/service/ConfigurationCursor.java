@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.database.AbstractCursor;
+
+/**
+ * ConfigurationCursor is a read-only cursor over one immutable ConfigurationData snapshot.
+ * Rows are not copied, the values of a row are looked up only when they are requested.
+ * When the cursor is sent to another process, its rows are copied into the cursor window page by page.
+ */
+abstract class ConfigurationCursor extends AbstractCursor {
+
+    private final String[] columnNames;
+    private final int[] columnIndices;
+
+    /**
+     * @param projection Requested columns or null for all columns.
+     * @param allColumns All columns of the table.
+     */
+    ConfigurationCursor(String[] projection, String[] allColumns) {
+        if (projection == null) {
+            projection = allColumns;
+        }
+        this.columnNames = projection;
+        this.columnIndices = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columnIndices[i] = indexOf(allColumns, projection[i]);
+        }
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + column);
+    }
+
+    /**
+     * @param position Row position, always valid.
+     * @param column   Index of the column in all columns of the table.
+     * @return String, Integer or null.
+     */
+    abstract Object getValue(int position, int column);
+
+    private Object getValue(int column) {
+        checkPosition();
+        return getValue(getPosition(), columnIndices[column]);
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = getValue(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Object value = getValue(column);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return getValue(column) == null;
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        }
+        return value instanceof Number ? FIELD_TYPE_INTEGER : FIELD_TYPE_STRING;
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.support.v4.util.SimpleArrayMap;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.ConfigurationPatch;
+import com.hrs.filltheform.data.ConfigurationFingerprint;
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ConfigurationData is an immutable snapshot of one loaded configuration.
+ * It is built with ConfigurationData.Builder and can be safely shared between threads once it is built.
+ * The items read from the configuration are kept in a ConfigurationTable, the id groups only create ConfigurationItem objects when they are read.
+ * The items are immutable and every row is always created with the same identity, so items read from an id group at different times are equal.
+ */
+public class ConfigurationData {
+
+    static final ConfigurationData EMPTY = new Builder(FillTheFormCompanion.SOURCE_ASSETS, null).build();
+
+    private final int generation;
+    private final List<String> packageNames;
+    private final SimpleArrayMap<String, List<ConfigurationItem>> idGroups;
+    private final List<String> profiles;
+    private final String configurationVariablePattern;
+    @FillTheFormCompanion.ConfigurationSource
+    private final int source;
+    private final String configurationFilePath;
+    private final ConfigurationFingerprint fingerprint;
+
+    private ConfigurationData(Builder builder) {
+        this.generation = builder.generation;
+        this.packageNames = Collections.unmodifiableList(new ArrayList<>(builder.packageNames));
+        this.idGroups = builder.tableBuilder.build().getIdGroups();
+        this.profiles = Collections.unmodifiableList(new ArrayList<>(builder.profiles));
+        this.configurationVariablePattern = builder.configurationVariablePattern;
+        this.source = builder.source;
+        this.configurationFilePath = builder.configurationFilePath;
+        this.fingerprint = builder.fingerprint;
+    }
+
+    private ConfigurationData(ConfigurationData data, ConfigurationFingerprint fingerprint) {
+        this.generation = data.generation;
+        this.packageNames = data.packageNames;
+        this.idGroups = data.idGroups;
+        this.profiles = data.profiles;
+        this.configurationVariablePattern = data.configurationVariablePattern;
+        this.source = data.source;
+        this.configurationFilePath = data.configurationFilePath;
+        this.fingerprint = fingerprint;
+    }
+
+    private ConfigurationData(ConfigurationData data, int generation, List<String> packageNames,
+                              SimpleArrayMap<String, List<ConfigurationItem>> idGroups, List<String> profiles) {
+        this.generation = generation;
+        this.packageNames = packageNames;
+        this.idGroups = idGroups;
+        this.profiles = profiles;
+        this.configurationVariablePattern = data.configurationVariablePattern;
+        this.source = data.source;
+        this.configurationFilePath = data.configurationFilePath;
+        // Patched data does not match the configuration file anymore
+        this.fingerprint = null;
+    }
+
+    /**
+     * @return Generation of this configuration or FillTheFormCompanion.CONFIGURATION_GENERATION_UNKNOWN if nothing is loaded.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public List<String> getPackageNames() {
+        return packageNames;
+    }
+
+    public SimpleArrayMap<String, List<ConfigurationItem>> getIdGroups() {
+        return idGroups;
+    }
+
+    public List<String> getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * @return Ids of all loaded configuration items.
+     */
+    public Set<String> getIds() {
+        Set<String> ids = new HashSet<>(idGroups.size());
+        for (int i = 0; i < idGroups.size(); i++) {
+            ids.add(idGroups.keyAt(i));
+        }
+        return ids;
+    }
+
+    public String getConfigurationVariablePattern() {
+        return configurationVariablePattern;
+    }
+
+    @FillTheFormCompanion.ConfigurationSource
+    public int getSource() {
+        return source;
+    }
+
+    public String getConfigurationFilePath() {
+        return configurationFilePath;
+    }
+
+    /**
+     * @return Fingerprint of the configuration file content or null if it is unknown.
+     */
+    public ConfigurationFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return Copy of this data sharing all loaded items but with the new fingerprint.
+     */
+    ConfigurationData withFingerprint(ConfigurationFingerprint fingerprint) {
+        return new ConfigurationData(this, fingerprint);
+    }
+
+    public boolean isLoadedFrom(@FillTheFormCompanion.ConfigurationSource int source, String configurationFilePath) {
+        return this.source == source && this.configurationFilePath != null && this.configurationFilePath.equals(configurationFilePath);
+    }
+
+    public boolean isEmpty() {
+        return packageNames.isEmpty() && idGroups.isEmpty();
+    }
+
+    /**
+     * Applies the patch using structural sharing. Only the id groups and lists which are changed by the patch are copied,
+     * all other lists and items are shared with this configuration.
+     *
+     * @return New configuration with the given generation.
+     */
+    ConfigurationData applyPatch(ConfigurationPatch patch, int generation) {
+        List<String> newPackageNames = packageNames;
+        List<String> newProfiles = profiles;
+        SimpleArrayMap<String, List<ConfigurationItem>> newIdGroups = new SimpleArrayMap<>(idGroups);
+        // Id groups which have already been copied and can be changed
+        Set<String> copiedIds = new HashSet<>();
+        Set<String> touchedProfiles = new LinkedHashSet<>();
+
+        for (ConfigurationPatch.Operation operation : patch.getOperations()) {
+            ConfigurationItem item = operation.getConfigurationItem();
+            switch (operation.getType()) {
+                case ConfigurationPatch.OPERATION_ADD_PACKAGE:
+                    if (!newPackageNames.contains(operation.getName())) {
+                        newPackageNames = copyIfShared(newPackageNames, packageNames);
+                        newPackageNames.add(operation.getName());
+                    }
+                    break;
+                case ConfigurationPatch.OPERATION_REMOVE_PACKAGE:
+                    if (newPackageNames.contains(operation.getName())) {
+                        newPackageNames = copyIfShared(newPackageNames, packageNames);
+                        newPackageNames.remove(operation.getName());
+                    }
+                    break;
+                case ConfigurationPatch.OPERATION_REMOVE_PROFILE:
+                    for (int i = newIdGroups.size() - 1; i >= 0; i--) {
+                        if (containsProfile(newIdGroups.valueAt(i), operation.getName())) {
+                            removeItems(newIdGroups, copiedIds, newIdGroups.keyAt(i), operation.getName());
+                        }
+                    }
+                    touchedProfiles.add(operation.getName());
+                    break;
+                case ConfigurationPatch.OPERATION_REPLACE_ITEMS:
+                    removeItems(newIdGroups, copiedIds, item.getId(), item.getProfile());
+                    addItem(newIdGroups, copiedIds, item);
+                    break;
+                case ConfigurationPatch.OPERATION_ADD_ITEM:
+                    addItem(newIdGroups, copiedIds, item);
+                    break;
+                case ConfigurationPatch.OPERATION_REMOVE_ITEMS:
+                    removeItems(newIdGroups, copiedIds, item.getId(), item.getProfile());
+                    break;
+                default:
+                    break;
+            }
+            if (item != null && item.getProfile() != null) {
+                touchedProfiles.add(item.getProfile());
+            }
+        }
+
+        // Update profiles which were touched by the patch, the order of existing profiles is kept
+        for (String profile : touchedProfiles) {
+            boolean used = isProfileUsed(newIdGroups, profile);
+            if (used != newProfiles.contains(profile)) {
+                newProfiles = copyIfShared(newProfiles, profiles);
+                if (used) {
+                    newProfiles.add(profile);
+                } else {
+                    newProfiles.remove(profile);
+                }
+            }
+        }
+
+        return new ConfigurationData(this, generation,
+                newPackageNames == packageNames ? packageNames : Collections.unmodifiableList(newPackageNames),
+                newIdGroups,
+                newProfiles == profiles ? profiles : Collections.unmodifiableList(newProfiles));
+    }
+
+    private static List<String> copyIfShared(List<String> list, List<String> sharedList) {
+        return list == sharedList ? new ArrayList<>(sharedList) : list;
+    }
+
+    private static List<ConfigurationItem> getCopiedIdGroup(SimpleArrayMap<String, List<ConfigurationItem>> idGroups, Set<String> copiedIds, String id) {
+        List<ConfigurationItem> list = idGroups.get(id);
+        if (!copiedIds.contains(id)) {
+            if (list == null) {
+                list = new ArrayList<>();
+            } else {
+                list = new ArrayList<>(list);
+            }
+            idGroups.put(id, list);
+            copiedIds.add(id);
+        }
+        return list;
+    }
+
+    private static void addItem(SimpleArrayMap<String, List<ConfigurationItem>> idGroups, Set<String> copiedIds, ConfigurationItem item) {
+        getCopiedIdGroup(idGroups, copiedIds, item.getId()).add(item);
+    }
+
+    private static void removeItems(SimpleArrayMap<String, List<ConfigurationItem>> idGroups, Set<String> copiedIds, String id, String profile) {
+        if (!containsProfile(idGroups.get(id), profile)) {
+            return;
+        }
+        List<ConfigurationItem> list = getCopiedIdGroup(idGroups, copiedIds, id);
+        for (Iterator<ConfigurationItem> iterator = list.iterator(); iterator.hasNext(); ) {
+            if (isSameProfile(iterator.next().getProfile(), profile)) {
+                iterator.remove();
+            }
+        }
+        if (list.isEmpty()) {
+            idGroups.remove(id);
+            copiedIds.remove(id);
+        }
+    }
+
+    private static boolean containsProfile(List<ConfigurationItem> list, String profile) {
+        if (list != null) {
+            for (ConfigurationItem item : list) {
+                if (isSameProfile(item.getProfile(), profile)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isProfileUsed(SimpleArrayMap<String, List<ConfigurationItem>> idGroups, String profile) {
+        for (int i = 0; i < idGroups.size(); i++) {
+            if (containsProfile(idGroups.valueAt(i), profile)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameProfile(String profile, String otherProfile) {
+        return profile == null ? otherProfile == null : profile.equals(otherProfile);
+    }
+
+    /**
+     * Collects the data read by a ConfigurationReader. The builder is not thread-safe and should be used by one thread only.
+     */
+    static class Builder {
+
+        private final List<String> packageNames = new ArrayList<>();
+        private final ConfigurationTable.Builder tableBuilder = new ConfigurationTable.Builder();
+        private final Set<String> profiles = new LinkedHashSet<>();
+        private String configurationVariablePattern;
+        @FillTheFormCompanion.ConfigurationSource
+        private final int source;
+        private final String configurationFilePath;
+        private ConfigurationFingerprint fingerprint;
+        private int generation = FillTheFormCompanion.CONFIGURATION_GENERATION_UNKNOWN;
+
+        Builder(@FillTheFormCompanion.ConfigurationSource int source, String configurationFilePath) {
+            this.source = source;
+            this.configurationFilePath = configurationFilePath;
+        }
+
+        Builder addPackageName(String packageName) {
+            packageNames.add(packageName);
+            return this;
+        }
+
+        Builder addProfile(String profile) {
+            profiles.add(profile);
+            return this;
+        }
+
+        Builder addConfigurationItem(ConfigurationItem configurationItem) {
+            tableBuilder.add(configurationItem);
+            // Add profile
+            if (configurationItem.getProfile() != null) {
+                profiles.add(configurationItem.getProfile());
+            }
+            return this;
+        }
+
+        Builder setConfigurationVariablePattern(String configurationVariablePattern) {
+            this.configurationVariablePattern = configurationVariablePattern;
+            return this;
+        }
+
+        Builder setFingerprint(ConfigurationFingerprint fingerprint) {
+            this.fingerprint = fingerprint;
+            return this;
+        }
+
+        Builder setGeneration(int generation) {
+            this.generation = generation;
+            return this;
+        }
+
+        ConfigurationData build() {
+            return new ConfigurationData(this);
+        }
+    }
+}
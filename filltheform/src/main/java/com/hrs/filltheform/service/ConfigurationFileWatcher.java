@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+
+/**
+ * ConfigurationFileWatcher reports changes of a configuration file on the external storage.
+ * The parent directory is observed, because editors often replace the file instead of writing to it.
+ * Events are debounced, so the listener is called once on the main thread after the file has stopped changing.
+ */
+class ConfigurationFileWatcher {
+
+    interface ConfigurationFileWatcherListener {
+        void onConfigurationFileChanged();
+    }
+
+    private static final int WATCHED_EVENTS = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.CREATE;
+    private static final long DEBOUNCE_DELAY_MS = 500;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final String fileName;
+    private final FileObserver fileObserver;
+    private final Runnable notifyFileChanged;
+
+    ConfigurationFileWatcher(File configurationFile, final ConfigurationFileWatcherListener listener) {
+        this.fileName = configurationFile.getName();
+        this.notifyFileChanged = new Runnable() {
+            @Override
+            public void run() {
+                listener.onConfigurationFileChanged();
+            }
+        };
+        this.fileObserver = new FileObserver(configurationFile.getParent(), WATCHED_EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (fileName.equals(path)) {
+                    // Called on the FileObserver thread
+                    handler.removeCallbacks(notifyFileChanged);
+                    handler.postDelayed(notifyFileChanged, DEBOUNCE_DELAY_MS);
+                }
+            }
+        };
+    }
+
+    void startWatching() {
+        fileObserver.startWatching();
+    }
+
+    void stopWatching() {
+        fileObserver.stopWatching();
+        handler.removeCallbacks(notifyFileChanged);
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.UriMatcher;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.SimpleArrayMap;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.data.ConfigurationVariables;
+import com.hrs.filltheformcompanion.ConfigurationContract;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ConfigurationProvider is a read-only content provider which exposes the configuration loaded in MyAccessibilityService.
+ * Every query works on the ConfigurationData snapshot which is current when the query starts, see ConfigurationContract for the tables.
+ * The resolved values contain device data, e.g. the IP address, so they are only returned to callers holding ConfigurationContract.READ_PERMISSION.
+ * Other callers, e.g. adb, get the raw values in the value and label columns.
+ */
+public class ConfigurationProvider extends ContentProvider {
+
+    private static final int STATUS = 1;
+    private static final int PACKAGES = 2;
+    private static final int PROFILES = 3;
+    private static final int IDS = 4;
+    private static final int ITEMS = 5;
+    private static final int ITEMS_OF_ID = 6;
+
+    private static final String[] STATUS_COLUMNS = {ConfigurationContract.Status.GENERATION, ConfigurationContract.Status.CONFIGURATION_SOURCE,
+            ConfigurationContract.Status.CONFIGURATION_FILE_PATH, ConfigurationContract.Status.NUMBER_OF_PACKAGES,
+            ConfigurationContract.Status.NUMBER_OF_PROFILES, ConfigurationContract.Status.NUMBER_OF_IDS};
+    private static final String[] PACKAGES_COLUMNS = {ConfigurationContract.Packages._ID, ConfigurationContract.Packages.PACKAGE_NAME};
+    private static final String[] PROFILES_COLUMNS = {ConfigurationContract.Profiles._ID, ConfigurationContract.Profiles.PROFILE};
+    private static final String[] IDS_COLUMNS = {ConfigurationContract.Ids._ID, ConfigurationContract.Ids.VIEW_ID, ConfigurationContract.Ids.NUMBER_OF_ITEMS};
+    private static final String[] ITEMS_COLUMNS = {ConfigurationContract.Items._ID, ConfigurationContract.Items.VIEW_ID, ConfigurationContract.Items.PROFILE,
+            ConfigurationContract.Items.RAW_VALUE, ConfigurationContract.Items.VALUE, ConfigurationContract.Items.LABEL};
+
+    private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        uriMatcher.addURI(ConfigurationContract.AUTHORITY, ConfigurationContract.Status.PATH, STATUS);
+        uriMatcher.addURI(ConfigurationContract.AUTHORITY, ConfigurationContract.Packages.PATH, PACKAGES);
+        uriMatcher.addURI(ConfigurationContract.AUTHORITY, ConfigurationContract.Profiles.PATH, PROFILES);
+        uriMatcher.addURI(ConfigurationContract.AUTHORITY, ConfigurationContract.Ids.PATH, IDS);
+        uriMatcher.addURI(ConfigurationContract.AUTHORITY, ConfigurationContract.Items.PATH, ITEMS);
+        uriMatcher.addURI(ConfigurationContract.AUTHORITY, ConfigurationContract.Items.PATH + "/*", ITEMS_OF_ID);
+    }
+
+    private static volatile ServiceConfiguration configuration;
+
+    // MyAccessibilityService support
+
+    static void attach(ServiceConfiguration serviceConfiguration) {
+        configuration = serviceConfiguration;
+    }
+
+    static void detach() {
+        configuration = null;
+    }
+
+    /**
+     * Notifies the observers of all tables that the loaded configuration has changed.
+     */
+    static void notifyConfigurationChanged(Context context) {
+        context.getContentResolver().notifyChange(ConfigurationContract.CONTENT_URI, null);
+    }
+
+    private static ConfigurationData getData() {
+        ServiceConfiguration serviceConfiguration = configuration;
+        return serviceConfiguration != null ? serviceConfiguration.getData() : ConfigurationData.EMPTY;
+    }
+
+    // ContentProvider
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        if (selection != null || sortOrder != null) {
+            throw new IllegalArgumentException("Selection and sort order are not supported");
+        }
+        ConfigurationData data = getData();
+        //noinspection ConstantConditions
+        boolean resolveValues = getContext().checkCallingOrSelfPermission(ConfigurationContract.READ_PERMISSION) == PackageManager.PERMISSION_GRANTED;
+        Cursor cursor;
+        switch (uriMatcher.match(uri)) {
+            case STATUS:
+                cursor = new StatusCursor(projection, data);
+                break;
+            case PACKAGES:
+                cursor = new StringListCursor(projection, PACKAGES_COLUMNS, data.getPackageNames());
+                break;
+            case PROFILES:
+                cursor = new StringListCursor(projection, PROFILES_COLUMNS, data.getProfiles());
+                break;
+            case IDS:
+                cursor = new IdsCursor(projection, data.getIdGroups());
+                break;
+            case ITEMS:
+                cursor = new ItemsCursor(projection, data, null, uri.getQueryParameter(ConfigurationContract.Items.QUERY_PARAMETER_PROFILE),
+                        resolveValues ? getContext() : null);
+                break;
+            case ITEMS_OF_ID:
+                cursor = new ItemsCursor(projection, data, uri.getLastPathSegment(), uri.getQueryParameter(ConfigurationContract.Items.QUERY_PARAMETER_PROFILE),
+                        resolveValues ? getContext() : null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown uri " + uri);
+        }
+        //noinspection ConstantConditions
+        cursor.setNotificationUri(getContext().getContentResolver(), ConfigurationContract.CONTENT_URI);
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        switch (uriMatcher.match(uri)) {
+            case STATUS:
+                return "vnd.android.cursor.item/vnd.com.hrs.filltheform.status";
+            case PACKAGES:
+                return "vnd.android.cursor.dir/vnd.com.hrs.filltheform.package";
+            case PROFILES:
+                return "vnd.android.cursor.dir/vnd.com.hrs.filltheform.profile";
+            case IDS:
+                return "vnd.android.cursor.dir/vnd.com.hrs.filltheform.id";
+            case ITEMS:
+            case ITEMS_OF_ID:
+                return "vnd.android.cursor.dir/vnd.com.hrs.filltheform.item";
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("The configuration is read-only");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("The configuration is read-only");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("The configuration is read-only");
+    }
+
+    // Cursors
+
+    private static class StatusCursor extends ConfigurationCursor {
+        private final ConfigurationData data;
+
+        StatusCursor(String[] projection, ConfigurationData data) {
+            super(projection, STATUS_COLUMNS);
+            this.data = data;
+        }
+
+        @Override
+        public int getCount() {
+            return 1;
+        }
+
+        @Override
+        Object getValue(int position, int column) {
+            switch (column) {
+                case 0:
+                    return data.getGeneration();
+                case 1:
+                    return data.getSource();
+                case 2:
+                    return data.getConfigurationFilePath();
+                case 3:
+                    return data.getPackageNames().size();
+                case 4:
+                    return data.getProfiles().size();
+                default:
+                    return data.getIdGroups().size();
+            }
+        }
+    }
+
+    private static class StringListCursor extends ConfigurationCursor {
+        private final List<String> strings;
+
+        StringListCursor(String[] projection, String[] allColumns, List<String> strings) {
+            super(projection, allColumns);
+            this.strings = strings;
+        }
+
+        @Override
+        public int getCount() {
+            return strings.size();
+        }
+
+        @Override
+        Object getValue(int position, int column) {
+            return column == 0 ? position : strings.get(position);
+        }
+    }
+
+    private static class IdsCursor extends ConfigurationCursor {
+        private final SimpleArrayMap<String, List<ConfigurationItem>> idGroups;
+
+        IdsCursor(String[] projection, SimpleArrayMap<String, List<ConfigurationItem>> idGroups) {
+            super(projection, IDS_COLUMNS);
+            this.idGroups = idGroups;
+        }
+
+        @Override
+        public int getCount() {
+            return idGroups.size();
+        }
+
+        @Override
+        Object getValue(int position, int column) {
+            switch (column) {
+                case 0:
+                    return position;
+                case 1:
+                    return idGroups.keyAt(position);
+                default:
+                    return idGroups.valueAt(position).size();
+            }
+        }
+    }
+
+    /**
+     * Pages over the id index of the snapshot. Only the start position of every id group is computed up front,
+     * the item of a row is found with a binary search. The value of a row is resolved once when the row is first read.
+     * Variables resolved on every use are kept, so reading the provider does not consume random values.
+     */
+    private static class ItemsCursor extends ConfigurationCursor {
+        private final SimpleArrayMap<String, List<ConfigurationItem>> idGroups;
+        private final String configurationVariablePattern;
+        // Null if the values are not resolved
+        private final ConfigurationVariables configurationVariables;
+        // Start row of every id group, id groups are never empty
+        private final int firstGroup;
+        private final int[] groupStarts;
+        // Rows matching the profile or null if all rows match
+        private final int[] matchingRows;
+        private final int count;
+
+        private int resolvedRow = -1;
+        private String resolvedValue;
+        // The item of the current row is kept, so reading its other columns does not search the id groups again
+        private int itemRow = -1;
+        private ConfigurationItem item;
+
+        /**
+         * @param context Context used for resolving the values or null if the raw values are returned.
+         */
+        ItemsCursor(String[] projection, ConfigurationData data, @Nullable String viewId, @Nullable String profile, @Nullable Context context) {
+            super(projection, ITEMS_COLUMNS);
+            this.idGroups = data.getIdGroups();
+            this.configurationVariablePattern = data.getConfigurationVariablePattern();
+            this.configurationVariables = context != null ? new ConfigurationVariables(context) : null;
+            int firstGroup = 0;
+            int numberOfGroups = idGroups.size();
+            if (viewId != null) {
+                int index = idGroups.indexOfKey(viewId);
+                firstGroup = Math.max(index, 0);
+                numberOfGroups = index >= 0 ? 1 : 0;
+            }
+            this.groupStarts = new int[numberOfGroups];
+            int rows = 0;
+            for (int i = 0; i < numberOfGroups; i++) {
+                groupStarts[i] = rows;
+                rows += idGroups.valueAt(firstGroup + i).size();
+            }
+            this.firstGroup = firstGroup;
+            if (profile == null) {
+                this.matchingRows = null;
+                this.count = rows;
+            } else {
+                int[] matching = new int[rows];
+                int matchingCount = 0;
+                for (int row = 0; row < rows; row++) {
+                    if (profile.equals(getItem(row).getProfile())) {
+                        matching[matchingCount++] = row;
+                    }
+                }
+                this.matchingRows = matching;
+                this.count = matchingCount;
+            }
+        }
+
+        private ConfigurationItem getItem(int row) {
+            if (row != itemRow) {
+                item = findItem(row);
+                itemRow = row;
+            }
+            return item;
+        }
+
+        private ConfigurationItem findItem(int row) {
+            int group = Arrays.binarySearch(groupStarts, row);
+            if (group < 0) {
+                // Insertion point minus one is the group which contains the row
+                group = -group - 2;
+            }
+            return idGroups.valueAt(firstGroup + group).get(row - groupStarts[group]);
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        Object getValue(int position, int column) {
+            int row = matchingRows != null ? matchingRows[position] : position;
+            ConfigurationItem item = getItem(row);
+            switch (column) {
+                case 0:
+                    return row;
+                case 1:
+                    return item.getId();
+                case 2:
+                    return item.getProfile();
+                case 3:
+                    return item.getRawValue();
+                case 4:
+                    return getResolvedValue(row, item);
+                default:
+                    return item.getRawLabel() != null ? item.getRawLabel() : getResolvedValue(row, item);
+            }
+        }
+
+        private String getResolvedValue(int row, ConfigurationItem item) {
+            if (configurationVariables == null) {
+                return item.getRawValue();
+            }
+            if (row != resolvedRow) {
+                resolvedValue = configurationVariables.resolveStableValue(item.getRawValue(), configurationVariablePattern);
+                resolvedRow = row;
+            }
+            return resolvedValue;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.support.v4.util.SimpleArrayMap;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.data.ConfigurationFingerprint;
+import com.hrs.filltheform.util.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ConfigurationSnapshotStore persists the last successfully loaded configuration in the app-private storage.
+ * The snapshot is a compact binary file: every distinct string is written once to a string table and the configuration refers to it by index.
+ * Reading the snapshot does not need any XML parsing, so the configuration can be restored quickly after the service is restarted.
+ * Both methods do file I/O and should be called from a background thread.
+ */
+class ConfigurationSnapshotStore {
+
+    private static final String TAG = ConfigurationSnapshotStore.class.getSimpleName();
+
+    private static final String SNAPSHOT_FILE_NAME = "configuration_snapshot.bin";
+    private static final int MAGIC = 0x46544653;
+    private static final int VERSION = 3;
+    private static final int NO_STRING = -1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File snapshotFile;
+
+    ConfigurationSnapshotStore(Context context) {
+        this.snapshotFile = new File(context.getFilesDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    void write(ConfigurationData data) {
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            writeSnapshot(out, data);
+        } catch (IOException e) {
+            LogUtil.e(TAG, e.toString());
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(snapshotFile)) {
+            LogUtil.e(TAG, "Unable to replace the configuration snapshot");
+        }
+    }
+
+    @Nullable
+    ConfigurationData read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            return readSnapshot(in, snapshotFile.length());
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // A corrupted snapshot would fail again on every start of the service
+            LogUtil.e(TAG, e.toString());
+            delete();
+            return null;
+        }
+    }
+
+    void delete() {
+        //noinspection ResultOfMethodCallIgnored
+        snapshotFile.delete();
+    }
+
+    // Writing
+
+    private void writeSnapshot(DataOutputStream out, ConfigurationData data) throws IOException {
+        StringTable stringTable = new StringTable();
+        SimpleArrayMap<String, List<ConfigurationItem>> idGroups = data.getIdGroups();
+        int numberOfItems = 0;
+        for (int i = 0; i < idGroups.size(); i++) {
+            for (ConfigurationItem item : idGroups.valueAt(i)) {
+                stringTable.add(item.getId());
+                stringTable.add(item.getProfile());
+                stringTable.add(item.getRawValue());
+                stringTable.add(item.getRawLabel());
+                for (String id : item.getRememberLastEntryForIds()) {
+                    stringTable.add(id);
+                }
+                numberOfItems++;
+            }
+        }
+        for (String packageName : data.getPackageNames()) {
+            stringTable.add(packageName);
+        }
+        for (String profile : data.getProfiles()) {
+            stringTable.add(profile);
+        }
+        stringTable.add(data.getConfigurationFilePath());
+        stringTable.add(data.getConfigurationVariablePattern());
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        stringTable.writeTo(out);
+
+        out.writeInt(data.getSource());
+        out.writeInt(data.getGeneration());
+        out.writeInt(stringTable.indexOf(data.getConfigurationFilePath()));
+        out.writeInt(stringTable.indexOf(data.getConfigurationVariablePattern()));
+
+        writeFingerprint(out, data.getFingerprint());
+        writeStringIndices(out, stringTable, data.getPackageNames());
+        writeStringIndices(out, stringTable, data.getProfiles());
+
+        out.writeInt(numberOfItems);
+        for (int i = 0; i < idGroups.size(); i++) {
+            for (ConfigurationItem item : idGroups.valueAt(i)) {
+                out.writeInt(stringTable.indexOf(item.getId()));
+                out.writeInt(stringTable.indexOf(item.getProfile()));
+                out.writeInt(stringTable.indexOf(item.getRawValue()));
+                out.writeInt(stringTable.indexOf(item.getRawLabel()));
+                writeStringIndices(out, stringTable, item.getRememberLastEntryForIds());
+            }
+        }
+    }
+
+    private static void writeFingerprint(DataOutputStream out, ConfigurationFingerprint fingerprint) throws IOException {
+        out.writeBoolean(fingerprint != null);
+        if (fingerprint != null) {
+            out.writeLong(fingerprint.getLength());
+            out.writeLong(fingerprint.getLastModified());
+            out.writeInt(fingerprint.getDigest().length);
+            out.write(fingerprint.getDigest());
+        }
+    }
+
+    private static void writeStringIndices(DataOutputStream out, StringTable stringTable, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeInt(stringTable.indexOf(string));
+        }
+    }
+
+    // Reading
+
+    /**
+     * @param snapshotLength Length of the snapshot file. No count or length read from the snapshot can be larger.
+     */
+    private ConfigurationData readSnapshot(DataInputStream in, long snapshotLength) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            LogUtil.d(TAG, "Unknown configuration snapshot format");
+            return null;
+        }
+        String[] strings = readStringTable(in, snapshotLength);
+
+        @SuppressWarnings("WrongConstant") int source = in.readInt();
+        int generation = in.readInt();
+        String configurationFilePath = getString(strings, in.readInt());
+        String configurationVariablePattern = getString(strings, in.readInt());
+
+        ConfigurationData.Builder builder = new ConfigurationData.Builder(source, configurationFilePath);
+        builder.setConfigurationVariablePattern(configurationVariablePattern);
+        builder.setGeneration(generation);
+        builder.setFingerprint(readFingerprint(in, snapshotLength));
+        int numberOfPackages = readCount(in, 4, snapshotLength);
+        for (int i = 0; i < numberOfPackages; i++) {
+            builder.addPackageName(getString(strings, in.readInt()));
+        }
+        // Profiles are added first to keep their original order
+        int numberOfProfiles = readCount(in, 4, snapshotLength);
+        for (int i = 0; i < numberOfProfiles; i++) {
+            builder.addProfile(getString(strings, in.readInt()));
+        }
+        // Every item has at least four string indices and the number of remember ids
+        int numberOfItems = readCount(in, 20, snapshotLength);
+        for (int i = 0; i < numberOfItems; i++) {
+            ConfigurationItem.Builder itemBuilder = new ConfigurationItem.Builder(getString(strings, in.readInt()), getString(strings, in.readInt()));
+            itemBuilder.setRawValue(getString(strings, in.readInt()));
+            itemBuilder.setLabel(getString(strings, in.readInt()));
+            int numberOfRememberIds = readCount(in, 4, snapshotLength);
+            for (int j = 0; j < numberOfRememberIds; j++) {
+                itemBuilder.rememberLastEntryForId(getString(strings, in.readInt()));
+            }
+            builder.addConfigurationItem(itemBuilder.build());
+        }
+        return builder.build();
+    }
+
+    private static ConfigurationFingerprint readFingerprint(DataInputStream in, long snapshotLength) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long length = in.readLong();
+        long lastModified = in.readLong();
+        byte[] digest = new byte[readCount(in, 1, snapshotLength)];
+        in.readFully(digest);
+        return new ConfigurationFingerprint(length, lastModified, digest);
+    }
+
+    private static String[] readStringTable(DataInputStream in, long snapshotLength) throws IOException {
+        // Every string has at least its length
+        String[] strings = new String[readCount(in, 4, snapshotLength)];
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readCount(in, 1, snapshotLength);
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            in.readFully(buffer, 0, length);
+            strings[i] = new String(buffer, 0, length, UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * Reads a count of elements and checks that the elements can fit into the snapshot.
+     *
+     * @param elementSize Minimal number of bytes of one element.
+     */
+    private static int readCount(DataInputStream in, int elementSize, long snapshotLength) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * elementSize > snapshotLength) {
+            throw new IOException("Corrupted configuration snapshot");
+        }
+        return count;
+    }
+
+    private static String getString(String[] strings, int index) throws IOException {
+        if (index == NO_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Corrupted configuration snapshot");
+        }
+        return strings[index];
+    }
+
+    /**
+     * Table of distinct strings in the order of their first appearance.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void add(String string) {
+            if (string != null && !indices.containsKey(string)) {
+                indices.put(string, strings.size());
+                strings.add(string);
+            }
+        }
+
+        int indexOf(String string) {
+            if (string == null) {
+                return NO_STRING;
+            }
+            return indices.get(string);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
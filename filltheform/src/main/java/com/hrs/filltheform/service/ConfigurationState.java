@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ConfigurationState holds the package names of the configuration loaded in MyAccessibilityService and notifies the observers in the same process.
+ * An observer receives the current state as soon as it subscribes, so it does not need to ask for it. It must be used on the main thread.
+ */
+public final class ConfigurationState {
+
+    public interface Observer {
+        /**
+         * @param packageNames Package names of the loaded configuration or null if the configuration could not be loaded.
+         */
+        void onLoadedPackageNamesChanged(@Nullable List<String> packageNames);
+    }
+
+    private static final List<Observer> observers = new ArrayList<>();
+    private static boolean published;
+    private static List<String> loadedPackageNames;
+
+    private ConfigurationState() {
+    }
+
+    public static void subscribe(@NonNull Observer observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+        if (published) {
+            observer.onLoadedPackageNamesChanged(loadedPackageNames);
+        }
+    }
+
+    public static void unsubscribe(@NonNull Observer observer) {
+        observers.remove(observer);
+    }
+
+    // MyAccessibilityService support
+
+    /**
+     * @param packageNames Immutable list of the package names or null if the configuration could not be loaded.
+     */
+    static void publish(@Nullable List<String> packageNames) {
+        published = true;
+        loadedPackageNames = packageNames;
+        // Observers may unsubscribe while they are notified
+        for (Observer observer : new ArrayList<>(observers)) {
+            observer.onLoadedPackageNamesChanged(packageNames);
+        }
+    }
+
+    /**
+     * Forgets the state when MyAccessibilityService is destroyed. The observers stay subscribed.
+     */
+    static void clear() {
+        published = false;
+        loadedPackageNames = null;
+    }
+}
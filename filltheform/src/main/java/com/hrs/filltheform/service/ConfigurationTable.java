@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.support.v4.util.SimpleArrayMap;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * ConfigurationTable stores the loaded configuration items in columns instead of one object per item.
+ * Every distinct string is kept once in a string pool and the rows refer to it by index. The rows of one id are stored next to each other,
+ * so an id group is only a range of rows. The ConfigurationItem of a row is created when it is read for the first time, for example when
+ * its items are shown in the dialog, and it is kept by the table for the following reads.
+ */
+final class ConfigurationTable {
+
+    static final int NO_STRING = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String[] strings;
+    // Identity of the row i is firstIdentity + i, so an item created from the same row is always equal
+    private final int firstIdentity;
+    private final int[] profiles;
+    private final int[] values;
+    private final int[] labels;
+    // Remembered ids of the row i are rememberIds[rememberStarts[i]] to rememberIds[rememberStarts[i + 1] - 1]
+    private final int[] rememberStarts;
+    private final int[] rememberIds;
+    private final SimpleArrayMap<String, List<ConfigurationItem>> idGroups;
+    // Items of the rows which have been read. Items are immutable, so a row read by two threads at once at worst creates two equal items.
+    private final ConfigurationItem[] items;
+
+    private ConfigurationTable(Builder builder) {
+        int numberOfRows = builder.numberOfRows;
+        this.strings = builder.strings.toArray(new String[builder.strings.size()]);
+        this.firstIdentity = ConfigurationItem.reserveIdentities(numberOfRows);
+        this.profiles = new int[numberOfRows];
+        this.values = new int[numberOfRows];
+        this.labels = new int[numberOfRows];
+        this.rememberStarts = new int[numberOfRows + 1];
+        this.rememberIds = new int[builder.numberOfRememberIds];
+        this.items = new ConfigurationItem[numberOfRows];
+
+        // Rows are sorted by id with a stable counting sort, ids keep the order of their first appearance
+        int[] groupStarts = new int[strings.length + 1];
+        for (int row = 0; row < numberOfRows; row++) {
+            groupStarts[builder.ids[row] + 1]++;
+        }
+        for (int i = 0; i < strings.length; i++) {
+            groupStarts[i + 1] += groupStarts[i];
+        }
+        int[] targetRows = new int[numberOfRows];
+        int[] nextRows = Arrays.copyOf(groupStarts, strings.length);
+        for (int row = 0; row < numberOfRows; row++) {
+            targetRows[row] = nextRows[builder.ids[row]]++;
+        }
+        int[] rememberCounts = new int[numberOfRows];
+        for (int row = 0; row < numberOfRows; row++) {
+            int target = targetRows[row];
+            profiles[target] = builder.profiles[row];
+            values[target] = builder.values[row];
+            labels[target] = builder.labels[row];
+            rememberCounts[target] = builder.rememberStarts[row + 1] - builder.rememberStarts[row];
+        }
+        for (int row = 0; row < numberOfRows; row++) {
+            rememberStarts[row + 1] = rememberStarts[row] + rememberCounts[row];
+        }
+        for (int row = 0; row < numberOfRows; row++) {
+            int start = builder.rememberStarts[row];
+            System.arraycopy(builder.rememberIds, start, rememberIds, rememberStarts[targetRows[row]], builder.rememberStarts[row + 1] - start);
+        }
+
+        int numberOfIds = 0;
+        for (int id = 0; id < strings.length; id++) {
+            if (groupStarts[id] != groupStarts[id + 1]) {
+                numberOfIds++;
+            }
+        }
+        this.idGroups = new SimpleArrayMap<>(numberOfIds);
+        for (int id = 0; id < strings.length; id++) {
+            if (groupStarts[id] != groupStarts[id + 1]) {
+                idGroups.put(strings[id], new IdGroup(this, strings[id], groupStarts[id], groupStarts[id + 1]));
+            }
+        }
+    }
+
+    /**
+     * @return Id groups backed by this table. The returned map and the lists in it must not be changed.
+     */
+    SimpleArrayMap<String, List<ConfigurationItem>> getIdGroups() {
+        return idGroups;
+    }
+
+    int getNumberOfRows() {
+        return profiles.length;
+    }
+
+    int getNumberOfStrings() {
+        return strings.length;
+    }
+
+    private String getString(int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private ConfigurationItem getItem(String id, int row) {
+        ConfigurationItem item = items[row];
+        if (item == null) {
+            item = createItem(id, row);
+            items[row] = item;
+        }
+        return item;
+    }
+
+    private ConfigurationItem createItem(String id, int row) {
+        ConfigurationItem.Builder itemBuilder = new ConfigurationItem.Builder(id, getString(profiles[row]))
+                .setIdentity(firstIdentity + row)
+                .setRawValue(getString(values[row]))
+                .setLabel(getString(labels[row]));
+        for (int i = rememberStarts[row]; i < rememberStarts[row + 1]; i++) {
+            itemBuilder.rememberLastEntryForId(strings[rememberIds[i]]);
+        }
+        return itemBuilder.build();
+    }
+
+    /**
+     * Read-only view of the rows of one id. The item of a row is created by the first call of get() and returned again by the following calls.
+     */
+    private static class IdGroup extends AbstractList<ConfigurationItem> implements RandomAccess {
+        private final ConfigurationTable table;
+        private final String id;
+        private final int start;
+        private final int end;
+
+        IdGroup(ConfigurationTable table, String id, int start, int end) {
+            this.table = table;
+            this.id = id;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public ConfigurationItem get(int location) {
+            if (location < 0 || location >= end - start) {
+                throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + (end - start));
+            }
+            return table.getItem(id, start + location);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Collects the configuration items row by row. Equal strings are stored only once.
+     */
+    static class Builder {
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int[] profiles = new int[INITIAL_CAPACITY];
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int[] labels = new int[INITIAL_CAPACITY];
+        private int[] rememberStarts = new int[INITIAL_CAPACITY + 1];
+        private int[] rememberIds = new int[INITIAL_CAPACITY];
+        private int numberOfRows;
+        private int numberOfRememberIds;
+
+        /**
+         * @param item Configuration item with a non-null id. The item is not kept by the builder.
+         */
+        void add(ConfigurationItem item) {
+            if (numberOfRows == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                profiles = Arrays.copyOf(profiles, capacity);
+                values = Arrays.copyOf(values, capacity);
+                labels = Arrays.copyOf(labels, capacity);
+                rememberStarts = Arrays.copyOf(rememberStarts, capacity + 1);
+            }
+            int row = numberOfRows++;
+            ids[row] = intern(item.getId());
+            profiles[row] = intern(item.getProfile());
+            values[row] = intern(item.getRawValue());
+            labels[row] = intern(item.getRawLabel());
+            for (String id : item.getRememberLastEntryForIds()) {
+                if (numberOfRememberIds == rememberIds.length) {
+                    rememberIds = Arrays.copyOf(rememberIds, rememberIds.length * 2);
+                }
+                rememberIds[numberOfRememberIds++] = intern(id);
+            }
+            rememberStarts[row + 1] = numberOfRememberIds;
+        }
+
+        private int intern(String string) {
+            if (string == null) {
+                return NO_STRING;
+            }
+            Integer index = stringIndices.get(string);
+            if (index == null) {
+                index = strings.size();
+                stringIndices.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+
+        ConfigurationTable build() {
+            return new ConfigurationTable(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.SimpleArrayMap;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.util.SparseArray;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * FieldOrderCache keeps the traversal order of the configured views for every window.
+ * The order of a window is computed once, so advancing to the next field does not need to traverse the whole window again.
+ */
+class FieldOrderCache {
+
+    private final ServiceConfiguration configuration;
+    private final SparseArray<List<String>> fieldOrders = new SparseArray<>();
+    private int generation;
+
+    FieldOrderCache(ServiceConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param nodeInfo Node which has just been filled.
+     * @return Node of the next configured view in the same window or null if the node is the last one. The caller should recycle it.
+     */
+    @Nullable
+    AccessibilityNodeInfoCompat findNextField(@NonNull AccessibilityNodeInfoCompat nodeInfo) {
+        String nextViewId = getNextViewId(nodeInfo);
+        if (nextViewId == null) {
+            return null;
+        }
+        AccessibilityNodeInfoCompat rootNode = obtainWindowRoot(nodeInfo);
+        List<AccessibilityNodeInfoCompat> nodeInfoList = rootNode.findAccessibilityNodeInfosByViewId(nextViewId);
+        rootNode.recycle();
+        if (nodeInfoList == null || nodeInfoList.isEmpty()) {
+            // The view has disappeared, the order is computed again with the next request
+            invalidate(nodeInfo.getWindowId());
+            return null;
+        }
+        for (int i = 1; i < nodeInfoList.size(); i++) {
+            nodeInfoList.get(i).recycle();
+        }
+        return nodeInfoList.get(0);
+    }
+
+    /**
+     * @param nodeInfo Node which has just been filled.
+     * @return Full view id of the next configured view in the same window or null if the node is the last one.
+     */
+    @Nullable
+    String getNextViewId(@NonNull AccessibilityNodeInfoCompat nodeInfo) {
+        String viewId = nodeInfo.getViewIdResourceName();
+        if (viewId == null) {
+            return null;
+        }
+        if (generation != configuration.getGeneration()) {
+            fieldOrders.clear();
+            generation = configuration.getGeneration();
+        }
+        List<String> fieldOrder = fieldOrders.get(nodeInfo.getWindowId());
+        int index = fieldOrder != null ? fieldOrder.indexOf(viewId) : -1;
+        if (index == -1) {
+            // The window content has changed since the order was computed
+            fieldOrder = computeFieldOrder(nodeInfo);
+            fieldOrders.put(nodeInfo.getWindowId(), fieldOrder);
+            index = fieldOrder.indexOf(viewId);
+        }
+        if (index == -1 || index + 1 >= fieldOrder.size()) {
+            return null;
+        }
+        return fieldOrder.get(index + 1);
+    }
+
+    void invalidate(int windowId) {
+        fieldOrders.remove(windowId);
+    }
+
+    void clear() {
+        fieldOrders.clear();
+    }
+
+    private List<String> computeFieldOrder(AccessibilityNodeInfoCompat nodeInfo) {
+        List<String> fieldOrder = new ArrayList<>();
+        AccessibilityNodeInfoCompat rootNode = obtainWindowRoot(nodeInfo);
+        String viewIdPrefix = rootNode.getPackageName() + ":id/";
+        SimpleArrayMap<String, List<ConfigurationItem>> idGroups = configuration.getIdGroups();
+
+        // Pre-order traversal gives the same order as the accessibility traversal of the window
+        Deque<AccessibilityNodeInfoCompat> nodesToVisit = new ArrayDeque<>();
+        nodesToVisit.push(rootNode);
+        while (!nodesToVisit.isEmpty()) {
+            AccessibilityNodeInfoCompat node = nodesToVisit.pop();
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                AccessibilityNodeInfoCompat child = node.getChild(i);
+                if (child != null) {
+                    nodesToVisit.push(child);
+                }
+            }
+            String viewIdResourceName = node.getViewIdResourceName();
+            if (node.isEditable() && viewIdResourceName != null && viewIdResourceName.startsWith(viewIdPrefix)
+                    && idGroups.containsKey(viewIdResourceName.substring(viewIdPrefix.length()))
+                    && !fieldOrder.contains(viewIdResourceName)) {
+                fieldOrder.add(viewIdResourceName);
+            }
+            node.recycle();
+        }
+        return fieldOrder;
+    }
+
+    private static AccessibilityNodeInfoCompat obtainWindowRoot(AccessibilityNodeInfoCompat nodeInfo) {
+        AccessibilityNodeInfoCompat rootNode = AccessibilityNodeInfoCompat.obtain(nodeInfo);
+        AccessibilityNodeInfoCompat parent;
+        while ((parent = rootNode.getParent()) != null) {
+            rootNode.recycle();
+            rootNode = parent;
+        }
+        return rootNode;
+    }
+}
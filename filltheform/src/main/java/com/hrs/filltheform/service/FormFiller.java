@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v4.util.SimpleArrayMap;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.data.ConfigurationVariables;
+import com.hrs.filltheform.util.NodeTextUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * FormFiller fills views in the foreground window without showing FillTheFormDialog.
+ * It fills either a single view or every configured view of the window at once.
+ * It is used by FillTheFormCompanion when the dialog is not needed, for example in automated UI tests.
+ */
+class FormFiller {
+
+    private final Context context;
+    private final ServiceConfiguration configuration;
+    private ConfigurationVariables configurationVariables;
+
+    FormFiller(Context context, ServiceConfiguration configuration) {
+        this.context = context;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Fills the view with the value of the configuration item.
+     *
+     * @param rootNode Root node of the foreground window.
+     * @param viewId   Id of the view without the package name.
+     * @param profile  Profile of the configuration item or null for any profile.
+     * @param entry    Index of the configuration item among the items with this id and profile.
+     * @return Null if the view has been filled, otherwise the error message.
+     */
+    String fillView(@NonNull AccessibilityNodeInfoCompat rootNode, @NonNull String viewId, String profile, int entry) {
+        ConfigurationItem configurationItem = findConfigurationItem(viewId, profile, entry);
+        if (configurationItem == null) {
+            return "No configuration item for " + viewId + (profile != null ? " in profile " + profile : "") + " at entry " + entry;
+        }
+        String targetViewId = rootNode.getPackageName() + ":id/" + viewId;
+        List<AccessibilityNodeInfoCompat> nodeInfoList = rootNode.findAccessibilityNodeInfosByViewId(targetViewId);
+        if (nodeInfoList == null || nodeInfoList.isEmpty()) {
+            return "View not found in the foreground window: " + targetViewId;
+        }
+        try {
+            return fillNode(nodeInfoList.get(0), configurationItem) ? null : "Unable to set text of " + targetViewId;
+        } finally {
+            for (AccessibilityNodeInfoCompat nodeInfo : nodeInfoList) {
+                nodeInfo.recycle();
+            }
+        }
+    }
+
+    /**
+     * Fills every view of the window which has configuration items. The window is traversed once and all matching views are collected first,
+     * then the text of all collected views is set in one batch.
+     *
+     * @param rootNode Root node of the window. It is not recycled.
+     * @param profile  Profile of the configuration items. If a view has no item in this profile, its first item is used.
+     * @return Number of filled views.
+     */
+    int fillAll(@NonNull AccessibilityNodeInfoCompat rootNode, String profile) {
+        String viewIdPrefix = rootNode.getPackageName() + ":id/";
+        SimpleArrayMap<String, List<ConfigurationItem>> idGroups = configuration.getIdGroups();
+        List<AccessibilityNodeInfoCompat> matchedNodes = new ArrayList<>();
+        List<ConfigurationItem> matchedItems = new ArrayList<>();
+
+        // Collect matching nodes
+        Deque<AccessibilityNodeInfoCompat> nodesToVisit = new ArrayDeque<>();
+        nodesToVisit.push(AccessibilityNodeInfoCompat.obtain(rootNode));
+        while (!nodesToVisit.isEmpty()) {
+            AccessibilityNodeInfoCompat nodeInfo = nodesToVisit.pop();
+            for (int i = nodeInfo.getChildCount() - 1; i >= 0; i--) {
+                AccessibilityNodeInfoCompat child = nodeInfo.getChild(i);
+                if (child != null) {
+                    nodesToVisit.push(child);
+                }
+            }
+            ConfigurationItem configurationItem = null;
+            String viewIdResourceName = nodeInfo.getViewIdResourceName();
+            if (nodeInfo.isEditable() && viewIdResourceName != null && viewIdResourceName.startsWith(viewIdPrefix)) {
+                configurationItem = selectItemForProfile(idGroups.get(viewIdResourceName.substring(viewIdPrefix.length())), profile);
+            }
+            if (configurationItem != null) {
+                matchedNodes.add(nodeInfo);
+                matchedItems.add(configurationItem);
+            } else {
+                nodeInfo.recycle();
+            }
+        }
+
+        // Fill all matching nodes
+        ConfigurationVariables variables = getConfigurationVariables();
+        String configurationVariablePattern = configuration.getConfigurationVariablePattern();
+        int filledViews = 0;
+        for (int i = 0; i < matchedNodes.size(); i++) {
+            AccessibilityNodeInfoCompat nodeInfo = matchedNodes.get(i);
+            String value = variables.resolveValue(matchedItems.get(i).getRawValue(), configurationVariablePattern);
+            if (value != null && NodeTextUtil.setText(context, nodeInfo, value)) {
+                filledViews++;
+            }
+            nodeInfo.recycle();
+        }
+        return filledViews;
+    }
+
+    private static ConfigurationItem selectItemForProfile(List<ConfigurationItem> configurationItems, String profile) {
+        if (configurationItems == null || configurationItems.isEmpty()) {
+            return null;
+        }
+        if (profile != null) {
+            for (ConfigurationItem configurationItem : configurationItems) {
+                if (profile.equals(configurationItem.getProfile())) {
+                    return configurationItem;
+                }
+            }
+        }
+        return configurationItems.get(0);
+    }
+
+    private ConfigurationItem findConfigurationItem(String viewId, String profile, int entry) {
+        List<ConfigurationItem> configurationItems = configuration.getIdGroups().get(viewId);
+        if (configurationItems == null || entry < 0) {
+            return null;
+        }
+        int index = 0;
+        for (ConfigurationItem configurationItem : configurationItems) {
+            if (profile == null || profile.equals(configurationItem.getProfile())) {
+                if (index == entry) {
+                    return configurationItem;
+                }
+                index++;
+            }
+        }
+        return null;
+    }
+
+    private boolean fillNode(AccessibilityNodeInfoCompat nodeInfo, ConfigurationItem configurationItem) {
+        ConfigurationVariables variables = getConfigurationVariables();
+        String value = variables.resolveValue(configurationItem.getRawValue(), configuration.getConfigurationVariablePattern());
+        return value != null && NodeTextUtil.setText(context, nodeInfo, value);
+    }
+
+    private ConfigurationVariables getConfigurationVariables() {
+        if (configurationVariables == null) {
+            configurationVariables = new ConfigurationVariables(context);
+        }
+        return configurationVariables;
+    }
+}
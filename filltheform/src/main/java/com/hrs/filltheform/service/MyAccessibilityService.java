@@ -19,15 +19,26 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.hrs.filltheform.R;
 import com.hrs.filltheform.common.ConfigurationItem;
 import com.hrs.filltheform.common.event.EventResolver;
 import com.hrs.filltheform.common.event.EventResolverListener;
+import com.hrs.filltheform.data.ConfigurationVariables;
+import com.hrs.filltheform.data.RandomDataPoolMetrics;
 import com.hrs.filltheform.dialog.FillTheFormDialog;
 import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheform.util.ThreadUtil;
 import com.hrs.filltheform.util.ToastUtil;
 import com.hrs.filltheformcompanion.FillTheFormCompanion;
 
@@ -38,47 +49,75 @@ import java.util.List;
  * MyAccessibilityService initializes ServiceConfiguration. After successful configuration loading it sends loaded package names to the MainActivity.
  * This services also receives the Accessibility Events. It uses EventResolver and ServiceConfiguration to process these events.
  * When data for a specific AccessibilityNode is available it shows FillTheFormDialog to the user.
+ * FillTheFormCompanion can also fill views directly, without showing the dialog.
+ * When the service is connected, it restores the last successfully loaded configuration. A watched configuration file is reloaded when it changes.
+ * The service is ready for configuration loading right after it is connected. FillTheFormDialog is prepared when the main thread is idle
+ * and the configuration variables are preloaded in the background. Session configuration variables, like the IP address,
+ * are resolved again when the connectivity changes.
  */
 public class MyAccessibilityService extends android.accessibilityservice.AccessibilityService implements ServiceConfiguration.ServiceConfigurationListener, EventResolverListener {
 
     private static final String TAG = MyAccessibilityService.class.getSimpleName();
-
-    public static final String INTENT_ASK_FOR_LOADED_PACKAGE_NAMES = "com.hrs.filltheform.INTENT_ASK_FOR_LOADED_PACKAGE_NAMES";
-    public static final String INTENT_SEND_LOADED_PACKAGE_NAMES = "com.hrs.filltheform.INTENT_SEND_LOADED_PACKAGE_NAMES";
-    public static final String INTENT_EXTRA_PACKAGE_NAMES = "com.hrs.filltheform.INTENT_EXTRA_PACKAGE_NAMES";
+    private static final long AUTO_ADVANCE_DELAY_MILLIS = 50;
 
     private ServiceConfiguration configuration;
     private EventResolver eventResolver;
     private FillTheFormDialog fillTheFormDialog;
+    private FormFiller formFiller;
+    private FieldOrderCache fieldOrderCache;
+    private final Handler handler = new Handler();
+    private AccessibilityNodeInfoCompat autoAdvanceNode;
+    private final Runnable autoAdvanceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            advanceToNextField();
+        }
+    };
     private boolean showConfigurationSuccessMessage;
+    // Companion requests waiting for the configuration or the restored number of profiles, REQUEST_ID_NONE for broadcast requests
+    private final List<Integer> configurationRequestIds = new ArrayList<>();
+    private final List<Integer> numberOfProfilesRequestIds = new ArrayList<>();
+    // Id of the companion request which is handled right now
+    private int companionRequestId = FillTheFormCompanion.REQUEST_ID_NONE;
+    private final StartupTimings startupTimings = new StartupTimings();
+    // Random seed and shard defined by the loaded configuration or null
+    private String configuredRandomSeed;
 
     private BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            resolveBroadcastIntent(intent);
+            // Only CompanionService can attach a request id
+            checkCompanionActions(intent, FillTheFormCompanion.REQUEST_ID_NONE);
         }
     };
 
-    private void resolveBroadcastIntent(Intent intent) {
-        if (intent.getAction().equalsIgnoreCase(INTENT_ASK_FOR_LOADED_PACKAGE_NAMES)) {
-            if (configuration != null) {
-                configuration.resendConfigurationData();
+    private BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // The sticky broadcast delivered on registration is not a change
+            if (!isInitialStickyBroadcast()) {
+                ConfigurationVariables.invalidateSessionValues();
+                preloadConfigurationVariables();
             }
-        } else {
-            checkCompanionActions(intent);
         }
-    }
+    };
 
     // Service setup
 
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
+        startupTimings.onServiceConnected();
+        setUpServiceConfiguration();
         IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(INTENT_ASK_FOR_LOADED_PACKAGE_NAMES);
         addCompanionActions(intentFilter);
         registerReceiver(broadcastReceiver, intentFilter);
-        setUpServiceConfiguration();
+        registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        startupTimings.onServiceReady();
+        configuration.restoreSnapshot(this);
+        prepareFillTheFormDialog();
+        CompanionService.attach(this);
+        ConfigurationProvider.attach(configuration);
     }
 
     private void setUpServiceConfiguration() {
@@ -86,49 +125,204 @@ public class MyAccessibilityService extends android.accessibilityservice.Accessi
         configuration.setConfigurationLoaderListener(this);
         eventResolver = new ServiceEventResolver(configuration);
         eventResolver.setEventResolverListener(this);
-        fillTheFormDialog = new FillTheFormDialog(this);
     }
 
-    // Configuration management
+    private void prepareFillTheFormDialog() {
+        preloadConfigurationVariables();
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!getFillTheFormDialog().isPrepared()) {
+                    getFillTheFormDialog().prepare();
+                    startupTimings.onDialogPrepared();
+                }
+                return false;
+            }
+        });
+    }
 
-    @Override
-    public void onResendConfiguration(List<String> packageNames) {
-        sendLoadedPackageNames(packageNames);
+    private void preloadConfigurationVariables() {
+        final ConfigurationVariables configurationVariables = new ConfigurationVariables(this);
+        ThreadUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                configurationVariables.preload();
+            }
+        });
     }
 
+    private FillTheFormDialog getFillTheFormDialog() {
+        if (fillTheFormDialog == null) {
+            fillTheFormDialog = new FillTheFormDialog(this);
+            fillTheFormDialog.setFillTheFormDialogListener(new FillTheFormDialog.FillTheFormDialogListener() {
+                @Override
+                public void onFillAllRequested(AccessibilityNodeInfoCompat rootNode, String profile) {
+                    fillAll(rootNode, profile, false);
+                }
+
+                @Override
+                public void onAdvanceToNextFieldRequested(AccessibilityNodeInfoCompat filledNode) {
+                    cancelAutoAdvance();
+                    autoAdvanceNode = AccessibilityNodeInfoCompat.obtain(filledNode);
+                    // The next field is filled asynchronously, so user events can interrupt the auto advance
+                    handler.postDelayed(autoAdvanceRunnable, AUTO_ADVANCE_DELAY_MILLIS);
+                }
+            });
+        }
+        return fillTheFormDialog;
+    }
+
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    // Configuration management
+
     @Override
     public void onConfigurationCompleted(List<String> packageNames, List<String> profiles) {
-        sendLoadedPackageNames(packageNames);
+        ConfigurationState.publish(packageNames);
+        FillTheFormDialog fillTheFormDialog = getFillTheFormDialog();
+        fillTheFormDialog.init(configuration.getConfigurationVariablePattern());
         fillTheFormDialog.setProfiles(profiles);
-        sendBroadcast(new Intent(FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_FINISHED));
+        applyConfiguredRandomSeed();
+        ConfigurationProvider.notifyConfigurationChanged(this);
+        sendConfigurationFinished();
         if (showConfigurationSuccessMessage) {
             ToastUtil.show(this, getString(R.string.configuration_success));
         }
+        answerPendingNumberOfProfilesRequest();
     }
 
     @Override
     public void onConfigurationFailed(String errorMessage) {
         ToastUtil.show(this, getString(R.string.error_loading_configuration_file_prefix) + errorMessage);
-        sendLoadedPackageNames(null);
-        sendBroadcast(new Intent(FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_FINISHED));
+        ConfigurationState.publish(null);
+        sendConfigurationFinished();
+        answerPendingNumberOfProfilesRequest();
+    }
+
+    @Override
+    public void onConfigurationRestoreFinished(boolean restored) {
+        if (restored) {
+            ConfigurationState.publish(configuration.getPackageNames());
+            getFillTheFormDialog().init(configuration.getConfigurationVariablePattern());
+            getFillTheFormDialog().setProfiles(configuration.getProfiles());
+            applyConfiguredRandomSeed();
+            ConfigurationProvider.notifyConfigurationChanged(this);
+        }
+        answerPendingNumberOfProfilesRequest();
+    }
+
+    @Override
+    public void onConfigurationReloaded(List<String> packageNames, List<String> profiles) {
+        onConfigurationDataChanged(packageNames, profiles);
+    }
+
+    @Override
+    public void onConfigurationPatched(List<String> packageNames, List<String> profiles) {
+        onConfigurationDataChanged(packageNames, profiles);
+        sendConfigurationPatchResult(false);
     }
 
-    private void sendLoadedPackageNames(List<String> packageNames) {
-        Intent intent = new Intent(INTENT_SEND_LOADED_PACKAGE_NAMES);
-        intent.putStringArrayListExtra(INTENT_EXTRA_PACKAGE_NAMES, (ArrayList<String>) packageNames);
-        sendBroadcast(intent);
+    @Override
+    public void onConfigurationPatchRejected(String errorMessage, boolean fullReloadRequired) {
+        if (errorMessage != null) {
+            ToastUtil.show(this, getString(R.string.error_applying_configuration_patch_prefix) + errorMessage);
+        }
+        sendConfigurationPatchResult(fullReloadRequired);
+    }
+
+    private void onConfigurationDataChanged(List<String> packageNames, List<String> profiles) {
+        ConfigurationState.publish(packageNames);
+        FillTheFormDialog fillTheFormDialog = getFillTheFormDialog();
+        fillTheFormDialog.init(configuration.getConfigurationVariablePattern());
+        fillTheFormDialog.onConfigurationReloaded(profiles, configuration.getData().getIds());
+        applyConfiguredRandomSeed();
+        ConfigurationProvider.notifyConfigurationChanged(this);
+    }
+
+    /**
+     * Applies the random seed defined by the configuration. The random sequences only start again when the seed or the shard changes,
+     * so patching the configuration does not repeat the values. If the previous configuration defined a seed and this one does not,
+     * random values are not reproducible anymore.
+     */
+    private void applyConfiguredRandomSeed() {
+        String seed = getFirstRawValue(ConfigurationVariables.RANDOM_SEED_ID);
+        if (seed == null) {
+            if (configuredRandomSeed != null) {
+                configuredRandomSeed = null;
+                ConfigurationVariables.clearRandomSeed();
+            }
+            return;
+        }
+        String shard = getFirstRawValue(ConfigurationVariables.RANDOM_SHARD_ID);
+        String randomSeed = seed + "/" + shard;
+        if (randomSeed.equals(configuredRandomSeed)) {
+            return;
+        }
+        configuredRandomSeed = randomSeed;
+        try {
+            ConfigurationVariables.setRandomSeed(this, Long.parseLong(seed.trim()), shard == null ? 0 : Integer.parseInt(shard.trim()));
+        } catch (IllegalArgumentException e) {
+            LogUtil.e(TAG, "Invalid random seed: " + e.toString());
+        }
+    }
+
+    private String getFirstRawValue(String id) {
+        List<ConfigurationItem> configurationItems = configuration.getIdGroups().get(id);
+        if (configurationItems == null || configurationItems.isEmpty()) {
+            return null;
+        }
+        return configurationItems.get(0).getRawValue();
+    }
+
+    /**
+     * Answers all requests waiting for the configuration, also those whose loading has been replaced by a newer request.
+     */
+    private void sendConfigurationFinished() {
+        if (configurationRequestIds.isEmpty()) {
+            configurationRequestIds.add(FillTheFormCompanion.REQUEST_ID_NONE);
+        }
+        for (int requestId : configurationRequestIds) {
+            Intent intent = new Intent(FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_FINISHED);
+            intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_GENERATION, configuration.getGeneration());
+            sendCompanionReply(intent, requestId);
+        }
+        configurationRequestIds.clear();
+    }
+
+    private void sendConfigurationPatchResult(boolean fullReloadRequired) {
+        Intent intent = new Intent(FillTheFormCompanion.INTENT_REPORT_CONFIGURATION_PATCH_RESULT);
+        intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_GENERATION, configuration.getGeneration());
+        intent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FULL_RELOAD_REQUIRED, fullReloadRequired);
+        sendCompanionReply(intent);
+    }
+
+    private void answerPendingNumberOfProfilesRequest() {
+        for (int requestId : numberOfProfilesRequestIds) {
+            sendNumberOfProfiles(requestId);
+        }
+        numberOfProfilesRequestIds.clear();
     }
 
     // Event handling
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
+        if (eventResolver == null) {
+            return;
+        }
+        if (event.getEventType() == AccessibilityEvent.TYPE_VIEW_CLICKED || event.getEventType() == AccessibilityEvent.TYPE_VIEW_LONG_CLICKED) {
+            // User interaction stops the auto advance
+            cancelAutoAdvance();
+        }
         eventResolver.onAccessibilityEvent(event);
     }
 
     @Override
     public void onDataForSelectedNodeAvailable(AccessibilityNodeInfoCompat selectedNodeInfo, int accessibilityEventType, List<ConfigurationItem> selectedConfigurationItems) {
-        fillTheFormDialog.showDialog(selectedNodeInfo, accessibilityEventType, selectedConfigurationItems);
+        getFillTheFormDialog().showDialog(selectedNodeInfo, accessibilityEventType, selectedConfigurationItems);
+        startupTimings.onDialogShown();
     }
 
     @Override
@@ -136,12 +330,70 @@ public class MyAccessibilityService extends android.accessibilityservice.Accessi
         LogUtil.d(TAG, getString(R.string.values_not_found) + selectedNodeInfo.toString());
     }
 
+    // Auto advance
+
+    private void advanceToNextField() {
+        AccessibilityNodeInfoCompat filledNode = autoAdvanceNode;
+        autoAdvanceNode = null;
+        if (filledNode == null) {
+            return;
+        }
+        AccessibilityNodeInfoCompat nextNode = null;
+        if (getFillTheFormDialog().isDialogVisible()) {
+            nextNode = getFieldOrderCache().findNextField(filledNode);
+        }
+        filledNode.recycle();
+        if (nextNode == null) {
+            return;
+        }
+        String viewIdResourceName = nextNode.getViewIdResourceName();
+        String idGroupKey = viewIdResourceName.substring(viewIdResourceName.indexOf(":id/") + ":id/".length());
+        List<ConfigurationItem> selectedConfigurationItems = configuration.getIdGroups().get(idGroupKey);
+        if (selectedConfigurationItems == null) {
+            nextNode.recycle();
+            return;
+        }
+        nextNode.performAction(AccessibilityNodeInfoCompat.ACTION_ACCESSIBILITY_FOCUS);
+        // The dialog fills the node in fast mode and requests the next field again
+        getFillTheFormDialog().showDialog(nextNode, AccessibilityEvent.TYPE_VIEW_FOCUSED, selectedConfigurationItems);
+    }
+
+    private void cancelAutoAdvance() {
+        handler.removeCallbacks(autoAdvanceRunnable);
+        if (autoAdvanceNode != null) {
+            autoAdvanceNode.recycle();
+            autoAdvanceNode = null;
+        }
+    }
+
+    private FieldOrderCache getFieldOrderCache() {
+        if (fieldOrderCache == null) {
+            fieldOrderCache = new FieldOrderCache(configuration);
+        }
+        return fieldOrderCache;
+    }
+
     // Lifecycle
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         unregisterReceiver(broadcastReceiver);
+        unregisterReceiver(connectivityReceiver);
+        CompanionService.detach();
+        ConfigurationProvider.detach();
+        ConfigurationState.clear();
+        cancelAutoAdvance();
+        if (configuration != null) {
+            configuration.stopWatching();
+        }
+        if (fillTheFormDialog != null) {
+            fillTheFormDialog.saveLastEntries();
+        }
+        RandomDataPoolMetrics randomDataPoolMetrics = ConfigurationVariables.getRandomDataPoolMetrics();
+        if (randomDataPoolMetrics != null) {
+            LogUtil.i(TAG, "Random data pool: " + randomDataPoolMetrics);
+        }
     }
 
     @Override
@@ -151,28 +403,105 @@ public class MyAccessibilityService extends android.accessibilityservice.Accessi
 
     // FillTheFormCompanion support
 
+    /**
+     * Handles the companion request sent through CompanionService.
+     */
+    void handleCompanionIntent(Intent intent) {
+        checkCompanionActions(intent, intent.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_REQUEST_ID, FillTheFormCompanion.REQUEST_ID_NONE));
+    }
+
+    /**
+     * @return Status reported to CompanionService.
+     */
+    Bundle getCompanionStatus() {
+        Bundle status = new Bundle();
+        status.putInt(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_GENERATION, configuration.getGeneration());
+        status.putInt(FillTheFormCompanion.INTENT_EXTRA_NUMBER_OF_PROFILES, configuration.getNumberOfProfiles());
+        status.putString(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_PATH, configuration.getData().getConfigurationFilePath());
+        status.putBoolean(FillTheFormCompanion.INTENT_EXTRA_RESTORE_IN_PROGRESS, configuration.isRestoreInProgress());
+        return status;
+    }
+
+    /**
+     * Replies to the companion request which is handled right now.
+     */
+    private void sendCompanionReply(Intent reply) {
+        sendCompanionReply(reply, companionRequestId);
+    }
+
+    /**
+     * Replies to a companion request. The reply echoes the id of a request bound to CompanionService and is delivered to it,
+     * replies to broadcast requests are broadcast.
+     */
+    private void sendCompanionReply(Intent reply, int requestId) {
+        if (requestId == FillTheFormCompanion.REQUEST_ID_NONE) {
+            sendBroadcast(reply);
+            return;
+        }
+        reply.putExtra(FillTheFormCompanion.INTENT_EXTRA_REQUEST_ID, requestId);
+        if (!CompanionService.deliverReply(reply)) {
+            // The request has already been answered, e.g. when the service was detached
+            LogUtil.d(TAG, "No pending request " + requestId + " for " + reply.getAction());
+        }
+    }
+
     private void addCompanionActions(IntentFilter intentFilter) {
         intentFilter.addAction(FillTheFormCompanion.INTENT_READ_CONFIGURATION_FILE);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_APPLY_CONFIGURATION_PATCH);
         intentFilter.addAction(FillTheFormCompanion.INTENT_HIDE_FILL_THE_FORM_DIALOG);
         intentFilter.addAction(FillTheFormCompanion.INTENT_SET_FAST_MODE);
         intentFilter.addAction(FillTheFormCompanion.INTENT_SET_NORMAL_MODE);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_ENABLE_AUTO_ADVANCE);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_DISABLE_AUTO_ADVANCE);
         intentFilter.addAction(FillTheFormCompanion.INTENT_REQUEST_NUMBER_OF_PROFILES);
         intentFilter.addAction(FillTheFormCompanion.INTENT_SELECT_NEXT_PROFILE);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_SELECT_PROFILE);
         intentFilter.addAction(FillTheFormCompanion.INTENT_CLEAR_DIALOG_DATA);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_FILL_VIEW);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_FILL_ALL);
+        intentFilter.addAction(FillTheFormCompanion.INTENT_SET_RANDOM_SEED);
     }
 
-    private void checkCompanionActions(Intent intent) {
-        if (fillTheFormDialog == null) {
+    private void checkCompanionActions(Intent intent, int requestId) {
+        if (configuration == null) {
             return;
         }
+        companionRequestId = requestId;
+        try {
+            handleCompanionAction(intent);
+        } finally {
+            companionRequestId = FillTheFormCompanion.REQUEST_ID_NONE;
+        }
+    }
+
+    private void handleCompanionAction(Intent intent) {
+        FillTheFormDialog fillTheFormDialog = getFillTheFormDialog();
         String action = intent.getAction();
         switch (action) {
             case FillTheFormCompanion.INTENT_READ_CONFIGURATION_FILE:
                 showConfigurationSuccessMessage = intent.getBooleanExtra(FillTheFormCompanion.INTENT_EXTRA_SHOW_CONFIGURATION_SUCCESS_MESSAGE, false);
                 String configurationFilePath = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_PATH);
                 @FillTheFormCompanion.ConfigurationSource int configurationFileSource = intent.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_SOURCE, FillTheFormCompanion.SOURCE_ASSETS);
-                configuration.init(this, configurationFileSource, configurationFilePath);
-                fillTheFormDialog.init(configuration.getConfigurationVariablePattern());
+                boolean forceReload = intent.getBooleanExtra(FillTheFormCompanion.INTENT_EXTRA_FORCE_RELOAD, false);
+                addConfigurationRequestId();
+                configuration.init(this, configurationFileSource, configurationFilePath, forceReload);
+                configuration.setWatchEnabled(intent.getBooleanExtra(FillTheFormCompanion.INTENT_EXTRA_WATCH_CONFIGURATION_FILE, false));
+                break;
+            case FillTheFormCompanion.INTENT_READ_CONFIGURATION_CONTENT:
+                ParcelFileDescriptor content = intent.getParcelableExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_CONTENT);
+                String name = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_FILE_PATH);
+                if (content != null) {
+                    showConfigurationSuccessMessage = false;
+                    addConfigurationRequestId();
+                    configuration.initFromStream(this, content, name != null ? name : "stream");
+                }
+                break;
+            case FillTheFormCompanion.INTENT_APPLY_CONFIGURATION_PATCH:
+                String patch = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_PATCH);
+                int baseGeneration = intent.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_GENERATION, FillTheFormCompanion.CONFIGURATION_GENERATION_UNKNOWN);
+                if (patch != null) {
+                    configuration.applyPatch(baseGeneration, patch);
+                }
                 break;
             case FillTheFormCompanion.INTENT_HIDE_FILL_THE_FORM_DIALOG:
                 fillTheFormDialog.hideDialog();
@@ -183,21 +512,168 @@ public class MyAccessibilityService extends android.accessibilityservice.Accessi
             case FillTheFormCompanion.INTENT_SET_NORMAL_MODE:
                 fillTheFormDialog.setNormalMode();
                 break;
+            case FillTheFormCompanion.INTENT_ENABLE_AUTO_ADVANCE:
+                fillTheFormDialog.setAutoAdvanceEnabled(true);
+                break;
+            case FillTheFormCompanion.INTENT_DISABLE_AUTO_ADVANCE:
+                fillTheFormDialog.setAutoAdvanceEnabled(false);
+                break;
             case FillTheFormCompanion.INTENT_REQUEST_NUMBER_OF_PROFILES:
-                int numberOfProfiles = configuration.getNumberOfProfiles();
-                // Answer with number of profiles
-                Intent broadcastIntent = new Intent();
-                broadcastIntent.setAction(FillTheFormCompanion.INTENT_SEND_NUMBER_OF_PROFILES);
-                broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_NUMBER_OF_PROFILES, numberOfProfiles);
-                sendBroadcast(broadcastIntent);
+                if (configuration.isRestoreInProgress()) {
+                    // Answer as soon as the persisted configuration is restored
+                    numberOfProfilesRequestIds.add(companionRequestId);
+                } else {
+                    sendNumberOfProfiles(companionRequestId);
+                }
                 break;
             case FillTheFormCompanion.INTENT_SELECT_NEXT_PROFILE:
                 fillTheFormDialog.selectNextProfile();
                 break;
+            case FillTheFormCompanion.INTENT_SELECT_PROFILE:
+                selectProfile(intent);
+                break;
+            case FillTheFormCompanion.INTENT_FILL_VIEW:
+                fillView(intent);
+                break;
+            case FillTheFormCompanion.INTENT_FILL_ALL:
+                fillAll(intent);
+                break;
             case FillTheFormCompanion.INTENT_CLEAR_DIALOG_DATA:
                 fillTheFormDialog.clearData();
+                break;
+            case FillTheFormCompanion.INTENT_SET_RANDOM_SEED:
+                setRandomSeed(intent);
+                break;
             default:
                 break;
         }
     }
+
+    private void addConfigurationRequestId() {
+        // Broadcast requests get one broadcast reply
+        if (!configurationRequestIds.contains(companionRequestId)) {
+            configurationRequestIds.add(companionRequestId);
+        }
+    }
+
+    private void setRandomSeed(Intent intent) {
+        if (intent.hasExtra(FillTheFormCompanion.INTENT_EXTRA_RANDOM_SEED)) {
+            long seed = intent.getLongExtra(FillTheFormCompanion.INTENT_EXTRA_RANDOM_SEED, 0);
+            int shardIndex = intent.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_RANDOM_SHARD, 0);
+            ConfigurationVariables.setRandomSeed(this, seed, Math.max(0, shardIndex));
+        } else {
+            ConfigurationVariables.clearRandomSeed();
+        }
+    }
+
+    private void selectProfile(Intent intent) {
+        String profile;
+        int profileIndex;
+        if (intent.hasExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME)) {
+            profile = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME);
+            profileIndex = getFillTheFormDialog().selectProfile(profile);
+            if (profileIndex == FillTheFormCompanion.PROFILE_INDEX_UNKNOWN) {
+                profile = null;
+            }
+        } else {
+            profileIndex = intent.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_INDEX, FillTheFormCompanion.PROFILE_INDEX_UNKNOWN);
+            profile = getFillTheFormDialog().selectProfile(profileIndex);
+            if (profile == null) {
+                profileIndex = FillTheFormCompanion.PROFILE_INDEX_UNKNOWN;
+            }
+        }
+        // Answer with the selected profile
+        Intent broadcastIntent = new Intent(FillTheFormCompanion.INTENT_REPORT_SELECTED_PROFILE);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME, profile);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_INDEX, profileIndex);
+        sendCompanionReply(broadcastIntent);
+    }
+
+    private void fillAll(Intent intent) {
+        String profile = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME);
+        AccessibilityNodeInfo rootNodeInfo = getRootInActiveWindow();
+        if (rootNodeInfo == null) {
+            sendFillAllResult(0, 0, "No foreground window");
+            return;
+        }
+        AccessibilityNodeInfoCompat rootNode = new AccessibilityNodeInfoCompat(rootNodeInfo);
+        try {
+            fillAll(rootNode, profile, true);
+        } finally {
+            rootNode.recycle();
+        }
+    }
+
+    /**
+     * @param companionRequest True if the fill was requested by the companion, which gets the result. Otherwise the result is shown to the user.
+     */
+    private void fillAll(AccessibilityNodeInfoCompat rootNode, String profile, boolean companionRequest) {
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        int filledFields = getFormFiller().fillAll(rootNode, profile);
+        long latencyMicros = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+        LogUtil.d(TAG, "Filled " + filledFields + " fields in " + latencyMicros + " us");
+        if (companionRequest) {
+            sendFillAllResult(filledFields, latencyMicros, null);
+        } else {
+            ToastUtil.show(this, getString(R.string.fill_all_result, filledFields, latencyMicros / 1000));
+        }
+    }
+
+    private void sendFillAllResult(int filledFields, long latencyMicros, String errorMessage) {
+        Intent broadcastIntent = new Intent(FillTheFormCompanion.INTENT_REPORT_FILL_ALL_RESULT);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FILLED_FIELDS, filledFields);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FILL_SUCCESSFUL, errorMessage == null);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_ERROR_MESSAGE, errorMessage);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FILL_LATENCY_MICROS, latencyMicros);
+        sendCompanionReply(broadcastIntent);
+    }
+
+    private void fillView(Intent intent) {
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        String viewId = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_VIEW_ID);
+        String profile = intent.getStringExtra(FillTheFormCompanion.INTENT_EXTRA_PROFILE_NAME);
+        int entry = intent.getIntExtra(FillTheFormCompanion.INTENT_EXTRA_ENTRY, 0);
+        String errorMessage;
+        AccessibilityNodeInfo rootNodeInfo = getRootInActiveWindow();
+        if (viewId == null) {
+            errorMessage = "View id is missing";
+        } else if (rootNodeInfo == null) {
+            errorMessage = "No foreground window";
+        } else {
+            AccessibilityNodeInfoCompat rootNode = new AccessibilityNodeInfoCompat(rootNodeInfo);
+            try {
+                errorMessage = getFormFiller().fillView(rootNode, viewId, profile, entry);
+            } finally {
+                rootNode.recycle();
+            }
+        }
+        long latencyMicros = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+        if (errorMessage != null) {
+            LogUtil.d(TAG, errorMessage);
+        }
+        // Answer with the fill result
+        Intent broadcastIntent = new Intent(FillTheFormCompanion.INTENT_REPORT_FILL_VIEW_RESULT);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_VIEW_ID, viewId);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FILL_SUCCESSFUL, errorMessage == null);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_ERROR_MESSAGE, errorMessage);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_FILL_LATENCY_MICROS, latencyMicros);
+        sendCompanionReply(broadcastIntent);
+    }
+
+    private FormFiller getFormFiller() {
+        if (formFiller == null) {
+            formFiller = new FormFiller(this, configuration);
+        }
+        return formFiller;
+    }
+
+    private void sendNumberOfProfiles(int requestId) {
+        int numberOfProfiles = configuration.getNumberOfProfiles();
+        // Answer with number of profiles
+        Intent broadcastIntent = new Intent();
+        broadcastIntent.setAction(FillTheFormCompanion.INTENT_SEND_NUMBER_OF_PROFILES);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_NUMBER_OF_PROFILES, numberOfProfiles);
+        broadcastIntent.putExtra(FillTheFormCompanion.INTENT_EXTRA_CONFIGURATION_GENERATION, configuration.getGeneration());
+        sendCompanionReply(broadcastIntent, requestId);
+    }
 }
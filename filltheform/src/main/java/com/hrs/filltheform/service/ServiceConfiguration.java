@@ -16,112 +16,591 @@
 package com.hrs.filltheform.service;
 
 import android.content.Context;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.util.SimpleArrayMap;
 
 import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.ConfigurationPatch;
 import com.hrs.filltheform.common.reader.ConfigurationReader;
+import com.hrs.filltheform.common.reader.ConfigurationIncludeListener;
 import com.hrs.filltheform.common.reader.ConfigurationReaderListener;
-import com.hrs.filltheform.data.XmlConfigurationFileReader;
+import com.hrs.filltheform.data.ConfigurationFileSource;
+import com.hrs.filltheform.data.ConfigurationFingerprint;
+import com.hrs.filltheform.data.ConfigurationFragmentCache;
+import com.hrs.filltheform.data.IncludingConfigurationFileReader;
+import com.hrs.filltheform.data.XmlConfigurationPatchReader;
+import com.hrs.filltheform.util.LogUtil;
+import com.hrs.filltheform.util.ThreadUtil;
 import com.hrs.filltheformcompanion.FillTheFormCompanion;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.Set;
 
 /**
  * ServiceConfiguration holds the data loaded from the configuration file using ConfigurationReader.
+ * The loaded data is kept in an immutable ConfigurationData snapshot. The last successfully loaded snapshot is persisted,
+ * so that it can be restored when the service is restarted.
+ * Repeated requests for an unchanged configuration file are answered without parsing the file again.
+ * A configuration file on the external storage can be watched and reloaded when it is changed.
+ * Included configuration files are cached, only the changed ones are parsed again.
+ * Configuration files and streams are parsed on a loader thread, the current configuration stays in use until the new one is read.
+ * Every loaded configuration has a generation number, which is used to apply configuration patches without loading the whole file.
  */
-public class ServiceConfiguration implements ConfigurationReaderListener {
+public class ServiceConfiguration {
 
-    public interface ServiceConfigurationListener {
-        void onResendConfiguration(List<String> packageNames);
+    private static final String TAG = ServiceConfiguration.class.getSimpleName();
 
+    public interface ServiceConfigurationListener {
         void onConfigurationCompleted(List<String> packageNames, List<String> profiles);
 
         void onConfigurationFailed(String errorMessage);
+
+        /**
+         * Called when restoring of the persisted configuration is finished.
+         *
+         * @param restored True if the persisted configuration has been restored.
+         */
+        void onConfigurationRestoreFinished(boolean restored);
+
+        /**
+         * Called when the watched configuration file has been changed and the new configuration has been loaded.
+         */
+        void onConfigurationReloaded(List<String> packageNames, List<String> profiles);
+
+        /**
+         * Called when a configuration patch has been applied.
+         */
+        void onConfigurationPatched(List<String> packageNames, List<String> profiles);
+
+        /**
+         * Called when a configuration patch could not be applied.
+         *
+         * @param errorMessage       Error message or null if the patch does not match the loaded configuration.
+         * @param fullReloadRequired True if the base generation of the patch does not match the loaded configuration.
+         */
+        void onConfigurationPatchRejected(String errorMessage, boolean fullReloadRequired);
     }
 
-    private final List<String> packageNames = new ArrayList<>();
-    private final SimpleArrayMap<String, List<ConfigurationItem>> idGroups = new SimpleArrayMap<>();
-    private final Set<String> profiles = new LinkedHashSet<>();
+    private volatile ConfigurationData data = ConfigurationData.EMPTY;
+    private int loadRequestCount;
+    // A configuration file or stream is being read
+    private boolean loadInProgress;
+    private int lastGeneration;
+    private boolean restoreInProgress;
 
     private ServiceConfigurationListener serviceConfigurationListener;
-    private ConfigurationReader configurationReader;
+    private ConfigurationFileSource configurationFileSource;
+    private ConfigurationSnapshotStore snapshotStore;
+    private ConfigurationFileWatcher configurationFileWatcher;
+    private final ConfigurationFragmentCache fragmentCache = new ConfigurationFragmentCache();
+    private Context applicationContext;
+
+    // Last requested configuration file
+    @FillTheFormCompanion.ConfigurationSource
+    private int requestedSource;
+    private String requestedFilePath;
+
+    // Unchanged configuration requests
+    private int cacheHits;
+    private int cacheMisses;
 
     public void setConfigurationLoaderListener(ServiceConfigurationListener serviceConfigurationListener) {
         this.serviceConfigurationListener = serviceConfigurationListener;
     }
 
     public void init(Context context, @FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
-        packageNames.clear();
-        idGroups.clear();
-        profiles.clear();
-        if (configurationReader == null) {
-            configurationReader = new XmlConfigurationFileReader(context, this);
+        init(context, source, configurationFilePath, false);
+    }
+
+    /**
+     * Loads the configuration file. If the length and the modification time of the file are the same as those of the currently
+     * loaded configuration, parsing is skipped and the current configuration is reported as completed. Otherwise the file and its includes
+     * are read on a loader thread. If reading fails, the current configuration is cleared.
+     *
+     * @param forceReload True if the file should be parsed even if its content has not changed.
+     */
+    public void init(Context context, @FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath, boolean forceReload) {
+        final int loadRequest = ++loadRequestCount;
+        restoreInProgress = false;
+        requestedSource = source;
+        requestedFilePath = configurationFilePath;
+        applicationContext = context.getApplicationContext();
+        getSnapshotStore(context);
+        if (configurationFileSource == null) {
+            configurationFileSource = new ConfigurationFileSource(context);
+        }
+        if (!forceReload && getUnchangedFingerprint(source, configurationFilePath) != null) {
+            loadInProgress = false;
+            onConfigurationUnchanged();
+            return;
         }
-        configurationReader.readConfigurationFile(source, configurationFilePath);
+        loadInProgress = true;
+        final int generation = nextGeneration();
+        // A forced reload does not compare the content with the current configuration
+        final ConfigurationData currentData = forceReload ? ConfigurationData.EMPTY : data;
+        final ConfigurationFileSource fileSource = configurationFileSource;
+        final Context appContext = applicationContext;
+        final ConfigurationFragmentCache cache = fragmentCache;
+        final int fileSourceType = source;
+        final String filePath = configurationFilePath;
+        // Includes are loaded in parallel and waited for, so the whole load runs off the main thread
+        ThreadUtil.runLoader(new Runnable() {
+            @Override
+            public void run() {
+                final String[] errorMessage = new String[1];
+                final ConfigurationData loadedData = readConfigurationInBackground(appContext, cache, fileSource, fileSourceType, filePath,
+                        currentData, generation, errorMessage);
+                ThreadUtil.postOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onConfigurationFileRead(loadRequest, loadedData, errorMessage[0]);
+                    }
+                });
+            }
+        });
     }
 
-    @Override
-    public void onPackageName(String packageName) {
-        packageNames.add(packageName);
+    private void onConfigurationFileRead(int loadRequest, ConfigurationData loadedData, String errorMessage) {
+        if (loadRequest != loadRequestCount) {
+            return;
+        }
+        loadInProgress = false;
+        if (errorMessage != null) {
+            data = ConfigurationData.EMPTY;
+            onReadingFailed(errorMessage);
+            return;
+        }
+        if (loadedData == null || loadedData.getGeneration() == data.getGeneration()) {
+            // The content has not changed, a new modification time is remembered for the fast path
+            if (loadedData != null) {
+                data = loadedData;
+                persistSnapshot(data);
+            }
+            onConfigurationUnchanged();
+            return;
+        }
+        cacheMisses++;
+        data = loadedData;
+        persistSnapshot(data);
+        if (serviceConfigurationListener != null) {
+            serviceConfigurationListener.onConfigurationCompleted(data.getPackageNames(), data.getProfiles());
+        }
+    }
+
+    /**
+     * Loads the configuration streamed by the companion. The content is parsed in the background while it arrives through the pipe,
+     * the current configuration stays in use until the new one is completed. Streamed content has no fingerprint and is always parsed.
+     *
+     * @param content Read side of the pipe, it is closed when the content is read.
+     * @param name    Name of the streamed configuration, used instead of the configuration file path.
+     */
+    public void initFromStream(Context context, @NonNull final ParcelFileDescriptor content, @NonNull final String name) {
+        final int loadRequest = ++loadRequestCount;
+        restoreInProgress = false;
+        loadInProgress = true;
+        stopWatching();
+        requestedSource = FillTheFormCompanion.SOURCE_STREAM;
+        requestedFilePath = name;
+        applicationContext = context.getApplicationContext();
+        getSnapshotStore(context);
+        cacheMisses++;
+        final int generation = nextGeneration();
+        final Context appContext = applicationContext;
+        final ConfigurationFragmentCache cache = fragmentCache;
+        // The companion writes the stream while it is read, the low priority background thread would slow it down
+        ThreadUtil.runLoader(new Runnable() {
+            @Override
+            public void run() {
+                final String[] errorMessage = new String[1];
+                final ConfigurationData streamedData = readStreamInBackground(appContext, cache, content, name, generation, errorMessage);
+                ThreadUtil.postOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onStreamedConfigurationRead(loadRequest, streamedData, errorMessage[0]);
+                    }
+                });
+            }
+        });
     }
 
-    @Override
-    public void onConfigurationItem(ConfigurationItem configurationItem) {
-        List<ConfigurationItem> list = idGroups.get(configurationItem.getId());
-        if (list == null) {
-            list = new ArrayList<>();
-            idGroups.put(configurationItem.getId(), list);
+    /**
+     * @return The streamed configuration or null if it could not be parsed, then the error message is stored in errorMessage.
+     */
+    private static ConfigurationData readStreamInBackground(Context context, ConfigurationFragmentCache fragmentCache, ParcelFileDescriptor content, String name, int generation, final String[] errorMessage) {
+        final ConfigurationData.Builder builder = new ConfigurationData.Builder(FillTheFormCompanion.SOURCE_STREAM, name);
+        builder.setGeneration(generation);
+        final boolean[] completed = new boolean[1];
+        ConfigurationReader reader = new IncludingConfigurationFileReader(context, new ConfigurationReaderListener() {
+            @Override
+            public void onPackageName(String packageName) {
+                builder.addPackageName(packageName);
+            }
+
+            @Override
+            public void onConfigurationItem(ConfigurationItem configurationItem) {
+                builder.addConfigurationItem(configurationItem);
+            }
+
+            @Override
+            public void onReadingCompleted() {
+                completed[0] = true;
+            }
+
+            @Override
+            public void onReadingFailed(String message) {
+                errorMessage[0] = message;
+            }
+        }, fragmentCache);
+        builder.setConfigurationVariablePattern(reader.getConfigurationVariablePattern());
+        try (InputStream inputStream = new ParcelFileDescriptor.AutoCloseInputStream(content)) {
+            reader.readConfiguration(inputStream);
+        } catch (IOException e) {
+            LogUtil.e(TAG, e.toString());
         }
-        list.add(configurationItem);
-        // Add profile
-        if (configurationItem.getProfile() != null) {
-            profiles.add(configurationItem.getProfile());
+        if (!completed[0] && errorMessage[0] == null) {
+            errorMessage[0] = "Configuration stream " + name + " ended unexpectedly";
         }
+        return completed[0] ? builder.build() : null;
     }
 
-    @Override
-    public void onReadingCompleted() {
+    private void onStreamedConfigurationRead(int loadRequest, ConfigurationData streamedData, String errorMessage) {
+        if (loadRequest != loadRequestCount) {
+            return;
+        }
+        loadInProgress = false;
+        if (streamedData == null) {
+            onReadingFailed(errorMessage);
+            return;
+        }
+        data = streamedData;
+        persistSnapshot(data);
         if (serviceConfigurationListener != null) {
-            List<String> profilesList = new ArrayList<>(profiles);
-            serviceConfigurationListener.onConfigurationCompleted(packageNames, profilesList);
+            serviceConfigurationListener.onConfigurationCompleted(data.getPackageNames(), data.getProfiles());
         }
     }
 
-    @Override
-    public void onReadingFailed(String errorMessage) {
+    /**
+     * @return Fingerprint of the currently loaded configuration if the file has not changed since it was loaded, otherwise null.
+     */
+    private ConfigurationFingerprint getUnchangedFingerprint(@FillTheFormCompanion.ConfigurationSource int source, @NonNull String configurationFilePath) {
+        ConfigurationFingerprint previous = data.isLoadedFrom(source, configurationFilePath) ? data.getFingerprint() : null;
+        try {
+            return ConfigurationFingerprint.getUnchanged(configurationFileSource, source, configurationFilePath, previous);
+        } catch (IOException | IllegalArgumentException e) {
+            // The reader will report the problem
+            return null;
+        }
+    }
+
+    private void onConfigurationUnchanged() {
+        cacheHits++;
+        LogUtil.d(TAG, "Configuration unchanged, parsing skipped. Hits: " + cacheHits + ", misses: " + cacheMisses);
+        if (serviceConfigurationListener != null) {
+            serviceConfigurationListener.onConfigurationCompleted(data.getPackageNames(), data.getProfiles());
+        }
+    }
+
+    private void onReadingFailed(String errorMessage) {
         if (serviceConfigurationListener != null) {
             serviceConfigurationListener.onConfigurationFailed(errorMessage);
         }
     }
 
-    public void resendConfigurationData() {
-        if (serviceConfigurationListener != null && !packageNames.isEmpty()) {
-            serviceConfigurationListener.onResendConfiguration(packageNames);
+    // Watching the configuration file
+
+    /**
+     * Starts or stops watching the last requested configuration file. Only files on the external storage can be watched.
+     * When the watched file is changed, it is parsed in the background and the new configuration replaces the current one.
+     */
+    public void setWatchEnabled(boolean enabled) {
+        stopWatching();
+        if (!enabled || requestedFilePath == null) {
+            return;
+        }
+        if (requestedSource != FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE) {
+            LogUtil.d(TAG, "Only configuration files on the external storage can be watched");
+            return;
+        }
+        configurationFileWatcher = new ConfigurationFileWatcher(ConfigurationFileSource.getExternalStorageFile(requestedFilePath),
+                new ConfigurationFileWatcher.ConfigurationFileWatcherListener() {
+                    @Override
+                    public void onConfigurationFileChanged() {
+                        reloadWatchedConfigurationFile();
+                    }
+                });
+        configurationFileWatcher.startWatching();
+    }
+
+    public void stopWatching() {
+        if (configurationFileWatcher != null) {
+            configurationFileWatcher.stopWatching();
+            configurationFileWatcher = null;
+        }
+    }
+
+    public boolean isWatching() {
+        return configurationFileWatcher != null;
+    }
+
+    private void reloadWatchedConfigurationFile() {
+        if (restoreInProgress || loadInProgress) {
+            return;
+        }
+        final int reloadRequest = ++loadRequestCount;
+        final int generation = nextGeneration();
+        final int source = requestedSource;
+        final String configurationFilePath = requestedFilePath;
+        final ConfigurationData currentData = data;
+        final ConfigurationFileSource fileSource = configurationFileSource;
+        final Context context = applicationContext;
+        final ConfigurationFragmentCache cache = fragmentCache;
+        ThreadUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                String[] errorMessage = new String[1];
+                final ConfigurationData reloadedData = readConfigurationInBackground(context, cache, fileSource, source, configurationFilePath,
+                        currentData, generation, errorMessage);
+                if (errorMessage[0] != null) {
+                    LogUtil.e(TAG, "Watched configuration file could not be reloaded: " + errorMessage[0]);
+                } else if (reloadedData != null) {
+                    ThreadUtil.postOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            onWatchedConfigurationReloaded(reloadRequest, reloadedData);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The new configuration, the current configuration with the new fingerprint if only the modification time has changed,
+     * or null if the file has not changed or could not be read, then the error message is stored in errorMessage.
+     */
+    private static ConfigurationData readConfigurationInBackground(Context context, ConfigurationFragmentCache fragmentCache, ConfigurationFileSource fileSource,
+                                                                   @FillTheFormCompanion.ConfigurationSource int source, String configurationFilePath,
+                                                                   ConfigurationData currentData, int generation, final String[] errorMessage) {
+        boolean sameFile = currentData.isLoadedFrom(source, configurationFilePath);
+        try {
+            if (ConfigurationFingerprint.getUnchanged(fileSource, source, configurationFilePath, sameFile ? currentData.getFingerprint() : null) != null) {
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // The file might be replaced right now, the next change will be reported again
+            errorMessage[0] = e.toString();
+            return null;
+        }
+        final ConfigurationData.Builder builder = new ConfigurationData.Builder(source, configurationFilePath);
+        builder.setGeneration(generation);
+        final boolean[] completed = new boolean[1];
+        final boolean[] included = new boolean[1];
+        IncludingConfigurationFileReader reader = new IncludingConfigurationFileReader(context, new ConfigurationIncludeListener() {
+            @Override
+            public void onPackageName(String packageName) {
+                builder.addPackageName(packageName);
+            }
+
+            @Override
+            public void onConfigurationItem(ConfigurationItem configurationItem) {
+                builder.addConfigurationItem(configurationItem);
+            }
+
+            @Override
+            public void onInclude(@NonNull String path, String source) {
+                included[0] = true;
+            }
+
+            @Override
+            public void onReadingCompleted() {
+                completed[0] = true;
+            }
+
+            @Override
+            public void onReadingFailed(String message) {
+                errorMessage[0] = message;
+            }
+        }, fragmentCache);
+        builder.setConfigurationVariablePattern(reader.getConfigurationVariablePattern());
+        reader.readConfigurationFile(source, configurationFilePath);
+        if (!completed[0]) {
+            if (errorMessage[0] == null) {
+                errorMessage[0] = "Reading of " + configurationFilePath + " has not been completed";
+            }
+            return null;
+        }
+        ConfigurationFingerprint fingerprint = included[0] ? null : reader.getRootFingerprint();
+        if (sameFile && fingerprint != null && fingerprint.hasSameContent(currentData.getFingerprint())) {
+            return currentData.withFingerprint(fingerprint);
+        }
+        builder.setFingerprint(fingerprint);
+        return builder.build();
+    }
+
+    private void onWatchedConfigurationReloaded(int reloadRequest, ConfigurationData reloadedData) {
+        if (reloadRequest != loadRequestCount) {
+            return;
+        }
+        boolean contentChanged = reloadedData.getGeneration() != data.getGeneration();
+        data = reloadedData;
+        persistSnapshot(data);
+        if (!contentChanged) {
+            // Remember the new modification time for the fast path
+            return;
+        }
+        LogUtil.d(TAG, "Watched configuration file reloaded");
+        if (serviceConfigurationListener != null) {
+            serviceConfigurationListener.onConfigurationReloaded(data.getPackageNames(), data.getProfiles());
+        }
+    }
+
+    // Configuration patches
+
+    /**
+     * Applies the configuration patch to the loaded configuration. The patch is only applied if its base generation
+     * is the generation of the loaded configuration, otherwise the configuration file needs to be loaded again.
+     */
+    public void applyPatch(int baseGeneration, @NonNull String patch) {
+        if (restoreInProgress || loadInProgress
+                || baseGeneration == FillTheFormCompanion.CONFIGURATION_GENERATION_UNKNOWN || baseGeneration != data.getGeneration()) {
+            LogUtil.d(TAG, "Patch generation " + baseGeneration + " does not match configuration generation " + data.getGeneration());
+            if (serviceConfigurationListener != null) {
+                serviceConfigurationListener.onConfigurationPatchRejected(null, true);
+            }
+            return;
+        }
+        ConfigurationPatch configurationPatch;
+        try {
+            configurationPatch = new XmlConfigurationPatchReader().readPatch(baseGeneration, patch);
+        } catch (XmlPullParserException | IOException e) {
+            LogUtil.e(TAG, e.toString());
+            if (serviceConfigurationListener != null) {
+                serviceConfigurationListener.onConfigurationPatchRejected(e.toString(), false);
+            }
+            return;
+        }
+        // Results of running reloads are based on the old configuration
+        loadRequestCount++;
+        long startTime = SystemClock.elapsedRealtime();
+        data = data.applyPatch(configurationPatch, nextGeneration());
+        LogUtil.d(TAG, "Configuration patch with " + configurationPatch.getOperations().size() + " operations applied in "
+                + (SystemClock.elapsedRealtime() - startTime) + " ms");
+        persistSnapshot(data);
+        if (serviceConfigurationListener != null) {
+            serviceConfigurationListener.onConfigurationPatched(data.getPackageNames(), data.getProfiles());
+        }
+    }
+
+    private int nextGeneration() {
+        lastGeneration = Math.max(lastGeneration, data.getGeneration()) + 1;
+        return lastGeneration;
+    }
+
+    public int getGeneration() {
+        return data.getGeneration();
+    }
+
+    // Configuration snapshot
+
+    private ConfigurationSnapshotStore getSnapshotStore(Context context) {
+        if (snapshotStore == null) {
+            snapshotStore = new ConfigurationSnapshotStore(context.getApplicationContext());
         }
+        return snapshotStore;
+    }
+
+    private void persistSnapshot(final ConfigurationData data) {
+        if (snapshotStore == null) {
+            return;
+        }
+        ThreadUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                snapshotStore.write(data);
+            }
+        });
+    }
+
+    /**
+     * Restores the last successfully loaded configuration in the background.
+     * The restored configuration is ignored if a new configuration is requested in the meantime.
+     */
+    public void restoreSnapshot(Context context) {
+        final ConfigurationSnapshotStore store = getSnapshotStore(context);
+        final int restoreRequest = ++loadRequestCount;
+        restoreInProgress = true;
+        ThreadUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = SystemClock.elapsedRealtime();
+                final ConfigurationData restoredData = store.read();
+                LogUtil.i(TAG, "Configuration snapshot restored in " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+                ThreadUtil.postOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onSnapshotRestored(restoreRequest, restoredData);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onSnapshotRestored(int restoreRequest, ConfigurationData restoredData) {
+        if (restoreRequest != loadRequestCount) {
+            return;
+        }
+        restoreInProgress = false;
+        if (restoredData != null) {
+            data = restoredData;
+            lastGeneration = Math.max(lastGeneration, restoredData.getGeneration());
+        }
+        if (serviceConfigurationListener != null) {
+            serviceConfigurationListener.onConfigurationRestoreFinished(restoredData != null);
+        }
+    }
+
+    public boolean isRestoreInProgress() {
+        return restoreInProgress;
+    }
+
+    // Loaded data
+
+    public ConfigurationData getData() {
+        return data;
     }
 
     public SimpleArrayMap<String, List<ConfigurationItem>> getIdGroups() {
-        return idGroups;
+        return data.getIdGroups();
     }
 
     public List<String> getPackageNames() {
-        return packageNames;
+        return data.getPackageNames();
+    }
+
+    public List<String> getProfiles() {
+        return data.getProfiles();
     }
 
     public String getConfigurationVariablePattern() {
-        if (configurationReader != null) {
-            return configurationReader.getConfigurationVariablePattern();
-        }
-        return null;
+        return data.getConfigurationVariablePattern();
+    }
+
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    public int getCacheMisses() {
+        return cacheMisses;
     }
 
     // FillTheFormCompanion support
 
     public int getNumberOfProfiles() {
-        return profiles.size();
+        return data.getProfiles().size();
     }
 }
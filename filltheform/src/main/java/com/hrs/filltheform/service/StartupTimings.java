@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.os.SystemClock;
+
+import com.hrs.filltheform.util.LogUtil;
+
+/**
+ * StartupTimings measures the startup phases of MyAccessibilityService.
+ * Time to ready is measured until the service is able to load the configuration.
+ * Time to first dialog is measured until the FillTheFormDialog is shown for the first time.
+ */
+public class StartupTimings {
+
+    private static final String TAG = StartupTimings.class.getSimpleName();
+
+    public static final long NOT_MEASURED = -1;
+
+    private long serviceConnectedTime = NOT_MEASURED;
+    private long timeToReady = NOT_MEASURED;
+    private long timeToDialogPrepared = NOT_MEASURED;
+    private long timeToFirstDialog = NOT_MEASURED;
+
+    void onServiceConnected() {
+        serviceConnectedTime = SystemClock.elapsedRealtime();
+    }
+
+    void onServiceReady() {
+        timeToReady = getElapsedTime();
+        LogUtil.i(TAG, "Time to ready: " + timeToReady + " ms");
+    }
+
+    void onDialogPrepared() {
+        timeToDialogPrepared = getElapsedTime();
+        LogUtil.i(TAG, "Time to dialog prepared: " + timeToDialogPrepared + " ms");
+    }
+
+    void onDialogShown() {
+        if (timeToFirstDialog == NOT_MEASURED) {
+            timeToFirstDialog = getElapsedTime();
+            LogUtil.i(TAG, "Time to first dialog: " + timeToFirstDialog + " ms");
+        }
+    }
+
+    private long getElapsedTime() {
+        if (serviceConnectedTime == NOT_MEASURED) {
+            return NOT_MEASURED;
+        }
+        return SystemClock.elapsedRealtime() - serviceConnectedTime;
+    }
+
+    /**
+     * @return Milliseconds from service connection until the configuration can be loaded or {@link #NOT_MEASURED}.
+     */
+    public long getTimeToReady() {
+        return timeToReady;
+    }
+
+    /**
+     * @return Milliseconds from service connection until the dialog view is inflated or {@link #NOT_MEASURED}.
+     */
+    public long getTimeToDialogPrepared() {
+        return timeToDialogPrepared;
+    }
+
+    /**
+     * @return Milliseconds from service connection until the first dialog is shown or {@link #NOT_MEASURED}.
+     */
+    public long getTimeToFirstDialog() {
+        return timeToFirstDialog;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.util;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.text.TextUtils;
+
+import java.util.List;
+
+/**
+ * NodeTextUtil is used for setting and pasting text into AccessibilityNodes.
+ * ACTION_SET_TEXT is not available before Lollipop, so the text is pasted from the clipboard instead.
+ */
+public final class NodeTextUtil {
+
+    private NodeTextUtil() {
+
+    }
+
+    /**
+     * Replaces the text of the node.
+     *
+     * @return True if the action has been performed.
+     */
+    public static boolean setText(Context context, AccessibilityNodeInfoCompat nodeInfo, String text) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return setTextPreLollipop(context, nodeInfo, text);
+        } else {
+            Bundle arguments = new Bundle();
+            arguments.putCharSequence(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, text);
+            return nodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_SET_TEXT, arguments);
+        }
+    }
+
+    /**
+     * Pastes the text at the cursor position of the node.
+     *
+     * @return True if the action has been performed.
+     */
+    public static boolean pasteText(Context context, AccessibilityNodeInfoCompat nodeInfo, String text) {
+        copyToClipboard(context, text);
+        return nodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_PASTE);
+    }
+
+    private static boolean setTextPreLollipop(Context context, AccessibilityNodeInfoCompat selectedNodeInfo, String text) {
+        boolean shouldRecycle = true;
+        AccessibilityNodeInfoCompat nodeInfo = null;
+        List<AccessibilityNodeInfoCompat> nodeInfoList = selectedNodeInfo.findAccessibilityNodeInfosByViewId(selectedNodeInfo.getViewIdResourceName());
+        if (nodeInfoList != null && nodeInfoList.size() > 0) {
+            nodeInfo = nodeInfoList.get(0);
+        }
+        if (nodeInfo == null) {
+            nodeInfo = selectedNodeInfo;
+            shouldRecycle = false;
+        }
+        selectAll(nodeInfo);
+        copyToClipboard(context, text);
+        boolean performed = nodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_PASTE);
+        if (shouldRecycle) {
+            nodeInfo.recycle();
+        }
+        return performed;
+    }
+
+    private static void copyToClipboard(Context context, String text) {
+        ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
+        ClipData clip = ClipData.newPlainText(text, text);
+        clipboard.setPrimaryClip(clip);
+    }
+
+    private static void selectAll(AccessibilityNodeInfoCompat nodeInfo) {
+        if (!TextUtils.isEmpty(nodeInfo.getText())) {
+            Bundle arguments = new Bundle();
+            arguments.putInt(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_SELECTION_START_INT, 0);
+            arguments.putInt(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_SELECTION_END_INT, nodeInfo.getText().length());
+            nodeInfo.performAction(AccessibilityNodeInfoCompat.ACTION_SET_SELECTION, arguments);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadUtil is used for moving work off the main thread and for posting the results back to it.
+ * Background tasks are executed one after another on a single low priority thread.
+ * Loading tasks, which may wait for their input for a long time, get their own threads with the normal priority.
+ * CPU bound work which can be split into independent tasks is executed on a bounded pool of worker threads.
+ */
+public final class ThreadUtil {
+
+    private static final String BACKGROUND_THREAD_NAME = "FillTheForm-background";
+    private static final String WORKER_THREAD_NAME = "FillTheForm-worker-";
+    private static final String LOADER_THREAD_NAME = "FillTheForm-loader-";
+    private static final int NUMBER_OF_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    private static final Handler MAIN_THREAD_HANDLER = new Handler(Looper.getMainLooper());
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@SuppressWarnings("NullableProblems") final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, BACKGROUND_THREAD_NAME);
+        }
+    });
+
+    private static final ThreadPoolExecutor WORKER_EXECUTOR = new ThreadPoolExecutor(NUMBER_OF_WORKERS, NUMBER_OF_WORKERS,
+            WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@SuppressWarnings("NullableProblems") Runnable runnable) {
+            return new Thread(runnable, WORKER_THREAD_NAME + threadNumber.incrementAndGet());
+        }
+    });
+
+    private static final ExecutorService LOADER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@SuppressWarnings("NullableProblems") Runnable runnable) {
+            return new Thread(runnable, LOADER_THREAD_NAME + threadNumber.incrementAndGet());
+        }
+    });
+
+    static {
+        // Workers are only needed while a large task is running
+        WORKER_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private ThreadUtil() {
+
+    }
+
+    public static void runInBackground(Runnable runnable) {
+        BACKGROUND_EXECUTOR.execute(runnable);
+    }
+
+    /**
+     * Runs the loading task on its own thread, so it does not wait behind the background tasks and a slow input does not block them.
+     * The task can wait for worker tasks.
+     */
+    public static void runLoader(Runnable runnable) {
+        LOADER_EXECUTOR.execute(runnable);
+    }
+
+    /**
+     * Tasks submitted to the workers must not wait for other worker tasks.
+     */
+    public static <T> Future<T> submitToWorkers(Callable<T> task) {
+        return WORKER_EXECUTOR.submit(task);
+    }
+
+    public static int getNumberOfWorkers() {
+        return NUMBER_OF_WORKERS;
+    }
+
+    public static void runOnMainThread(Runnable runnable) {
+        if (isMainThread()) {
+            runnable.run();
+        } else {
+            MAIN_THREAD_HANDLER.post(runnable);
+        }
+    }
+
+    public static void postOnMainThread(Runnable runnable) {
+        MAIN_THREAD_HANDLER.post(runnable);
+    }
+
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for ConfigurationVariableCache.
+ */
+public class ConfigurationVariableCacheTest {
+
+    @Test
+    public void testStaticValueShouldBeLoadedOnce() throws Exception {
+        // prepare
+        ConfigurationVariableCache cache = new ConfigurationVariableCache();
+        CountingProvider provider = new CountingProvider(ConfigurationVariableProvider.CACHE_POLICY_STATIC);
+
+        // run
+        cache.get("device_model", provider);
+        cache.invalidateSessionValues();
+        String value = cache.get("device_model", provider);
+
+        // verify
+        assertEquals("device_model_1", value);
+        assertEquals(1, provider.loads);
+    }
+
+    @Test
+    public void testSessionValueShouldBeLoadedAgainAfterInvalidation() throws Exception {
+        // prepare
+        ConfigurationVariableCache cache = new ConfigurationVariableCache();
+        CountingProvider provider = new CountingProvider(ConfigurationVariableProvider.CACHE_POLICY_SESSION);
+
+        // run
+        cache.get("device_ip_address", provider);
+        String cachedValue = cache.get("device_ip_address", provider);
+        cache.invalidateSessionValues();
+        assertFalse(cache.isCached("device_ip_address"));
+        String reloadedValue = cache.get("device_ip_address", provider);
+
+        // verify
+        assertEquals("device_ip_address_1", cachedValue);
+        assertEquals("device_ip_address_2", reloadedValue);
+        assertEquals(2, provider.loads);
+        assertTrue(cache.isCached("device_ip_address"));
+    }
+
+    @Test
+    public void testPerUseValueShouldNeverBeCached() throws Exception {
+        // prepare
+        ConfigurationVariableCache cache = new ConfigurationVariableCache();
+        CountingProvider provider = new CountingProvider(ConfigurationVariableProvider.CACHE_POLICY_PER_USE);
+
+        // run
+        cache.get("random_first_name", provider);
+        String value = cache.get("random_first_name", provider);
+
+        // verify
+        assertEquals("random_first_name_2", value);
+        assertEquals(2, provider.loads);
+        assertFalse(cache.isCached("random_first_name"));
+    }
+
+    @Test
+    public void testSessionValueLoadedDuringInvalidationShouldNotBeCached() throws Exception {
+        // prepare
+        final ConfigurationVariableCache cache = new ConfigurationVariableCache();
+        CountingProvider provider = new CountingProvider(ConfigurationVariableProvider.CACHE_POLICY_SESSION) {
+            @Override
+            public String getValue(String variableKey) {
+                // The connectivity changes while the value is being loaded
+                cache.invalidateSessionValues();
+                return "stale";
+            }
+        };
+
+        // run
+        String value = cache.get("device_ip_address", provider);
+
+        // verify
+        assertEquals("stale", value);
+        assertFalse(cache.isCached("device_ip_address"));
+    }
+
+    @Test
+    public void testNullValueShouldNotBeCached() throws Exception {
+        // prepare
+        ConfigurationVariableCache cache = new ConfigurationVariableCache();
+        CountingProvider provider = new CountingProvider(ConfigurationVariableProvider.CACHE_POLICY_STATIC) {
+            @Override
+            public String getValue(String variableKey) {
+                return null;
+            }
+        };
+
+        // run
+        String value = cache.get("unknown", provider);
+
+        // verify
+        assertEquals(null, value);
+        assertFalse(cache.isCached("unknown"));
+    }
+
+    @Test
+    public void testCheapValueShouldNotWaitForSlowValue() throws Exception {
+        // prepare
+        final ConfigurationVariableCache cache = new ConfigurationVariableCache();
+        final CountDownLatch slowLoadStarted = new CountDownLatch(1);
+        final CountDownLatch slowLoadReleased = new CountDownLatch(1);
+        final CountingProvider provider = new CountingProvider(ConfigurationVariableProvider.CACHE_POLICY_SESSION) {
+            @Override
+            public String getValue(String variableKey) {
+                if (variableKey.equals("device_ip_address")) {
+                    slowLoadStarted.countDown();
+                    try {
+                        slowLoadReleased.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return variableKey;
+            }
+        };
+        Thread slowThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.get("device_ip_address", provider);
+            }
+        });
+        final AtomicReference<String> cheapValue = new AtomicReference<>();
+        Thread cheapThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cheapValue.set(cache.get("device_model", provider));
+            }
+        });
+
+        // run
+        slowThread.start();
+        slowLoadStarted.await();
+        cheapThread.start();
+        cheapThread.join(1000);
+        String value = cheapValue.get();
+        slowLoadReleased.countDown();
+        slowThread.join();
+        cheapThread.join();
+
+        // verify
+        assertEquals("device_model", value);
+        assertTrue(cache.isCached("device_ip_address"));
+    }
+
+    private static class CountingProvider implements ConfigurationVariableProvider {
+        private final int cachePolicy;
+        int loads;
+
+        CountingProvider(@CachePolicy int cachePolicy) {
+            this.cachePolicy = cachePolicy;
+        }
+
+        @Override
+        public List<String> getVariableKeys() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getCachePolicy(String variableKey) {
+            return cachePolicy;
+        }
+
+        @Override
+        public int getCost(String variableKey) {
+            return COST_CHEAP;
+        }
+
+        @Override
+        public String getValue(String variableKey) {
+            loads++;
+            return variableKey + "_" + loads;
+        }
+
+        @Override
+        public void warmUp() {
+            // Nothing to prepare
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for ConfigurationVariableRegistry.
+ */
+public class ConfigurationVariableRegistryTest {
+
+    @Test
+    public void testValuesShouldBeResolvedByTheirProvider() throws Exception {
+        // prepare
+        TestProvider deviceProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_STATIC, ConfigurationVariableProvider.COST_CHEAP,
+                "device_model", "device_manufacturer");
+        TestProvider randomProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_PER_USE, ConfigurationVariableProvider.COST_CHEAP,
+                "random_first_name");
+        ConfigurationVariableRegistry registry = new ConfigurationVariableRegistry(Arrays.<ConfigurationVariableProvider>asList(deviceProvider, randomProvider));
+
+        // run & verify
+        assertTrue(registry.isVariableKey("device_model"));
+        assertTrue(registry.isVariableKey("random_first_name"));
+        assertFalse(registry.isVariableKey("first_name"));
+        assertFalse(registry.isResolvedOnEveryUse("device_model"));
+        assertTrue(registry.isResolvedOnEveryUse("random_first_name"));
+        assertFalse(registry.isResolvedOnEveryUse("first_name"));
+        assertEquals("device_model_1", registry.getValue("device_model"));
+        assertEquals("device_model_1", registry.getValue("device_model"));
+        assertEquals("random_first_name_1", registry.getValue("random_first_name"));
+        assertEquals("random_first_name_2", registry.getValue("random_first_name"));
+        assertNull(registry.getValue("first_name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateVariableKeyShouldNotBeAllowed() throws Exception {
+        TestProvider provider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_STATIC, ConfigurationVariableProvider.COST_CHEAP, "device_model");
+        TestProvider otherProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_STATIC, ConfigurationVariableProvider.COST_CHEAP, "device_model");
+
+        new ConfigurationVariableRegistry(Arrays.<ConfigurationVariableProvider>asList(provider, otherProvider));
+    }
+
+    @Test
+    public void testPreloadShouldResolveOnlyExpensiveCachedValues() throws Exception {
+        // prepare
+        TestProvider cheapProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_STATIC, ConfigurationVariableProvider.COST_CHEAP,
+                "device_model");
+        TestProvider sessionProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_SESSION, ConfigurationVariableProvider.COST_EXPENSIVE,
+                "device_ip_address");
+        TestProvider perUseProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_PER_USE, ConfigurationVariableProvider.COST_EXPENSIVE,
+                "booking_reference");
+        ConfigurationVariableRegistry registry = new ConfigurationVariableRegistry(
+                Arrays.<ConfigurationVariableProvider>asList(cheapProvider, sessionProvider, perUseProvider));
+
+        // run
+        registry.preload();
+
+        // verify
+        assertEquals(1, cheapProvider.warmUps);
+        assertEquals(1, sessionProvider.warmUps);
+        assertEquals(1, perUseProvider.warmUps);
+        assertFalse(registry.isCached("device_model"));
+        assertTrue(registry.isCached("device_ip_address"));
+        assertFalse(registry.isCached("booking_reference"));
+        assertEquals("device_ip_address_1", registry.getValue("device_ip_address"));
+        assertEquals(1, sessionProvider.getLoads("device_ip_address"));
+    }
+
+    @Test
+    public void testSessionValuesShouldBeResolvedAgainAfterInvalidation() throws Exception {
+        // prepare
+        TestProvider sessionProvider = new TestProvider(ConfigurationVariableProvider.CACHE_POLICY_SESSION, ConfigurationVariableProvider.COST_EXPENSIVE,
+                "device_ip_address");
+        ConfigurationVariableRegistry registry = new ConfigurationVariableRegistry(Arrays.<ConfigurationVariableProvider>asList(sessionProvider));
+        registry.preload();
+
+        // run
+        registry.invalidateSessionValues();
+        registry.preload();
+
+        // verify
+        assertEquals("device_ip_address_2", registry.getValue("device_ip_address"));
+        assertEquals(2, sessionProvider.getLoads("device_ip_address"));
+    }
+
+    private static class TestProvider implements ConfigurationVariableProvider {
+        private final int cachePolicy;
+        private final int cost;
+        private final List<String> variableKeys;
+        private final Map<String, Integer> loads = new HashMap<>();
+        int warmUps;
+
+        TestProvider(@CachePolicy int cachePolicy, @Cost int cost, String... variableKeys) {
+            this.cachePolicy = cachePolicy;
+            this.cost = cost;
+            this.variableKeys = Arrays.asList(variableKeys);
+        }
+
+        int getLoads(String variableKey) {
+            Integer count = loads.get(variableKey);
+            return count == null ? 0 : count;
+        }
+
+        @Override
+        public List<String> getVariableKeys() {
+            return variableKeys;
+        }
+
+        @Override
+        public int getCachePolicy(String variableKey) {
+            return cachePolicy;
+        }
+
+        @Override
+        public int getCost(String variableKey) {
+            return cost;
+        }
+
+        @Override
+        public String getValue(String variableKey) {
+            int count = getLoads(variableKey) + 1;
+            loads.put(variableKey, count);
+            return variableKey + "_" + count;
+        }
+
+        @Override
+        public void warmUp() {
+            warmUps++;
+        }
+    }
+}
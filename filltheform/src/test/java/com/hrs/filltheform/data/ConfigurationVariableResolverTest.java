@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * Tests for ConfigurationVariableResolver.
+ */
+public class ConfigurationVariableResolverTest {
+
+    private static final String VARIABLE_PATTERN = "\\{\\{(\\w+)\\}\\}";
+
+    private static final ConfigurationVariableResolver.VariableValues VARIABLE_VALUES = new ConfigurationVariableResolver.VariableValues() {
+        @Override
+        public String getValue(String variableKey) {
+            return "device_model".equals(variableKey) ? "Nexus $5" : null;
+        }
+    };
+
+    @Test
+    public void testKnownVariablesShouldBeReplaced() throws Exception {
+        // run
+        String value = ConfigurationVariableResolver.replaceVariables("Model: {{device_model}}\\n{{unknown}}", VARIABLE_PATTERN, VARIABLE_VALUES);
+
+        // verify
+        assertEquals("Model: Nexus $5\n{{unknown}}", value);
+    }
+
+    @Test
+    public void testPatternShouldBeCompiledOnce() throws Exception {
+        // verify
+        assertSame(ConfigurationVariableResolver.getPattern(VARIABLE_PATTERN), ConfigurationVariableResolver.getPattern(VARIABLE_PATTERN));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for RandomDataCorpus.
+ */
+public class RandomDataCorpusTest {
+
+    private static final File CORPUS_DIRECTORY = new File("corpus");
+    private static final File CORPUS_ASSET = new File("src/main/assets/" + RandomDataCorpus.ASSET_NAME);
+
+    private static final int EN = RandomDataCorpus.getLanguage("en");
+    private static final int DE = RandomDataCorpus.getLanguage("de");
+
+    @Test
+    public void testBundledAssetShouldMatchCorpusSources() throws Exception {
+        // prepare
+        byte[] expected = RandomDataCorpusWriter.write(CORPUS_DIRECTORY);
+
+        // run
+        byte[] asset = new byte[(int) CORPUS_ASSET.length()];
+        try (RandomAccessFile file = new RandomAccessFile(CORPUS_ASSET, "r")) {
+            file.readFully(asset);
+        }
+
+        // verify
+        assertTrue("Run RandomDataCorpusWriter to update the asset", Arrays.equals(expected, asset));
+    }
+
+    @Test
+    public void testMappedAssetShouldBeReadByOffset() throws Exception {
+        // prepare
+        RandomDataCorpus corpus;
+        try (RandomAccessFile file = new RandomAccessFile(CORPUS_ASSET, "r")) {
+            corpus = RandomDataCorpus.wrap(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+
+        // run
+        List<String> germanCities = new ArrayList<>();
+        for (int i = 0; i < corpus.size(DE, RandomDataCorpus.CITIES); i++) {
+            germanCities.add(corpus.get(DE, RandomDataCorpus.CITIES, i));
+        }
+
+        // verify
+        assertEquals("Springfield", corpus.get(EN, RandomDataCorpus.CITIES, 0));
+        assertTrue(germanCities.contains("K\u00f6ln"));
+        assertTrue(germanCities.contains("D\u00fcsseldorf"));
+    }
+
+    @Test
+    public void testMissingListShouldBeTakenFromDefaultLanguage() throws Exception {
+        // prepare
+        RandomDataCorpus corpus = RandomDataCorpus.wrap(ByteBuffer.wrap(RandomDataCorpusWriter.write(createLanguages())));
+
+        // run & verify
+        assertEquals(2, corpus.size(DE, RandomDataCorpus.CITIES));
+        assertEquals("K\u00f6ln", corpus.get(DE, RandomDataCorpus.CITIES, 0));
+        assertEquals(1, corpus.size(DE, RandomDataCorpus.WORDS));
+        assertEquals("lorem", corpus.get(DE, RandomDataCorpus.WORDS, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidIndexShouldFail() throws Exception {
+        // prepare
+        RandomDataCorpus corpus = RandomDataCorpus.wrap(ByteBuffer.wrap(RandomDataCorpusWriter.write(createLanguages())));
+
+        // run
+        corpus.get(EN, RandomDataCorpus.CITIES, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownFormatShouldFail() throws Exception {
+        // prepare
+        byte[] bytes = RandomDataCorpusWriter.write(createLanguages());
+        bytes[7] = 0;
+
+        // run
+        RandomDataCorpus.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingDefaultListShouldFail() throws Exception {
+        // prepare
+        List<List<List<String>>> languages = createLanguages();
+        languages.get(EN).set(RandomDataCorpus.WORDS, null);
+
+        // run
+        RandomDataCorpus.wrap(ByteBuffer.wrap(RandomDataCorpusWriter.write(languages)));
+    }
+
+    private static List<List<List<String>>> createLanguages() {
+        List<List<String>> english = new ArrayList<>();
+        List<List<String>> german = new ArrayList<>();
+        for (int list = 0; list < RandomDataCorpus.LIST_NAMES.length; list++) {
+            english.add(Arrays.asList("Springfield"));
+            german.add(null);
+        }
+        english.set(RandomDataCorpus.WORDS, Arrays.asList("lorem"));
+        german.set(RandomDataCorpus.CITIES, Arrays.asList("K\u00f6ln", "D\u00fcsseldorf"));
+        return new ArrayList<>(Arrays.asList(english, german));
+    }
+}
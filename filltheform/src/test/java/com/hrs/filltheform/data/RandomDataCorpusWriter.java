@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RandomDataCorpusWriter generates the random data corpus asset from the text files in the corpus directory of the module.
+ * There is one file for every language of RandomDataCorpus.LANGUAGES, e.g. corpus/de.txt. Every list starts with its name in brackets,
+ * e.g. [cities], followed by one value per line. Empty lines and lines before the first list are ignored.
+ * <p/>
+ * Usage from the module directory: RandomDataCorpusWriter corpus src/main/assets/random_data_corpus.bin
+ */
+public class RandomDataCorpusWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_STRING_LENGTH = 0xffff;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: RandomDataCorpusWriter <corpus directory> <output file>");
+            System.exit(1);
+        }
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            out.write(write(new File(args[0])));
+        }
+    }
+
+    /**
+     * @return Content of the corpus asset.
+     */
+    static byte[] write(File corpusDirectory) throws IOException {
+        List<List<List<String>>> languages = new ArrayList<>();
+        for (String language : RandomDataCorpus.LANGUAGES) {
+            languages.add(readLists(new File(corpusDirectory, language + ".txt")));
+        }
+        return write(languages);
+    }
+
+    /**
+     * @param languages Lists of every language in the order of RandomDataCorpus.LANGUAGES, a missing list is null.
+     */
+    static byte[] write(List<List<List<String>>> languages) throws IOException {
+        int numberOfLists = RandomDataCorpus.LIST_NAMES.length;
+        int offset = RandomDataCorpus.HEADER_SIZE + languages.size() * (4 + 4 * numberOfLists);
+
+        // Lists are placed after the language directory
+        int[][] listOffsets = new int[languages.size()][numberOfLists];
+        for (int language = 0; language < languages.size(); language++) {
+            for (int list = 0; list < numberOfLists; list++) {
+                List<String> values = languages.get(language).get(list);
+                if (values != null) {
+                    listOffsets[language][list] = offset;
+                    offset += 4 + 4 * values.size();
+                }
+            }
+        }
+
+        // Every distinct string is placed once after the lists
+        Map<String, Integer> stringOffsets = new LinkedHashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        for (int language = 0; language < languages.size(); language++) {
+            offset = addString(stringOffsets, strings, RandomDataCorpus.LANGUAGES[language], offset);
+            for (List<String> values : languages.get(language)) {
+                if (values != null) {
+                    for (String value : values) {
+                        offset = addString(stringOffsets, strings, value, offset);
+                    }
+                }
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(offset);
+        buffer.putInt(RandomDataCorpus.MAGIC);
+        buffer.putInt(RandomDataCorpus.VERSION);
+        buffer.putInt(numberOfLists);
+        buffer.putInt(languages.size());
+        for (int language = 0; language < languages.size(); language++) {
+            buffer.putInt(stringOffsets.get(RandomDataCorpus.LANGUAGES[language]));
+            for (int list = 0; list < numberOfLists; list++) {
+                buffer.putInt(listOffsets[language][list]);
+            }
+        }
+        for (List<List<String>> lists : languages) {
+            for (List<String> values : lists) {
+                if (values != null) {
+                    buffer.putInt(values.size());
+                    for (String value : values) {
+                        buffer.putInt(stringOffsets.get(value));
+                    }
+                }
+            }
+        }
+        for (byte[] string : strings) {
+            buffer.putShort((short) string.length);
+            buffer.put(string);
+        }
+        return buffer.array();
+    }
+
+    private static int addString(Map<String, Integer> stringOffsets, List<byte[]> strings, String string, int offset) throws IOException {
+        if (stringOffsets.containsKey(string)) {
+            return offset;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IOException("Value is too long: " + string);
+        }
+        stringOffsets.put(string, offset);
+        strings.add(bytes);
+        return offset + 2 + bytes.length;
+    }
+
+    private static List<List<String>> readLists(File file) throws IOException {
+        List<List<String>> lists = new ArrayList<>();
+        for (int list = 0; list < RandomDataCorpus.LIST_NAMES.length; list++) {
+            lists.add(null);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+            List<String> values = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    int list = indexOf(RandomDataCorpus.LIST_NAMES, line.substring(1, line.length() - 1));
+                    if (list == -1 || lists.get(list) != null) {
+                        throw new IOException("Unknown or repeated list " + line + " in " + file);
+                    }
+                    values = new ArrayList<>();
+                    lists.set(list, values);
+                } else if (values != null && !line.isEmpty()) {
+                    values.add(line);
+                }
+            }
+        }
+        for (int list = 0; list < lists.size(); list++) {
+            if (lists.get(list) != null && lists.get(list).isEmpty()) {
+                throw new IOException("Empty list " + RandomDataCorpus.LIST_NAMES[list] + " in " + file);
+            }
+        }
+        return lists;
+    }
+
+    private static int indexOf(String[] strings, String string) {
+        for (int i = 0; i < strings.length; i++) {
+            if (strings[i].equals(string)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
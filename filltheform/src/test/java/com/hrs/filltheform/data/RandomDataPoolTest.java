@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests for RandomDataPool.
+ */
+public class RandomDataPoolTest {
+
+    private static final int CAPACITY = 4;
+
+    private CountingGenerator generator;
+    private QueuedExecutor executor;
+    private RandomDataPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        generator = new CountingGenerator();
+        executor = new QueuedExecutor();
+        pool = new RandomDataPool(Arrays.asList("random_first_name", "random_paragraph"), CAPACITY, generator, executor);
+    }
+
+    @Test
+    public void testFillShouldFillAllPools() throws Exception {
+        // run
+        pool.fill();
+
+        // verify
+        assertEquals(CAPACITY, pool.size("random_first_name"));
+        assertEquals(CAPACITY, pool.size("random_paragraph"));
+        assertEquals(1, pool.getMetrics().getRefills());
+        assertEquals(2 * CAPACITY, pool.getMetrics().getRefilledValues());
+    }
+
+    @Test
+    public void testTakeShouldReturnOldestPooledValue() throws Exception {
+        // prepare
+        pool.fill();
+
+        // run
+        String first = pool.take("random_first_name");
+        String second = pool.take("random_first_name");
+
+        // verify
+        assertEquals("random_first_name_1", first);
+        assertEquals("random_first_name_2", second);
+        assertEquals(2, pool.getMetrics().getHits());
+        assertEquals(0, pool.getMetrics().getMisses());
+    }
+
+    @Test
+    public void testTakeFromEmptyPoolShouldGenerateValue() throws Exception {
+        // run
+        String value = pool.take("random_first_name");
+
+        // verify
+        assertEquals("random_first_name_1", value);
+        assertEquals(0, pool.getMetrics().getHits());
+        assertEquals(1, pool.getMetrics().getMisses());
+        assertEquals(1, executor.runnables.size());
+    }
+
+    @Test
+    public void testRefillShouldBeScheduledOnceBelowLowWatermark() throws Exception {
+        // prepare
+        pool.fill();
+
+        // run
+        pool.take("random_first_name");
+        assertEquals(0, executor.runnables.size());
+        pool.take("random_first_name");
+        pool.take("random_first_name");
+        pool.take("random_paragraph");
+
+        // verify
+        assertEquals(1, executor.runnables.size());
+
+        // run
+        executor.runnables.remove(0).run();
+
+        // verify
+        assertEquals(CAPACITY, pool.size("random_first_name"));
+        assertEquals(CAPACITY, pool.size("random_paragraph"));
+        assertEquals(2, pool.getMetrics().getRefills());
+        pool.take("random_first_name");
+        pool.take("random_first_name");
+        pool.take("random_first_name");
+        assertEquals(1, executor.runnables.size());
+    }
+
+    @Test
+    public void testUnknownKeyShouldNotBePooled() throws Exception {
+        // run
+        String value = pool.take("device_model");
+
+        // verify
+        assertEquals("device_model_1", value);
+        assertEquals(0, pool.size("device_model"));
+        assertEquals(0, pool.getMetrics().getMisses());
+        assertEquals(0, executor.runnables.size());
+    }
+
+    private static class CountingGenerator implements RandomDataPool.Generator {
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        @Override
+        public String generate(String key) {
+            Integer count = counts.get(key);
+            count = count == null ? 1 : count + 1;
+            counts.put(key, count);
+            return key + "_" + count;
+        }
+    }
+
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> runnables = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            runnables.add(runnable);
+        }
+    }
+}
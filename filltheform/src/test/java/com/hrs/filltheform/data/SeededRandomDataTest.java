@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for SeededRandomData.
+ */
+public class SeededRandomDataTest {
+
+    private static final long SEED = 42;
+
+    private RandomDataCorpus corpus;
+
+    @Before
+    public void setUp() throws Exception {
+        corpus = RandomDataCorpus.wrap(ByteBuffer.wrap(RandomDataCorpusWriter.write(new File("corpus"))));
+    }
+
+    @Test
+    public void testSameSeedShouldProduceSameSequence() throws Exception {
+        // prepare
+        SeededRandomData randomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+        SeededRandomData replayedRandomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+
+        // run & verify
+        for (int i = 0; i < 100; i++) {
+            for (String key : RandomDataGenerator.VARIABLE_KEYS) {
+                String value = randomData.next(key);
+                assertNotNull(value);
+                assertEquals(value, replayedRandomData.next(key));
+            }
+        }
+    }
+
+    @Test
+    public void testValueShouldDependOnlyOnSeedKeyAndIndex() throws Exception {
+        // prepare
+        SeededRandomData randomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+        // Values of other keys do not change the sequence
+        randomData.next(RandomDataGenerator.LAST_NAME);
+        randomData.next(RandomDataGenerator.PARAGRAPH);
+
+        // run
+        randomData.next(RandomDataGenerator.NAME);
+        String secondName = randomData.next(RandomDataGenerator.NAME);
+
+        // verify
+        assertEquals(randomData.generate(RandomDataGenerator.NAME, 1), secondName);
+    }
+
+    @Test
+    public void testDifferentSeedsShouldProduceDifferentSequences() throws Exception {
+        // prepare
+        SeededRandomData randomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+        SeededRandomData otherRandomData = new SeededRandomData(SEED + 1, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+
+        // run
+        List<String> texts = new ArrayList<>();
+        List<String> otherTexts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            texts.add(randomData.next(RandomDataGenerator.TEXT));
+            otherTexts.add(otherRandomData.next(RandomDataGenerator.TEXT));
+        }
+
+        // verify
+        assertFalse(texts.equals(otherTexts));
+    }
+
+    @Test
+    public void testShardsShouldUseDisjointRanges() throws Exception {
+        // prepare
+        SeededRandomData firstShard = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+        SeededRandomData secondShard = new SeededRandomData(SEED, 1, RandomDataGenerator.VARIABLE_KEYS, corpus);
+
+        // run
+        Set<String> emails = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            emails.add(firstShard.next(RandomDataGenerator.EMAIL));
+            emails.add(secondShard.next(RandomDataGenerator.EMAIL));
+        }
+
+        // verify
+        assertEquals(2000, emails.size());
+        assertEquals(firstShard.generate(RandomDataGenerator.CITY, 1L << SeededRandomData.SHARD_BITS), secondShard.next(RandomDataGenerator.CITY));
+    }
+
+    @Test
+    public void testConcurrentValuesShouldUseEveryIndexOnce() throws Exception {
+        // prepare
+        final SeededRandomData randomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+        final Set<String> emails = new HashSet<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 250; i++) {
+                        String email = randomData.next(RandomDataGenerator.EMAIL_LOCAL_PART);
+                        synchronized (emails) {
+                            emails.add(email);
+                        }
+                    }
+                }
+            });
+        }
+
+        // run
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // verify
+        assertEquals(1000, emails.size());
+    }
+
+    @Test
+    public void testValueFormats() throws Exception {
+        // prepare
+        SeededRandomData randomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+
+        // run & verify
+        for (int i = 0; i < 100; i++) {
+            assertTrue(randomData.next(RandomDataGenerator.ZIP_CODE).matches("\\d{5}"));
+            assertTrue(randomData.next(RandomDataGenerator.PHONE).matches("\\(\\d{3}\\) \\d{3}-\\d{4}"));
+            assertTrue(randomData.next(RandomDataGenerator.EMAIL).matches("[a-z_.0-9]+@example\\.(com|net|org)"));
+            assertEquals(1, randomData.next(RandomDataGenerator.WORD).split(" ").length);
+            assertEquals(2, randomData.next(RandomDataGenerator.NAME).split(" ").length);
+        }
+        assertNull(randomData.next("device_model"));
+    }
+
+    @Test
+    public void testLocalizedKeysShouldUseListsOfTheirLanguage() throws Exception {
+        // prepare
+        SeededRandomData randomData = new SeededRandomData(SEED, 0, RandomDataGenerator.VARIABLE_KEYS, corpus);
+        int german = RandomDataCorpus.getLanguage("de");
+        List<String> germanCities = new ArrayList<>();
+        for (int i = 0; i < corpus.size(german, RandomDataCorpus.CITIES); i++) {
+            germanCities.add(corpus.get(german, RandomDataCorpus.CITIES, i));
+        }
+
+        // run & verify
+        for (int i = 0; i < 100; i++) {
+            assertTrue(germanCities.contains(randomData.next(RandomDataGenerator.getLocalizedKey(RandomDataGenerator.CITY, "de"))));
+            assertTrue(randomData.next(RandomDataGenerator.getLocalizedKey(RandomDataGenerator.ZIP_CODE, "de")).matches("\\d{5}"));
+            assertTrue(randomData.next(RandomDataGenerator.getLocalizedKey(RandomDataGenerator.PHONE, "de")).matches("(0|\\+49 )[1-9][\\d ]+"));
+            assertTrue(randomData.next(RandomDataGenerator.getLocalizedKey(RandomDataGenerator.EMAIL, "de")).matches("[a-z_.0-9]+@example\\.(com|net|org)"));
+        }
+        // Words are not localized
+        assertNull(randomData.next(RandomDataGenerator.getLocalizedKey(RandomDataGenerator.WORD, "de")));
+        assertEquals("juergen.mueller", SeededRandomData.toAscii("j\u00fcrgen.m\u00fcller"));
+    }
+}
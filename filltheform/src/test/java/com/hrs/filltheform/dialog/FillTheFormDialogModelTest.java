@@ -25,9 +25,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
@@ -36,6 +36,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.spy;
 
@@ -121,11 +122,6 @@ public class FillTheFormDialogModelTest {
                         return null;
                 }
             }
-
-            @Override
-            public void clearConfigurationVariables() {
-                // Do nothing
-            }
         };
     }
 
@@ -141,9 +137,10 @@ public class FillTheFormDialogModelTest {
         List<ConfigurationItem> selectedConfigurationItems = new ArrayList<>();
         selectedConfigurationItems.add(new ConfigurationItem("last_name", "other_profile", "Mustermann"));
         selectedConfigurationItems.add(new ConfigurationItem("last_name", "myprofile", "Jukic"));
-        ConfigurationItem configurationItem = new ConfigurationItem("last_name", "myprofile", "I have &device_model;\nfrom &device_manufacturer;");
-        configurationItem.setLabel("My Device");
-        selectedConfigurationItems.add(configurationItem);
+        selectedConfigurationItems.add(new ConfigurationItem.Builder("last_name", "myprofile")
+                .setRawValue("I have &device_model;\nfrom &device_manufacturer;")
+                .setLabel("My Device")
+                .build());
         return selectedConfigurationItems;
     }
 
@@ -159,7 +156,6 @@ public class FillTheFormDialogModelTest {
         assertTrue(model.isDialogVisible());
         assertEquals(selectedConfigurationItems, model.getSortedConfigurationItems());
         assertEquals(3, model.getItemsCount());
-        verify(helper, times(1)).clearConfigurationVariables();
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_INITIAL_POSITION);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DATA_SET_SCROLL_POSITION);
@@ -190,7 +186,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertTrue(model.isDialogVisible());
         assertEquals(selectedConfigurationItems.get(0).getRawValue(), model.getSelectedConfigItemValue());
-        verify(helper, times(2)).clearConfigurationVariables();
         verify(actionCallbacks, times(2)).setText(anyString());
         verify(propertyChangedListener, times(4)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DATA_SET);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_INITIAL_POSITION);
@@ -223,7 +218,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertTrue(model.isDialogVisible());
         assertEquals("Max", model.getSelectedConfigItemValue());
-        verify(helper, times(3)).clearConfigurationVariables();
         verify(actionCallbacks, times(4)).setText(anyString());
         verify(propertyChangedListener, times(7)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DATA_SET);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_INITIAL_POSITION);
@@ -257,7 +251,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertTrue(model.isDialogVisible());
         assertEquals("Max", model.getSelectedConfigItemValue());
-        verify(helper, times(4)).clearConfigurationVariables();
         verify(actionCallbacks, times(5)).setText(anyString());
         verify(propertyChangedListener, times(9)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DATA_SET);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_INITIAL_POSITION);
@@ -289,7 +282,6 @@ public class FillTheFormDialogModelTest {
         assertTrue(model.isDialogVisible());
         assertEquals(selectedConfigurationItems, model.getSortedConfigurationItems());
         assertEquals(3, model.getItemsCount());
-        verify(helper, times(1)).clearConfigurationVariables();
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_INITIAL_POSITION);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DATA_SET_SCROLL_POSITION);
@@ -321,7 +313,6 @@ public class FillTheFormDialogModelTest {
         assertTrue(model.isDialogVisible());
         assertEquals(selectedConfigurationItems, model.getSortedConfigurationItems());
         assertEquals(3, model.getItemsCount());
-        verify(helper, times(1)).clearConfigurationVariables();
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_INITIAL_POSITION);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DATA_SET_SCROLL_POSITION);
@@ -438,7 +429,10 @@ public class FillTheFormDialogModelTest {
     public void testOnRemoveItemButtonClicked() throws Exception {
         // prepare
         List<ConfigurationItem> selectedConfigurationItemsForFirstName = createSelectedConfigurationItemsForFirstName();
-        selectedConfigurationItemsForFirstName.get(2).rememberLastEntryForId("last_name");
+        selectedConfigurationItemsForFirstName.set(2, new ConfigurationItem.Builder("first_name", "myprofile")
+                .setRawValue("Peter")
+                .rememberLastEntryForId("last_name")
+                .build());
         model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItemsForFirstName);
         model.onConfigurationItemClicked(2);
         List<ConfigurationItem> selectedConfigurationItemsForLastName = createSelectedConfigurationItemsForLastName();
@@ -538,12 +532,13 @@ public class FillTheFormDialogModelTest {
         // prepare
         List<ConfigurationItem> selectedConfigurationItems = new ArrayList<>();
         selectedConfigurationItems.add(new ConfigurationItem("first_name", "myprofile", "random_first_name"));
-        selectedConfigurationItems.add(new ConfigurationItem("first_name", "myprofile", "Peter"));
-        selectedConfigurationItems.get(1).setLastEntryItem(true);
+        LastEntryStore lastEntries = Whitebox.getInternalState(model, "lastEntries");
+        lastEntries.put(new LastEntry("first_name", new ConfigurationItem("first_name", "myprofile", "Peter"), "Peter"));
 
         // run
         model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
-        int viewType = model.getSortedConfigItemType(1);
+        model.onConfigurationItemClicked(1);
+        int viewType = model.getSortedConfigItemType(0);
 
         // verify
         assertEquals(FillTheFormDialogModel.VIEW_TYPE_NORMAL_ITEM, viewType & FillTheFormDialogModel.VIEW_TYPE_NORMAL_ITEM);
@@ -570,8 +565,8 @@ public class FillTheFormDialogModelTest {
         // prepare
         List<ConfigurationItem> selectedConfigurationItems = new ArrayList<>();
         selectedConfigurationItems.add(new ConfigurationItem("first_name", "myprofile", "random_first_name"));
-        selectedConfigurationItems.add(new ConfigurationItem("first_name", "myprofile", "Peter"));
-        selectedConfigurationItems.get(0).setLastEntryItem(true);
+        LastEntryStore lastEntries = Whitebox.getInternalState(model, "lastEntries");
+        lastEntries.put(new LastEntry("first_name", new ConfigurationItem("first_name", "myprofile", "Peter"), "Peter"));
 
         // run
         model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
@@ -734,7 +729,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertFalse(model.isDialogVisible());
         assertFalse(model.isDialogExpanded());
-        verify(helper, times(0)).clearConfigurationVariables();
         verify(propertyChangedListener, times(0)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(0)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON_FAST_MODE);
         verify(propertyChangedListener, times(0)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_VISIBILITY);
@@ -749,7 +743,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertFalse(model.isDialogVisible());
         assertFalse(model.isDialogExpanded());
-        verify(helper, times(0)).clearConfigurationVariables();
         verify(propertyChangedListener, times(0)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(0)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON_FAST_MODE);
         verify(propertyChangedListener, times(0)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_VISIBILITY);
@@ -770,7 +763,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertTrue(model.isDialogVisible());
         assertFalse(model.isDialogExpanded());
-        verify(helper, times(1)).clearConfigurationVariables();
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON_FAST_MODE);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_VISIBILITY);
@@ -788,7 +780,6 @@ public class FillTheFormDialogModelTest {
         // verify
         assertTrue(model.isDialogVisible());
         assertFalse(model.isDialogExpanded());
-        verify(helper, times(1)).clearConfigurationVariables();
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_EXPAND_ICON_FAST_MODE);
         verify(propertyChangedListener, times(1)).onPropertyChanged(FillTheFormDialogModel.PROPERTY_DIALOG_VISIBILITY);
@@ -1203,27 +1194,25 @@ public class FillTheFormDialogModelTest {
     @Test
     public void testInit() throws Exception {
         // prepare
-        Map<String, ConfigurationItem> lastEntries = new HashMap<>();
-        lastEntries.put("test_key", new ConfigurationItem("test_id", "test_profile"));
-        Whitebox.setInternalState(model, "lastEntries", lastEntries);
-        Whitebox.setInternalState(model, "selectedConfigItem", new ConfigurationItem("selected_test_id", "selected_test_profile"));
+        LastEntryStore lastEntries = Whitebox.getInternalState(model, "lastEntries");
+        lastEntries.put(new LastEntry("test_key", new ConfigurationItem("test_id", "test_profile"), "test_value"));
+        ConfigurationItem selectedConfigItem = new ConfigurationItem("selected_test_id", "selected_test_profile");
+        Whitebox.setInternalState(model, "selectedConfigItem", selectedConfigItem);
 
         // run
         model.init("config_var_pattern");
 
         // verify
         assertEquals("config_var_pattern", Whitebox.getInternalState(model, "configurationVariablePattern"));
-        assertEquals(new ConfigurationItem("selected_test_id", "selected_test_profile"), Whitebox.getInternalState(model, "selectedConfigItem"));
-        lastEntries = Whitebox.getInternalState(model, "lastEntries");
+        assertEquals(selectedConfigItem, Whitebox.getInternalState(model, "selectedConfigItem"));
         assertEquals(1, lastEntries.size());
     }
 
     @Test
     public void testClearData() throws Exception {
         // prepare
-        Map<String, ConfigurationItem> lastEntries = new HashMap<>();
-        lastEntries.put("test_key", new ConfigurationItem("test_id", "test_profile"));
-        Whitebox.setInternalState(model, "lastEntries", lastEntries);
+        LastEntryStore lastEntries = Whitebox.getInternalState(model, "lastEntries");
+        lastEntries.put(new LastEntry("test_key", new ConfigurationItem("test_id", "test_profile"), "test_value"));
         Whitebox.setInternalState(model, "selectedConfigItem", new ConfigurationItem("selected_test_id", "selected_test_profile"));
 
         // run
@@ -1231,7 +1220,200 @@ public class FillTheFormDialogModelTest {
 
         // verify
         assertEquals(null, Whitebox.getInternalState(model, "selectedConfigItem"));
-        lastEntries = Whitebox.getInternalState(model, "lastEntries");
         assertEquals(0, lastEntries.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testOnConfigurationReloadedShouldKeepStateForExistingIdsAndProfiles() throws Exception {
+        // prepare
+        List<String> profiles = new ArrayList<>();
+        profiles.add("myprofile");
+        profiles.add("other_profile");
+        model.setProfiles(profiles);
+        Whitebox.setInternalState(model, "selectedProfileIndex", 1);
+        LastEntryStore lastEntries = Whitebox.getInternalState(model, "lastEntries");
+        lastEntries.put(new LastEntry("first_name", new ConfigurationItem("first_name", "myprofile"), "Ivan"));
+        lastEntries.put(new LastEntry("removed_id", new ConfigurationItem("removed_id", "myprofile"), "Ivan"));
+        ConfigurationItem selectedConfigItem = new ConfigurationItem("first_name", "other_profile", "Max");
+        Whitebox.setInternalState(model, "selectedConfigItem", selectedConfigItem);
+        List<String> reloadedProfiles = new ArrayList<>();
+        reloadedProfiles.add("new_profile");
+        reloadedProfiles.add("myprofile");
+        reloadedProfiles.add("other_profile");
+        Set<String> reloadedIds = new HashSet<>();
+        reloadedIds.add("first_name");
+
+        // run
+        model.onConfigurationReloaded(reloadedProfiles, reloadedIds);
+
+        // verify
+        int selectedProfileIndex = Whitebox.getInternalState(model, "selectedProfileIndex");
+        assertEquals(2, selectedProfileIndex);
+        assertEquals(selectedConfigItem, Whitebox.getInternalState(model, "selectedConfigItem"));
+        assertEquals(1, lastEntries.size());
+        assertEquals(1, lastEntries.get("first_name").size());
+    }
+
+    @Test
+    public void testOnConfigurationReloadedShouldResetStateForRemovedProfile() throws Exception {
+        // prepare
+        List<String> profiles = new ArrayList<>();
+        profiles.add("myprofile");
+        profiles.add("other_profile");
+        model.setProfiles(profiles);
+        Whitebox.setInternalState(model, "selectedProfileIndex", 1);
+        Whitebox.setInternalState(model, "selectedConfigItem", new ConfigurationItem("first_name", "other_profile", "Max"));
+        List<String> reloadedProfiles = new ArrayList<>();
+        reloadedProfiles.add("myprofile");
+        Set<String> reloadedIds = new HashSet<>();
+        reloadedIds.add("first_name");
+
+        // run
+        model.onConfigurationReloaded(reloadedProfiles, reloadedIds);
+
+        // verify
+        int selectedProfileIndex = Whitebox.getInternalState(model, "selectedProfileIndex");
+        assertEquals(0, selectedProfileIndex);
+        assertEquals(null, Whitebox.getInternalState(model, "selectedConfigItem"));
+    }
+
+    @Test
+    public void testOnConfigurationReloadedShouldResetSelectedItemForRemovedId() throws Exception {
+        // prepare
+        List<String> profiles = new ArrayList<>();
+        profiles.add("myprofile");
+        model.setProfiles(profiles);
+        Whitebox.setInternalState(model, "selectedConfigItem", new ConfigurationItem("first_name", "myprofile", "Ivan"));
+        Set<String> reloadedIds = new HashSet<>();
+        reloadedIds.add("last_name");
+
+        // run
+        model.onConfigurationReloaded(profiles, reloadedIds);
+
+        // verify
+        assertEquals(null, Whitebox.getInternalState(model, "selectedConfigItem"));
+    }
+
+    @Test
+    public void testSelectProfileByNameShouldPutProfileOnTop() throws Exception {
+        // prepare
+        List<String> profiles = new ArrayList<>();
+        profiles.add("myprofile");
+        profiles.add("other_profile");
+        model.setProfiles(profiles);
+
+        // run
+        int profileIndex = model.selectProfile("other_profile");
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, createSelectedConfigurationItemsForFirstName());
+
+        // verify
+        assertEquals(1, profileIndex);
+        assertEquals("Max", model.getConfigurationItem(0).getValue());
+        verify(actionCallbacks, times(1)).setText("Max");
+    }
+
+    @Test
+    public void testSelectProfileByIndexShouldSelectItemFromCurrentList() throws Exception {
+        // prepare
+        List<ConfigurationItem> selectedConfigurationItems = createSelectedConfigurationItemsForFirstName();
+        selectedConfigurationItems.add(new ConfigurationItem("view_id", "generic_profile", "Generic data"));
+        List<String> profiles = new ArrayList<>();
+        profiles.add("myprofile");
+        profiles.add("other_profile");
+        profiles.add("generic_profile");
+        model.setProfiles(profiles);
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
+
+        // run
+        String profile = model.selectProfile(2);
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_CLICKED, selectedConfigurationItems);
+
+        // verify
+        assertEquals("generic_profile", profile);
+        assertEquals("Generic data", model.getConfigurationItem(0).getValue());
+    }
+
+    @Test
+    public void testSelectProfileShouldIgnoreUnknownProfiles() throws Exception {
+        // prepare
+        List<String> profiles = new ArrayList<>();
+        profiles.add("myprofile");
+        model.setProfiles(profiles);
+
+        // run & verify
+        assertEquals(-1, model.selectProfile("unknown_profile"));
+        assertEquals(null, model.selectProfile(1));
+        assertEquals(null, model.selectProfile(-1));
+        assertEquals(null, Whitebox.getInternalState(model, "requestedProfile"));
+    }
+
+    @Test
+    public void testFillAllShouldUseProfileOfSelectedItem() throws Exception {
+        // prepare
+        List<ConfigurationItem> selectedConfigurationItems = createSelectedConfigurationItemsForFirstName();
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
+
+        // run
+        model.onFillAllButtonClicked();
+
+        // verify
+        verify(actionCallbacks, times(1)).fillAll("myprofile");
+    }
+
+    @Test
+    public void testFillAllShouldBeIgnoredWhenDialogIsHidden() throws Exception {
+        // run
+        model.onFillAllButtonClicked();
+
+        // verify
+        verify(actionCallbacks, times(0)).fillAll(anyString());
+    }
+
+    @Test
+    public void testAutoAdvanceShouldBeRequestedAfterFillInFastMode() throws Exception {
+        // prepare
+        List<ConfigurationItem> selectedConfigurationItems = createSelectedConfigurationItemsForFirstName();
+        model.setFastModeEnabled(true);
+        model.setAutoAdvanceEnabled(true);
+        when(actionCallbacks.setText(anyString())).thenReturn(true);
+
+        // run
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_FOCUSED, selectedConfigurationItems);
+
+        // verify
+        verify(actionCallbacks, times(2)).setText(anyString());
+        verify(actionCallbacks, times(2)).advanceToNextField();
+        verify(actionCallbacks, times(1)).saveAutoAdvanceState(true);
+    }
+
+    @Test
+    public void testAutoAdvanceShouldNotBeRequestedWhenTextWasNotSet() throws Exception {
+        // prepare
+        List<ConfigurationItem> selectedConfigurationItems = createSelectedConfigurationItemsForFirstName();
+        model.setFastModeEnabled(true);
+        model.setAutoAdvanceEnabled(true);
+        when(actionCallbacks.setText(anyString())).thenReturn(false);
+
+        // run
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
+
+        // verify
+        verify(actionCallbacks, times(1)).setText(anyString());
+        verify(actionCallbacks, times(0)).advanceToNextField();
+    }
+
+    @Test
+    public void testAutoAdvanceShouldNotBeRequestedInNormalMode() throws Exception {
+        // prepare
+        List<ConfigurationItem> selectedConfigurationItems = createSelectedConfigurationItemsForFirstName();
+        model.setAutoAdvanceEnabled(true);
+
+        // run
+        model.showDialog(FillTheFormDialogModel.EVENT_TYPE_VIEW_LONG_CLICKED, selectedConfigurationItems);
+
+        // verify
+        verify(actionCallbacks, times(1)).setText(anyString());
+        verify(actionCallbacks, times(0)).advanceToNextField();
+    }
+}
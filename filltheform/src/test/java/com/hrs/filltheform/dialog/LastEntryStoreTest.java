@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.dialog;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for LastEntryStore.
+ */
+public class LastEntryStoreTest {
+
+    @Test
+    public void testPutShouldEvictLeastRecentlyUsedId() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore(2, 1, null);
+        store.put(createLastEntry("first_name", "Ivan"));
+        store.put(createLastEntry("last_name", "Ivanovic"));
+        // Use the first name, the last name becomes the least recently used id
+        store.get("first_name");
+
+        // run
+        store.put(createLastEntry("email", "ivan@example.com"));
+
+        // verify
+        assertEquals(2, store.size());
+        assertEquals(1, store.get("first_name").size());
+        assertEquals(0, store.get("last_name").size());
+        assertEquals(1, store.get("email").size());
+    }
+
+    @Test
+    public void testPutShouldKeepNewestEntriesOfId() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore(10, 2, null);
+
+        // run
+        store.put(createLastEntry("first_name", "Ivan"));
+        store.put(createLastEntry("first_name", "Max"));
+        store.put(createLastEntry("first_name", "John"));
+
+        // verify
+        List<LastEntry> entries = store.get("first_name");
+        assertEquals(2, entries.size());
+        assertEquals("John", entries.get(0).getValue());
+        assertEquals("Max", entries.get(1).getValue());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore(10, 3, null);
+        LastEntry ivan = createLastEntry("first_name", "Ivan");
+        LastEntry max = createLastEntry("first_name", "Max");
+        LastEntry john = createLastEntry("first_name", "John");
+        store.put(ivan);
+        store.put(max);
+        store.put(john);
+
+        // run
+        boolean removed = store.remove(max);
+
+        // verify
+        assertTrue(removed);
+        List<LastEntry> entries = store.get("first_name");
+        assertEquals(2, entries.size());
+        assertSame(john, entries.get(0));
+        assertSame(ivan, entries.get(1));
+        assertFalse(store.remove(max));
+    }
+
+    @Test
+    public void testRemoveLastEntryOfIdShouldRemoveId() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore();
+        LastEntry ivan = createLastEntry("first_name", "Ivan");
+        store.put(ivan);
+
+        // run
+        store.remove(ivan);
+
+        // verify
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testRetainIds() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore();
+        store.put(createLastEntry("first_name", "Ivan"));
+        store.put(createLastEntry("removed_id", "Ivan"));
+        Set<String> ids = new HashSet<>();
+        ids.add("first_name");
+
+        // run
+        store.retainIds(ids);
+
+        // verify
+        assertEquals(1, store.size());
+        assertEquals(1, store.get("first_name").size());
+    }
+
+    @Test
+    public void testRestoredEntriesShouldBeBelowNewEntries() throws Exception {
+        // prepare
+        TestPersistence persistence = new TestPersistence();
+        LastEntryStore store = new LastEntryStore(10, 2, persistence);
+        store.put(createLastEntry("first_name", "Max"));
+        List<LastEntry> restoredEntries = new ArrayList<>();
+        restoredEntries.add(createLastEntry("first_name", "Ivan"));
+        restoredEntries.add(createLastEntry("last_name", "Ivanovic"));
+
+        // run
+        assertFalse(store.isRestored());
+        store.onRestored(restoredEntries);
+
+        // verify
+        assertEquals(1, persistence.reads);
+        assertTrue(store.isRestored());
+        List<LastEntry> firstNames = store.get("first_name");
+        assertEquals(2, firstNames.size());
+        assertEquals("Max", firstNames.get(0).getValue());
+        assertEquals("Ivan", firstNames.get(1).getValue());
+        assertEquals(1, store.get("last_name").size());
+    }
+
+    @Test
+    public void testRestoredEntriesShouldRespectRetainedIds() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore(10, 1, new TestPersistence());
+        store.restore();
+        Set<String> ids = new HashSet<>();
+        ids.add("first_name");
+        store.retainIds(ids);
+        List<LastEntry> restoredEntries = new ArrayList<>();
+        restoredEntries.add(createLastEntry("first_name", "Ivan"));
+        restoredEntries.add(createLastEntry("removed_id", "Ivan"));
+
+        // run
+        store.onRestored(restoredEntries);
+
+        // verify
+        assertEquals(1, store.size());
+        assertEquals(1, store.get("first_name").size());
+    }
+
+    @Test
+    public void testClearShouldIgnoreLaterRestore() throws Exception {
+        // prepare
+        TestPersistence persistence = new TestPersistence();
+        LastEntryStore store = new LastEntryStore(10, 1, persistence);
+        store.restore();
+
+        // run
+        store.clear();
+        store.onRestored(Collections.singletonList(createLastEntry("first_name", "Ivan")));
+
+        // verify
+        assertEquals(0, store.size());
+        assertEquals(1, persistence.changes);
+    }
+
+    @Test
+    public void testGetEntriesShouldStartWithLeastRecentlyUsedId() throws Exception {
+        // prepare
+        LastEntryStore store = new LastEntryStore(10, 2, null);
+        store.put(createLastEntry("first_name", "Ivan"));
+        store.put(createLastEntry("last_name", "Ivanovic"));
+        store.put(createLastEntry("first_name", "Max"));
+
+        // run
+        List<LastEntry> entries = store.getEntries();
+
+        // verify
+        assertEquals(3, entries.size());
+        assertEquals("Ivanovic", entries.get(0).getValue());
+        assertEquals("Ivan", entries.get(1).getValue());
+        assertEquals("Max", entries.get(2).getValue());
+    }
+
+    private static LastEntry createLastEntry(String id, String value) {
+        return new LastEntry(id, new ConfigurationItem(id, "myprofile", value), value);
+    }
+
+    private static class TestPersistence implements LastEntryStore.Persistence {
+        int reads;
+        int changes;
+
+        @Override
+        public void read(LastEntryStore store) {
+            reads++;
+        }
+
+        @Override
+        public void onChanged(LastEntryStore store) {
+            changes++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+import com.hrs.filltheform.common.ConfigurationPatch;
+import com.hrs.filltheformcompanion.FillTheFormCompanion;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for ConfigurationData.
+ */
+public class ConfigurationDataTest {
+
+    private ConfigurationData data;
+
+    @Before
+    public void setUp() throws Exception {
+        data = new ConfigurationData.Builder(FillTheFormCompanion.SOURCE_ASSETS, "config.xml")
+                .addPackageName("com.hrs.filltheformsample")
+                .addConfigurationItem(new ConfigurationItem("first_name", "myprofile", "Ivan"))
+                .addConfigurationItem(new ConfigurationItem("first_name", "other_profile", "Max"))
+                .addConfigurationItem(new ConfigurationItem("last_name", "myprofile", "Ivanovic"))
+                .addConfigurationItem(new ConfigurationItem("email", null, "test@hrs.com"))
+                .setGeneration(1)
+                .build();
+    }
+
+    @Test
+    public void testApplyPatchShouldShareUnchangedData() throws Exception {
+        // prepare
+        ConfigurationPatch patch = new ConfigurationPatch(1);
+        patch.replaceItems(new ConfigurationItem("first_name", "myprofile", "Marko"));
+
+        // run
+        ConfigurationData patchedData = data.applyPatch(patch, 2);
+
+        // verify
+        assertEquals(2, patchedData.getGeneration());
+        assertSame(data.getPackageNames(), patchedData.getPackageNames());
+        assertSame(data.getProfiles(), patchedData.getProfiles());
+        assertSame(data.getIdGroups().get("last_name"), patchedData.getIdGroups().get("last_name"));
+        List<ConfigurationItem> firstNames = patchedData.getIdGroups().get("first_name");
+        assertEquals(2, firstNames.size());
+        assertEquals("Max", firstNames.get(0).getRawValue());
+        assertEquals("Marko", firstNames.get(1).getRawValue());
+        // Original data is not changed
+        assertEquals("Ivan", data.getIdGroups().get("first_name").get(0).getRawValue());
+        assertNull(patchedData.getFingerprint());
+    }
+
+    @Test
+    public void testApplyPatchShouldUpdatePackagesAndProfiles() throws Exception {
+        // prepare
+        ConfigurationPatch patch = new ConfigurationPatch(1);
+        patch.addPackage("com.hrs.other");
+        patch.removePackage("com.hrs.filltheformsample");
+        patch.removeProfile("myprofile");
+        patch.addItem(new ConfigurationItem("phone", "new_profile", "123"));
+
+        // run
+        ConfigurationData patchedData = data.applyPatch(patch, 2);
+
+        // verify
+        assertEquals(1, patchedData.getPackageNames().size());
+        assertEquals("com.hrs.other", patchedData.getPackageNames().get(0));
+        assertEquals(2, patchedData.getProfiles().size());
+        assertEquals("other_profile", patchedData.getProfiles().get(0));
+        assertEquals("new_profile", patchedData.getProfiles().get(1));
+        assertFalse(patchedData.getIds().contains("last_name"));
+        assertEquals(1, patchedData.getIdGroups().get("first_name").size());
+        assertTrue(patchedData.getIds().contains("phone"));
+        assertSame(data.getIdGroups().get("email"), patchedData.getIdGroups().get("email"));
+    }
+
+    @Test
+    public void testApplyPatchShouldRemoveItemsWithoutProfile() throws Exception {
+        // prepare
+        ConfigurationPatch patch = new ConfigurationPatch(1);
+        patch.removeItems("email", null);
+        patch.removeItems("last_name", null);
+
+        // run
+        ConfigurationData patchedData = data.applyPatch(patch, 2);
+
+        // verify
+        assertFalse(patchedData.getIds().contains("email"));
+        assertSame(data.getIdGroups().get("last_name"), patchedData.getIdGroups().get("last_name"));
+        assertSame(data.getProfiles(), patchedData.getProfiles());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for ConfigurationState.
+ */
+public class ConfigurationStateTest {
+
+    private ConfigurationState.Observer observer;
+
+    @Before
+    public void setUp() throws Exception {
+        observer = mock(ConfigurationState.Observer.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ConfigurationState.unsubscribe(observer);
+        ConfigurationState.clear();
+    }
+
+    @Test
+    public void testSubscribeShouldNotNotifyIfNothingIsPublished() throws Exception {
+        // run
+        ConfigurationState.subscribe(observer);
+
+        // verify
+        verify(observer, never()).onLoadedPackageNamesChanged(anyListOf(String.class));
+    }
+
+    @Test
+    public void testSubscribeShouldDeliverCurrentState() throws Exception {
+        // prepare
+        List<String> packageNames = Collections.singletonList("com.hrs.filltheformsample");
+        ConfigurationState.publish(packageNames);
+
+        // run
+        ConfigurationState.subscribe(observer);
+
+        // verify
+        verify(observer, times(1)).onLoadedPackageNamesChanged(packageNames);
+    }
+
+    @Test
+    public void testPublishShouldNotifySubscribedObservers() throws Exception {
+        // prepare
+        ConfigurationState.subscribe(observer);
+
+        // run
+        ConfigurationState.publish(null);
+
+        // verify
+        verify(observer, times(1)).onLoadedPackageNamesChanged(null);
+    }
+
+    @Test
+    public void testPublishShouldNotNotifyUnsubscribedObservers() throws Exception {
+        // prepare
+        ConfigurationState.subscribe(observer);
+        ConfigurationState.unsubscribe(observer);
+
+        // run
+        ConfigurationState.publish(Collections.singletonList("com.hrs.filltheformsample"));
+
+        // verify
+        verify(observer, never()).onLoadedPackageNamesChanged(anyListOf(String.class));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheform.service;
+
+import android.support.v4.util.SimpleArrayMap;
+
+import com.hrs.filltheform.common.ConfigurationItem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for ConfigurationTable.
+ */
+public class ConfigurationTableTest {
+
+    @Test
+    public void testIdGroupsShouldKeepTheOrderOfItems() throws Exception {
+        // prepare
+        ConfigurationTable.Builder builder = new ConfigurationTable.Builder();
+        builder.add(new ConfigurationItem("first_name", "myprofile", "Ivan"));
+        builder.add(new ConfigurationItem("last_name", "myprofile", "Ivanovic"));
+        builder.add(new ConfigurationItem("first_name", "other_profile", "Max"));
+        builder.add(new ConfigurationItem("first_name", null, "John"));
+
+        // run
+        SimpleArrayMap<String, List<ConfigurationItem>> idGroups = builder.build().getIdGroups();
+
+        // verify
+        assertEquals(2, idGroups.size());
+        List<ConfigurationItem> firstNames = idGroups.get("first_name");
+        assertEquals(3, firstNames.size());
+        assertEquals("Ivan", firstNames.get(0).getRawValue());
+        assertEquals("myprofile", firstNames.get(0).getProfile());
+        assertEquals("Max", firstNames.get(1).getRawValue());
+        assertEquals("other_profile", firstNames.get(1).getProfile());
+        assertEquals("John", firstNames.get(2).getRawValue());
+        assertNull(firstNames.get(2).getProfile());
+        assertEquals("Ivanovic", idGroups.get("last_name").get(0).getRawValue());
+    }
+
+    @Test
+    public void testItemsShouldBeRestoredWithLabelAndRememberedIds() throws Exception {
+        // prepare
+        ConfigurationItem item = new ConfigurationItem.Builder("city", "myprofile")
+                .setRawValue("Berlin")
+                .setLabel("Capital")
+                .rememberLastEntryForId("country")
+                .rememberLastEntryForId("zip")
+                .build();
+        ConfigurationTable.Builder builder = new ConfigurationTable.Builder();
+        builder.add(new ConfigurationItem("country", "myprofile", "Germany"));
+        builder.add(item);
+        builder.add(new ConfigurationItem("city", "myprofile", "Cologne"));
+
+        // run
+        List<ConfigurationItem> cities = builder.build().getIdGroups().get("city");
+
+        // verify
+        assertEquals("Berlin", cities.get(0).getRawValue());
+        assertEquals("Capital", cities.get(0).getRawLabel());
+        assertEquals(Arrays.asList("country", "zip"), cities.get(0).getRememberLastEntryForIds());
+        assertTrue(cities.get(1).getRememberLastEntryForIds().isEmpty());
+        assertNull(cities.get(1).getRawLabel());
+    }
+
+    @Test
+    public void testEqualStringsShouldBeStoredOnce() throws Exception {
+        // prepare
+        ConfigurationTable.Builder builder = new ConfigurationTable.Builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(new ConfigurationItem(new String("first_name"), new String("myprofile"), new String("Ivan")));
+        }
+
+        // run
+        ConfigurationTable table = builder.build();
+
+        // verify
+        assertEquals(100, table.getNumberOfRows());
+        assertEquals(3, table.getNumberOfStrings());
+        List<ConfigurationItem> firstNames = table.getIdGroups().get("first_name");
+        assertSame(firstNames.get(0).getProfile(), firstNames.get(99).getProfile());
+    }
+
+    @Test
+    public void testItemOfARowShouldBeCreatedOnce() throws Exception {
+        // prepare
+        ConfigurationTable.Builder builder = new ConfigurationTable.Builder();
+        builder.add(new ConfigurationItem("first_name", "myprofile", "Ivan"));
+        builder.add(new ConfigurationItem("first_name", "myprofile", "Ivan"));
+
+        // run
+        List<ConfigurationItem> firstNames = builder.build().getIdGroups().get("first_name");
+
+        // verify
+        assertSame(firstNames.get(0), firstNames.get(0));
+        assertFalse(firstNames.get(0).equals(firstNames.get(1)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIdGroupsShouldBeReadOnly() throws Exception {
+        // prepare
+        ConfigurationTable.Builder builder = new ConfigurationTable.Builder();
+        builder.add(new ConfigurationItem("first_name", "myprofile", "Ivan"));
+
+        // run
+        builder.build().getIdGroups().get("first_name").add(new ConfigurationItem("first_name", "myprofile", "Max"));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheformcompanion;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.test.espresso.IdlingResource;
+
+/**
+ * CompanionIdlingResource is the base of the idling resources used when combining FillTheFormCompanion with Espresso.
+ * FillTheFormCompanion notifies it as soon as a reply from FillTheForm service arrives, so Espresso does not have to wait for the next poll.
+ * If FillTheForm service does not reply within the companion idling timeout, the wait fails with FillTheFormCompanionException.
+ * The timeout is checked by a delayed check posted when the wait starts, which wakes up Espresso, so the failure is reported
+ * by the next isIdleNow call without waiting for the Espresso idling timeout.
+ * The duration of every wait is recorded by the companion.
+ */
+public abstract class CompanionIdlingResource implements IdlingResource {
+
+    private static final long NOT_WAITING = -1;
+
+    protected final FillTheFormCompanion companion;
+    private volatile ResourceCallback resourceCallback;
+    private long waitStartTime = NOT_WAITING;
+    // Failure of a wait which has timed out, it is thrown by the next isIdleNow call
+    private IllegalStateException timeoutFailure;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable timeoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            checkTimeout();
+        }
+    };
+
+    protected CompanionIdlingResource(FillTheFormCompanion companion) {
+        this.companion = companion;
+        companion.addIdlingResource(this);
+    }
+
+    /**
+     * @return True if FillTheFormCompanion is not waiting for a reply from FillTheForm service.
+     */
+    protected abstract boolean isIdle();
+
+    @Override
+    public String getName() {
+        return getClass().getName();
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        boolean idle = onCompanionStateChanged();
+        if (!idle) {
+            checkTimeout();
+        }
+        throwTimeoutFailure();
+        return idle;
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback resourceCallback) {
+        this.resourceCallback = resourceCallback;
+    }
+
+    /**
+     * Called by FillTheFormCompanion when a request is sent or a reply is received.
+     *
+     * @return True if the resource is idle.
+     */
+    synchronized boolean onCompanionStateChanged() {
+        boolean idle = isIdle();
+        if (!idle && waitStartTime == NOT_WAITING) {
+            waitStartTime = SystemClock.elapsedRealtime();
+            long timeoutMillis = companion.getIdlingResourceTimeoutMillis();
+            if (timeoutMillis > 0) {
+                handler.postDelayed(timeoutCheck, timeoutMillis);
+            }
+        } else if (idle && waitStartTime != NOT_WAITING) {
+            handler.removeCallbacks(timeoutCheck);
+            companion.recordIdlingResourceWait(getName(), SystemClock.elapsedRealtime() - waitStartTime);
+            waitStartTime = NOT_WAITING;
+            notifyTransitionToIdle();
+        }
+        return idle;
+    }
+
+    private synchronized void checkTimeout() {
+        long timeoutMillis = companion.getIdlingResourceTimeoutMillis();
+        if (waitStartTime == NOT_WAITING || timeoutMillis <= 0) {
+            return;
+        }
+        long waitMillis = SystemClock.elapsedRealtime() - waitStartTime;
+        handler.removeCallbacks(timeoutCheck);
+        if (waitMillis < timeoutMillis) {
+            // Checked early by isIdleNow or the timeout has been changed during the wait
+            handler.postDelayed(timeoutCheck, timeoutMillis - waitMillis);
+            return;
+        }
+        companion.recordIdlingResourceWait(getName(), waitMillis);
+        waitStartTime = NOT_WAITING;
+        String message = getName() + " timed out after " + waitMillis + " ms waiting for FillTheForm service";
+        // IdlingResource can not throw checked exceptions
+        timeoutFailure = new IllegalStateException(message, new FillTheFormCompanionException(message));
+        // Espresso calls isIdleNow again, which reports the failure
+        notifyTransitionToIdle();
+    }
+
+    private synchronized void throwTimeoutFailure() {
+        IllegalStateException failure = timeoutFailure;
+        if (failure != null) {
+            timeoutFailure = null;
+            throw failure;
+        }
+    }
+
+    private void notifyTransitionToIdle() {
+        ResourceCallback callback = resourceCallback;
+        if (callback != null) {
+            callback.onTransitionToIdle();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheformcompanion;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+/**
+ * ConfigurationContract describes the read-only content provider of FillTheForm which exposes the loaded configuration.
+ * It can be queried from tests or with adb, e.g. {@code adb shell content query --uri content://com.hrs.filltheform.configuration/profiles}.
+ * The resolved values of the items are only returned to apps holding {@link #READ_PERMISSION}, other callers get the raw values.
+ * The companion library requests the permission in its manifest. Binding the companion service requires it too.
+ */
+public final class ConfigurationContract {
+
+    public static final String AUTHORITY = "com.hrs.filltheform.configuration";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY);
+    public static final String READ_PERMISSION = "com.hrs.filltheform.permission.READ_CONFIGURATION";
+
+    private ConfigurationContract() {
+    }
+
+    /**
+     * Single row describing the loaded configuration.
+     */
+    public static final class Status {
+        public static final String PATH = "status";
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ConfigurationContract.CONTENT_URI, PATH);
+
+        public static final String GENERATION = "generation";
+        public static final String CONFIGURATION_SOURCE = "configuration_source";
+        public static final String CONFIGURATION_FILE_PATH = "configuration_file_path";
+        public static final String NUMBER_OF_PACKAGES = "number_of_packages";
+        public static final String NUMBER_OF_PROFILES = "number_of_profiles";
+        public static final String NUMBER_OF_IDS = "number_of_ids";
+
+        private Status() {
+        }
+    }
+
+    public static final class Packages implements BaseColumns {
+        public static final String PATH = "packages";
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ConfigurationContract.CONTENT_URI, PATH);
+
+        public static final String PACKAGE_NAME = "package_name";
+
+        private Packages() {
+        }
+    }
+
+    public static final class Profiles implements BaseColumns {
+        public static final String PATH = "profiles";
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ConfigurationContract.CONTENT_URI, PATH);
+
+        public static final String PROFILE = "profile";
+
+        private Profiles() {
+        }
+    }
+
+    public static final class Ids implements BaseColumns {
+        public static final String PATH = "ids";
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ConfigurationContract.CONTENT_URI, PATH);
+
+        public static final String VIEW_ID = "view_id";
+        public static final String NUMBER_OF_ITEMS = "number_of_items";
+
+        private Ids() {
+        }
+    }
+
+    /**
+     * Configuration items with their resolved values, see {@link #READ_PERMISSION}. Items of one view id can be queried with {@link #buildItemsUri(String)}
+     * and items of one profile with the {@link #QUERY_PARAMETER_PROFILE} query parameter.
+     */
+    public static final class Items implements BaseColumns {
+        public static final String PATH = "items";
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ConfigurationContract.CONTENT_URI, PATH);
+        public static final String QUERY_PARAMETER_PROFILE = "profile";
+
+        public static final String VIEW_ID = "view_id";
+        public static final String PROFILE = "profile";
+        public static final String RAW_VALUE = "raw_value";
+        public static final String VALUE = "value";
+        public static final String LABEL = "label";
+
+        private Items() {
+        }
+
+        public static Uri buildItemsUri(String viewId) {
+            return Uri.withAppendedPath(CONTENT_URI, Uri.encode(viewId));
+        }
+
+        public static Uri buildItemsUri(String viewId, String profile) {
+            return buildItemsUri(viewId).buildUpon().appendQueryParameter(QUERY_PARAMETER_PROFILE, profile).build();
+        }
+    }
+}
@@ -15,36 +15,18 @@
  */
 package com.hrs.filltheformcompanion;
 
-import android.support.test.espresso.IdlingResource;
-
 /**
  * ConfigurationStatusIdlingResource is used when combining FillTheFormCompanion with Espresso.
  * The goal is to wait until FillTheForm service is configured.
  */
-public class ConfigurationStatusIdlingResource implements IdlingResource {
-    private final FillTheFormCompanion companion;
-    private ResourceCallback resourceCallback;
+public class ConfigurationStatusIdlingResource extends CompanionIdlingResource {
 
     public ConfigurationStatusIdlingResource(FillTheFormCompanion companion) {
-        this.companion = companion;
-    }
-
-    @Override
-    public String getName() {
-        return ConfigurationStatusIdlingResource.class.getName();
-    }
-
-    @Override
-    public boolean isIdleNow() {
-        boolean idle = companion.isConfigurationFinished();
-        if (idle) {
-            resourceCallback.onTransitionToIdle();
-        }
-        return idle;
+        super(companion);
     }
 
     @Override
-    public void registerIdleTransitionCallback(ResourceCallback resourceCallback) {
-        this.resourceCallback = resourceCallback;
+    protected boolean isIdle() {
+        return companion.isConfigurationFinished();
     }
 }
@@ -16,15 +16,37 @@
 package com.hrs.filltheformcompanion;
 
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.ServiceConnection;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.os.SystemClock;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FillTheFormCompanion is used to communicate with FillTheForm service.
@@ -33,7 +55,7 @@ import java.lang.annotation.RetentionPolicy;
 public class FillTheFormCompanion {
 
     @Retention(RetentionPolicy.SOURCE)
-    @IntDef({FillTheFormCompanion.SOURCE_ASSETS, FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE, FillTheFormCompanion.SOURCE_OTHER})
+    @IntDef({FillTheFormCompanion.SOURCE_ASSETS, FillTheFormCompanion.SOURCE_EXTERNAL_STORAGE, FillTheFormCompanion.SOURCE_OTHER, FillTheFormCompanion.SOURCE_STREAM})
     public @interface ConfigurationSource {
     }
 
@@ -41,6 +63,22 @@ public class FillTheFormCompanion {
     public static final int SOURCE_ASSETS = 0;
     public static final int SOURCE_EXTERNAL_STORAGE = 1;
     public static final int SOURCE_OTHER = 2;
+    // Configuration content streamed by the companion, it can not be read again
+    public static final int SOURCE_STREAM = 3;
+
+    // Configuration generation is not known, for example when no configuration is loaded
+    public static final int CONFIGURATION_GENERATION_UNKNOWN = -1;
+    // Profile index is not known, for example when the requested profile does not exist
+    public static final int PROFILE_INDEX_UNKNOWN = -1;
+
+    // Bound service
+    public static final String FILL_THE_FORM_PACKAGE_NAME = "com.hrs.filltheform";
+    public static final String ACTION_BIND_COMPANION_SERVICE = "com.hrs.filltheform.BIND_COMPANION_SERVICE";
+    public static final int SERVICE_INTERFACE_VERSION = 2;
+    // Id of a bound request, CompanionService puts it into the request and every reply echoes it
+    public static final String INTENT_EXTRA_REQUEST_ID = "com.hrs.filltheform.INTENT_EXTRA_REQUEST_ID";
+    // Broadcast requests have no id, their replies are broadcast
+    public static final int REQUEST_ID_NONE = 0;
 
     /* INTENT CONSTANTS */
     // Configuration
@@ -48,50 +86,350 @@ public class FillTheFormCompanion {
     public static final String INTENT_EXTRA_CONFIGURATION_FILE_PATH = "com.hrs.filltheform.INTENT_EXTRA_CONFIGURATION_FILE_PATH";
     public static final String INTENT_EXTRA_CONFIGURATION_FILE_SOURCE = "com.hrs.filltheform.INTENT_EXTRA_CONFIGURATION_FILE_SOURCE";
     public static final String INTENT_EXTRA_SHOW_CONFIGURATION_SUCCESS_MESSAGE = "com.hrs.filltheform.INTENT_EXTRA_SHOW_CONFIGURATION_SUCCESS_MESSAGE";
+    public static final String INTENT_EXTRA_FORCE_RELOAD = "com.hrs.filltheform.INTENT_EXTRA_FORCE_RELOAD";
+    public static final String INTENT_EXTRA_WATCH_CONFIGURATION_FILE = "com.hrs.filltheform.INTENT_EXTRA_WATCH_CONFIGURATION_FILE";
+    // Only supported by the bound service, the content is a ParcelFileDescriptor
+    public static final String INTENT_READ_CONFIGURATION_CONTENT = "com.hrs.filltheform.INTENT_READ_CONFIGURATION_CONTENT";
+    public static final String INTENT_EXTRA_CONFIGURATION_CONTENT = "com.hrs.filltheform.INTENT_EXTRA_CONFIGURATION_CONTENT";
     public static final String INTENT_REPORT_CONFIGURATION_FINISHED = "com.hrs.filltheform.INTENT_REPORT_CONFIGURATION_FINISHED";
+    public static final String INTENT_EXTRA_CONFIGURATION_GENERATION = "com.hrs.filltheform.INTENT_EXTRA_CONFIGURATION_GENERATION";
+    public static final String INTENT_EXTRA_RESTORE_IN_PROGRESS = "com.hrs.filltheform.INTENT_EXTRA_RESTORE_IN_PROGRESS";
+    // Configuration patches
+    public static final String INTENT_APPLY_CONFIGURATION_PATCH = "com.hrs.filltheform.INTENT_APPLY_CONFIGURATION_PATCH";
+    public static final String INTENT_EXTRA_CONFIGURATION_PATCH = "com.hrs.filltheform.INTENT_EXTRA_CONFIGURATION_PATCH";
+    public static final String INTENT_REPORT_CONFIGURATION_PATCH_RESULT = "com.hrs.filltheform.INTENT_REPORT_CONFIGURATION_PATCH_RESULT";
+    public static final String INTENT_EXTRA_FULL_RELOAD_REQUIRED = "com.hrs.filltheform.INTENT_EXTRA_FULL_RELOAD_REQUIRED";
     // Visibility
     public static final String INTENT_HIDE_FILL_THE_FORM_DIALOG = "com.hrs.filltheform.INTENT_HIDE_FILL_THE_FORM_DIALOG";
     // Mode management
     public static final String INTENT_SET_FAST_MODE = "com.hrs.filltheform.INTENT_SET_FAST_MODE";
     public static final String INTENT_SET_NORMAL_MODE = "com.hrs.filltheform.INTENT_SET_NORMAL_MODE";
+    public static final String INTENT_ENABLE_AUTO_ADVANCE = "com.hrs.filltheform.INTENT_ENABLE_AUTO_ADVANCE";
+    public static final String INTENT_DISABLE_AUTO_ADVANCE = "com.hrs.filltheform.INTENT_DISABLE_AUTO_ADVANCE";
     // Profiles information
     public static final String INTENT_REQUEST_NUMBER_OF_PROFILES = "com.hrs.filltheform.INTENT_REQUEST_NUMBER_OF_PROFILES";
     public static final String INTENT_SEND_NUMBER_OF_PROFILES = "com.hrs.filltheform.INTENT_SEND_NUMBER_OF_PROFILES";
     public static final String INTENT_EXTRA_NUMBER_OF_PROFILES = "com.hrs.filltheform.INTENT_EXTRA_NUMBER_OF_PROFILES";
     // Profiles navigation
     public static final String INTENT_SELECT_NEXT_PROFILE = "com.hrs.filltheform.INTENT_SELECT_NEXT_PROFILE";
+    public static final String INTENT_SELECT_PROFILE = "com.hrs.filltheform.INTENT_SELECT_PROFILE";
+    public static final String INTENT_REPORT_SELECTED_PROFILE = "com.hrs.filltheform.INTENT_REPORT_SELECTED_PROFILE";
+    public static final String INTENT_EXTRA_PROFILE_NAME = "com.hrs.filltheform.INTENT_EXTRA_PROFILE_NAME";
+    public static final String INTENT_EXTRA_PROFILE_INDEX = "com.hrs.filltheform.INTENT_EXTRA_PROFILE_INDEX";
     // Dialog data
     public static final String INTENT_CLEAR_DIALOG_DATA = "com.hrs.filltheform.INTENT_CLEAR_DIALOG_DATA";
+    // Random data
+    public static final String INTENT_SET_RANDOM_SEED = "com.hrs.filltheform.INTENT_SET_RANDOM_SEED";
+    public static final String INTENT_EXTRA_RANDOM_SEED = "com.hrs.filltheform.INTENT_EXTRA_RANDOM_SEED";
+    public static final String INTENT_EXTRA_RANDOM_SHARD = "com.hrs.filltheform.INTENT_EXTRA_RANDOM_SHARD";
+    // Filling without dialog
+    public static final String INTENT_FILL_VIEW = "com.hrs.filltheform.INTENT_FILL_VIEW";
+    public static final String INTENT_EXTRA_VIEW_ID = "com.hrs.filltheform.INTENT_EXTRA_VIEW_ID";
+    public static final String INTENT_EXTRA_ENTRY = "com.hrs.filltheform.INTENT_EXTRA_ENTRY";
+    public static final String INTENT_REPORT_FILL_VIEW_RESULT = "com.hrs.filltheform.INTENT_REPORT_FILL_VIEW_RESULT";
+    public static final String INTENT_EXTRA_FILL_SUCCESSFUL = "com.hrs.filltheform.INTENT_EXTRA_FILL_SUCCESSFUL";
+    public static final String INTENT_EXTRA_ERROR_MESSAGE = "com.hrs.filltheform.INTENT_EXTRA_ERROR_MESSAGE";
+    public static final String INTENT_EXTRA_FILL_LATENCY_MICROS = "com.hrs.filltheform.INTENT_EXTRA_FILL_LATENCY_MICROS";
+    public static final String INTENT_FILL_ALL = "com.hrs.filltheform.INTENT_FILL_ALL";
+    public static final String INTENT_REPORT_FILL_ALL_RESULT = "com.hrs.filltheform.INTENT_REPORT_FILL_ALL_RESULT";
+    public static final String INTENT_EXTRA_FILLED_FIELDS = "com.hrs.filltheform.INTENT_EXTRA_FILLED_FIELDS";
 
     private static final int NO_PROFILES = 0;
+    private static final String TAG = FillTheFormCompanion.class.getSimpleName();
+    public static final long DEFAULT_IDLING_RESOURCE_TIMEOUT_MILLIS = 30000;
 
     private final Context context;
     private int numberOfProfiles = NO_PROFILES;
     private boolean configurationFinished;
+    private int configurationGeneration = CONFIGURATION_GENERATION_UNKNOWN;
+    private boolean fullReloadRequired;
+    private boolean profileSelectionFinished = true;
+    private String selectedProfileName;
+    private int selectedProfileIndex = PROFILE_INDEX_UNKNOWN;
+    private boolean fillViewFinished = true;
+    private boolean fillViewSuccessful;
+    private String fillViewErrorMessage;
+    private long fillViewLatencyMicros;
+    private long fillViewStartTime;
+    private long fillViewRoundTripMillis;
+    private int filledFieldsCount;
+
+    private final List<CompanionIdlingResource> idlingResources = new CopyOnWriteArrayList<>();
+    private volatile long idlingResourceTimeoutMillis = DEFAULT_IDLING_RESOURCE_TIMEOUT_MILLIS;
+    private final Map<String, List<Long>> idlingResourceWaits = new LinkedHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile IFillTheFormService fillTheFormService;
+    private boolean fillTheFormServiceBindRequested;
+    // Id of the last bound request for every reply action, older replies are ignored
+    private final Map<String, Integer> lastRequestIds = Collections.synchronizedMap(new HashMap<String, Integer>());
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            IFillTheFormService boundService = IFillTheFormService.Stub.asInterface(service);
+            try {
+                if (boundService.getInterfaceVersion() == SERVICE_INTERFACE_VERSION) {
+                    fillTheFormService = boundService;
+                }
+            } catch (RemoteException e) {
+                fillTheFormService = null;
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            fillTheFormService = null;
+        }
+    };
+
+    private final IFillTheFormCallback serviceCallback = new IFillTheFormCallback.Stub() {
+        @Override
+        public void onRequestCompleted(final int requestId, final String action, final Bundle result) {
+            // Replies are handled on the main thread, the same as the reply broadcasts
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Integer lastRequestId = lastRequestIds.get(action);
+                    if (lastRequestId == null || lastRequestId == requestId) {
+                        Intent reply = new Intent(action);
+                        reply.putExtras(result);
+                        handleReply(reply);
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Request sent to the bound FillTheForm service.
+     */
+    private interface ServiceRequest {
+        void send(IFillTheFormService service, int requestId) throws RemoteException;
+    }
+
+    /**
+     * Writes the configuration content to the write side of the pipe. FillTheForm service sees the end of the content when the pipe is closed.
+     */
+    private static class ConfigurationContentWriter implements Runnable {
+        private final InputStream content;
+        private final ParcelFileDescriptor writeSide;
+
+        ConfigurationContentWriter(InputStream content, ParcelFileDescriptor writeSide) {
+            this.content = content;
+            this.writeSide = writeSide;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = content; OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(writeSide)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                // FillTheForm service reports the truncated content as a failed configuration
+                Log.e(TAG, "Writing the configuration content failed: " + e.toString());
+            }
+        }
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor fileDescriptor) {
+        try {
+            fileDescriptor.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
 
     private BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equalsIgnoreCase(INTENT_SEND_NUMBER_OF_PROFILES)) {
-                numberOfProfiles = intent.getExtras().getInt(INTENT_EXTRA_NUMBER_OF_PROFILES, NO_PROFILES);
-            } else if (intent.getAction().equalsIgnoreCase(INTENT_REPORT_CONFIGURATION_FINISHED)) {
-                setConfigurationFinished(true);
-                requestNumberOfProfiles();
-            }
+            handleReply(intent);
         }
     };
 
+    private void handleReply(Intent intent) {
+        if (intent.getAction().equalsIgnoreCase(INTENT_SEND_NUMBER_OF_PROFILES)) {
+            numberOfProfiles = intent.getExtras().getInt(INTENT_EXTRA_NUMBER_OF_PROFILES, NO_PROFILES);
+            configurationGeneration = intent.getIntExtra(INTENT_EXTRA_CONFIGURATION_GENERATION, configurationGeneration);
+        } else if (intent.getAction().equalsIgnoreCase(INTENT_REPORT_CONFIGURATION_FINISHED)) {
+            configurationGeneration = intent.getIntExtra(INTENT_EXTRA_CONFIGURATION_GENERATION, CONFIGURATION_GENERATION_UNKNOWN);
+            setConfigurationFinished(true);
+            requestNumberOfProfiles();
+        } else if (intent.getAction().equalsIgnoreCase(INTENT_REPORT_SELECTED_PROFILE)) {
+            selectedProfileName = intent.getStringExtra(INTENT_EXTRA_PROFILE_NAME);
+            selectedProfileIndex = intent.getIntExtra(INTENT_EXTRA_PROFILE_INDEX, PROFILE_INDEX_UNKNOWN);
+            profileSelectionFinished = true;
+        } else if (intent.getAction().equalsIgnoreCase(INTENT_REPORT_FILL_VIEW_RESULT)
+                || intent.getAction().equalsIgnoreCase(INTENT_REPORT_FILL_ALL_RESULT)) {
+            filledFieldsCount = intent.getIntExtra(INTENT_EXTRA_FILLED_FIELDS, 0);
+            fillViewSuccessful = intent.getBooleanExtra(INTENT_EXTRA_FILL_SUCCESSFUL, false);
+            fillViewErrorMessage = intent.getStringExtra(INTENT_EXTRA_ERROR_MESSAGE);
+            fillViewLatencyMicros = intent.getLongExtra(INTENT_EXTRA_FILL_LATENCY_MICROS, 0);
+            fillViewRoundTripMillis = SystemClock.elapsedRealtime() - fillViewStartTime;
+            fillViewFinished = true;
+        } else if (intent.getAction().equalsIgnoreCase(INTENT_REPORT_CONFIGURATION_PATCH_RESULT)) {
+            configurationGeneration = intent.getIntExtra(INTENT_EXTRA_CONFIGURATION_GENERATION, CONFIGURATION_GENERATION_UNKNOWN);
+            fullReloadRequired = intent.getBooleanExtra(INTENT_EXTRA_FULL_RELOAD_REQUIRED, false);
+            setConfigurationFinished(true);
+            requestNumberOfProfiles();
+        }
+        notifyIdlingResources();
+    }
+
     public FillTheFormCompanion(Context context) {
         this.context = context;
         // Register receiver
         IntentFilter intentFilter = new IntentFilter();
         intentFilter.addAction(INTENT_SEND_NUMBER_OF_PROFILES);
         intentFilter.addAction(INTENT_REPORT_CONFIGURATION_FINISHED);
+        intentFilter.addAction(INTENT_REPORT_CONFIGURATION_PATCH_RESULT);
+        intentFilter.addAction(INTENT_REPORT_SELECTED_PROFILE);
+        intentFilter.addAction(INTENT_REPORT_FILL_VIEW_RESULT);
+        intentFilter.addAction(INTENT_REPORT_FILL_ALL_RESULT);
         context.registerReceiver(broadcastReceiver, intentFilter);
         // Ask FillTheForm for number of profiles
         requestNumberOfProfiles();
     }
 
+    // Idling resources
+
+    void addIdlingResource(CompanionIdlingResource idlingResource) {
+        idlingResources.add(idlingResource);
+    }
+
+    private void notifyIdlingResources() {
+        for (CompanionIdlingResource idlingResource : idlingResources) {
+            idlingResource.onCompanionStateChanged();
+        }
+    }
+
+    /**
+     * @param timeoutMillis Maximum time the idling resources wait for a reply from FillTheForm service, 0 to wait without a timeout.
+     */
+    public void setIdlingResourceTimeoutMillis(long timeoutMillis) {
+        this.idlingResourceTimeoutMillis = timeoutMillis;
+    }
+
+    public long getIdlingResourceTimeoutMillis() {
+        return idlingResourceTimeoutMillis;
+    }
+
+    void recordIdlingResourceWait(String idlingResourceName, long waitMillis) {
+        synchronized (idlingResourceWaits) {
+            List<Long> waits = idlingResourceWaits.get(idlingResourceName);
+            if (waits == null) {
+                waits = new ArrayList<>();
+                idlingResourceWaits.put(idlingResourceName, waits);
+            }
+            waits.add(waitMillis);
+        }
+    }
+
+    /**
+     * @return Durations in milliseconds of all waits of every idling resource registered with this companion.
+     */
+    public Map<String, List<Long>> getIdlingResourceWaits() {
+        synchronized (idlingResourceWaits) {
+            Map<String, List<Long>> waits = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Long>> entry : idlingResourceWaits.entrySet()) {
+                waits.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            return waits;
+        }
+    }
+
+    /**
+     * Logs the number, the total and the maximum duration of the waits of every idling resource, for example at the end of a test suite.
+     *
+     * @return Logged summary.
+     */
+    public String dumpIdlingResourceWaits() {
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, List<Long>> entry : getIdlingResourceWaits().entrySet()) {
+            long total = 0;
+            long max = 0;
+            for (long waitMillis : entry.getValue()) {
+                total += waitMillis;
+                max = Math.max(max, waitMillis);
+            }
+            summary.append(entry.getKey()).append(": ").append(entry.getValue().size()).append(" waits, total ")
+                    .append(total).append(" ms, max ").append(max).append(" ms\n");
+        }
+        Log.i(TAG, summary.toString());
+        return summary.toString();
+    }
+
+    // Bound service
+
+    /**
+     * Binds FillTheForm service. While it is bound, requests are sent through the binder and their replies are received with callbacks
+     * instead of broadcasts. Until the connection is established or if FillTheForm app does not support the interface version,
+     * the broadcasts are used as a fallback.
+     *
+     * @return True if FillTheForm service is being bound.
+     */
+    public boolean bindFillTheFormService() {
+        Intent intent = new Intent(ACTION_BIND_COMPANION_SERVICE);
+        intent.setPackage(FILL_THE_FORM_PACKAGE_NAME);
+        fillTheFormServiceBindRequested = context.bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
+        return fillTheFormServiceBindRequested;
+    }
+
+    public void unbindFillTheFormService() {
+        fillTheFormService = null;
+        if (fillTheFormServiceBindRequested) {
+            fillTheFormServiceBindRequested = false;
+            context.unbindService(serviceConnection);
+        }
+    }
+
+    public boolean isFillTheFormServiceBound() {
+        return fillTheFormService != null;
+    }
+
+    /**
+     * Reads the status synchronously from the bound FillTheForm service.
+     *
+     * @return Bundle with INTENT_EXTRA_CONFIGURATION_GENERATION, INTENT_EXTRA_NUMBER_OF_PROFILES, INTENT_EXTRA_CONFIGURATION_FILE_PATH
+     * and INTENT_EXTRA_RESTORE_IN_PROGRESS or null if the service is not bound.
+     */
+    public Bundle getFillTheFormServiceStatus() {
+        IFillTheFormService service = fillTheFormService;
+        if (service == null) {
+            return null;
+        }
+        try {
+            return service.getStatus();
+        } catch (RemoteException e) {
+            fillTheFormService = null;
+            return null;
+        }
+    }
+
+    /**
+     * @return True if the request has been sent to the bound service, false if the broadcast should be used.
+     */
+    private boolean sendServiceRequest(String replyAction, ServiceRequest request) {
+        IFillTheFormService service = fillTheFormService;
+        if (service == null) {
+            return false;
+        }
+        // The id is recorded before sending, the reply can arrive before the call returns
+        int requestId = nextRequestId.incrementAndGet();
+        lastRequestIds.put(replyAction, requestId);
+        try {
+            request.send(service, requestId);
+            return true;
+        } catch (RemoteException e) {
+            lastRequestIds.remove(replyAction);
+            fillTheFormService = null;
+            return false;
+        }
+    }
+
     // Configuration
 
     /**
@@ -102,15 +440,161 @@ public class FillTheFormCompanion {
      * @param configurationFilePath Configuration file path.
      */
     public void configureFillTheForm(@ConfigurationSource int source, @NonNull String configurationFilePath) {
+        configureFillTheForm(source, configurationFilePath, false);
+    }
+
+    /**
+     * FillTheForm service skips parsing if the configuration file content has not changed since it was loaded.
+     * If you are using this method - be sure to use ConfigurationStatusIdlingResource in your Espresso test.
+     *
+     * @param source                Configuration file source.
+     * @param configurationFilePath Configuration file path.
+     * @param forceReload           True if the configuration file should be parsed even if its content has not changed.
+     */
+    public void configureFillTheForm(@ConfigurationSource int source, @NonNull String configurationFilePath, boolean forceReload) {
+        configureFillTheForm(source, configurationFilePath, forceReload, false);
+    }
+
+    /**
+     * FillTheForm service can watch a configuration file on the external storage and reload it automatically when it is changed.
+     * If you are using this method - be sure to use ConfigurationStatusIdlingResource in your Espresso test.
+     *
+     * @param source                Configuration file source.
+     * @param configurationFilePath Configuration file path.
+     * @param forceReload           True if the configuration file should be parsed even if its content has not changed.
+     * @param watchForChanges       True if the configuration file should be reloaded when it is changed. Only used with SOURCE_EXTERNAL_STORAGE.
+     */
+    public void configureFillTheForm(@ConfigurationSource final int source, @NonNull final String configurationFilePath, final boolean forceReload, final boolean watchForChanges) {
         setConfigurationFinished(false);
+        fullReloadRequired = false;
         numberOfProfiles = NO_PROFILES;
+        notifyIdlingResources();
+        if (sendServiceRequest(INTENT_REPORT_CONFIGURATION_FINISHED, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.configure(requestId, source, configurationFilePath, forceReload, watchForChanges, serviceCallback);
+            }
+        })) {
+            return;
+        }
         // Request new configuration from FillTheForm service
         Bundle extras = new Bundle();
         extras.putInt(INTENT_EXTRA_CONFIGURATION_FILE_SOURCE, source);
         extras.putString(INTENT_EXTRA_CONFIGURATION_FILE_PATH, configurationFilePath);
+        extras.putBoolean(INTENT_EXTRA_FORCE_RELOAD, forceReload);
+        extras.putBoolean(INTENT_EXTRA_WATCH_CONFIGURATION_FILE, watchForChanges);
         sendBroadcast(INTENT_READ_CONFIGURATION_FILE, extras);
     }
 
+    /**
+     * Streams the configuration content to FillTheForm service without pushing a configuration file to the device.
+     * The content is written to a pipe on a background thread and parsed by FillTheForm service while it arrives.
+     * Only supported by the bound service, see {@link #bindFillTheFormService()}.
+     * If you are using this method - be sure to use ConfigurationStatusIdlingResource in your Espresso test.
+     *
+     * @param name    Name of the configuration, reported instead of the configuration file path.
+     * @param content Configuration content.
+     * @throws FillTheFormCompanionException if FillTheForm service is not bound or the pipe can not be created.
+     */
+    public void configureFillTheForm(@NonNull String name, @NonNull byte[] content) throws FillTheFormCompanionException {
+        configureFillTheForm(name, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * @param name    Name of the configuration, reported instead of the configuration file path.
+     * @param content Configuration content. It is closed when it has been written to FillTheForm service.
+     * @throws FillTheFormCompanionException if FillTheForm service is not bound or the pipe can not be created.
+     * @see #configureFillTheForm(String, byte[])
+     */
+    public void configureFillTheForm(@NonNull final String name, @NonNull final InputStream content) throws FillTheFormCompanionException {
+        if (fillTheFormService == null) {
+            throw new FillTheFormCompanionException("Streaming the configuration requires the bound FillTheForm service");
+        }
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FillTheFormCompanionException(e.toString());
+        }
+        setConfigurationFinished(false);
+        fullReloadRequired = false;
+        numberOfProfiles = NO_PROFILES;
+        notifyIdlingResources();
+        new Thread(new ConfigurationContentWriter(content, pipe[1]), "FillTheFormConfigurationWriter").start();
+        boolean sent = sendServiceRequest(INTENT_REPORT_CONFIGURATION_FINISHED, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.configureWithContent(requestId, pipe[0], name, serviceCallback);
+            }
+        });
+        // The read side has been duplicated into FillTheForm process
+        closeQuietly(pipe[0]);
+        if (!sent) {
+            throw new FillTheFormCompanionException("FillTheForm service has been disconnected");
+        }
+    }
+
+    /**
+     * Loads the configuration from a content URI served by the test application. FillTheForm service is granted the read permission
+     * for the URI, so this works with broadcasts as well as with the bound service.
+     * If you are using this method - be sure to use ConfigurationStatusIdlingResource in your Espresso test.
+     *
+     * @param contentUri Content URI of the configuration.
+     */
+    public void configureFillTheForm(@NonNull Uri contentUri) {
+        context.grantUriPermission(FILL_THE_FORM_PACKAGE_NAME, contentUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        configureFillTheForm(SOURCE_OTHER, contentUri.toString(), true);
+    }
+
+    /**
+     * Applies the patch to the configuration which is currently loaded in FillTheForm service.
+     * The patch is rejected if the configuration has been changed since its generation was reported. In this case {@link #isFullReloadRequired()}
+     * returns true and the configuration file needs to be loaded again with {@link #configureFillTheForm(int, String)}.
+     * If you are using this method - be sure to use ConfigurationStatusIdlingResource in your Espresso test.
+     *
+     * @param patch Configuration patch, see XmlConfigurationPatchReader in FillTheForm for the format.
+     */
+    public void applyConfigurationPatch(@NonNull String patch) {
+        applyConfigurationPatch(configurationGeneration, patch);
+    }
+
+    /**
+     * @param baseGeneration Generation of the configuration which the patch is based on.
+     * @param patch          Configuration patch.
+     * @see #applyConfigurationPatch(String)
+     */
+    public void applyConfigurationPatch(final int baseGeneration, @NonNull final String patch) {
+        setConfigurationFinished(false);
+        fullReloadRequired = false;
+        notifyIdlingResources();
+        if (sendServiceRequest(INTENT_REPORT_CONFIGURATION_PATCH_RESULT, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.applyConfigurationPatch(requestId, baseGeneration, patch, serviceCallback);
+            }
+        })) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        extras.putInt(INTENT_EXTRA_CONFIGURATION_GENERATION, baseGeneration);
+        extras.putString(INTENT_EXTRA_CONFIGURATION_PATCH, patch);
+        sendBroadcast(INTENT_APPLY_CONFIGURATION_PATCH, extras);
+    }
+
+    /**
+     * @return Generation of the configuration loaded in FillTheForm service or CONFIGURATION_GENERATION_UNKNOWN.
+     */
+    public int getConfigurationGeneration() {
+        return configurationGeneration;
+    }
+
+    /**
+     * @return True if the last configuration patch has been rejected because the configuration has been changed in the meantime.
+     */
+    public boolean isFullReloadRequired() {
+        return fullReloadRequired;
+    }
+
     public boolean isConfigurationFinished() {
         return configurationFinished;
     }
@@ -138,6 +622,17 @@ public class FillTheFormCompanion {
 
     }
 
+    /**
+     * In fast mode, every fill is followed by filling the next configured field of the window until the form is exhausted or the user interrupts.
+     */
+    public void enableAutoAdvance() {
+        sendBroadcast(INTENT_ENABLE_AUTO_ADVANCE);
+    }
+
+    public void disableAutoAdvance() {
+        sendBroadcast(INTENT_DISABLE_AUTO_ADVANCE);
+    }
+
     // Profiles information
 
     /**
@@ -157,6 +652,14 @@ public class FillTheFormCompanion {
 
     public void requestNumberOfProfiles() {
         // Ask FillTheForm for number of profiles
+        if (sendServiceRequest(INTENT_SEND_NUMBER_OF_PROFILES, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.requestNumberOfProfiles(requestId, serviceCallback);
+            }
+        })) {
+            return;
+        }
         sendBroadcast(INTENT_REQUEST_NUMBER_OF_PROFILES);
     }
 
@@ -167,12 +670,215 @@ public class FillTheFormCompanion {
 
     }
 
+    /**
+     * Selects the profile by its name without cycling through the other profiles.
+     * The selection needs to be confirmed from FillTheForm service.
+     * If you are using this method - be sure to use ProfileSelectionIdlingResource in your Espresso test.
+     *
+     * @param profileName Name of the profile as defined in the configuration file.
+     */
+    public void selectProfile(@NonNull final String profileName) {
+        profileSelectionFinished = false;
+        notifyIdlingResources();
+        if (sendServiceRequest(INTENT_REPORT_SELECTED_PROFILE, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.selectProfileByName(requestId, profileName, serviceCallback);
+            }
+        })) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        extras.putString(INTENT_EXTRA_PROFILE_NAME, profileName);
+        sendBroadcast(INTENT_SELECT_PROFILE, extras);
+    }
+
+    /**
+     * Selects the profile by its index in the configuration file, starting with 0.
+     * If you are using this method - be sure to use ProfileSelectionIdlingResource in your Espresso test.
+     *
+     * @param profileIndex Index of the profile.
+     */
+    public void selectProfile(final int profileIndex) {
+        profileSelectionFinished = false;
+        notifyIdlingResources();
+        if (sendServiceRequest(INTENT_REPORT_SELECTED_PROFILE, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.selectProfileByIndex(requestId, profileIndex, serviceCallback);
+            }
+        })) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        extras.putInt(INTENT_EXTRA_PROFILE_INDEX, profileIndex);
+        sendBroadcast(INTENT_SELECT_PROFILE, extras);
+    }
+
+    boolean isProfileSelectionFinished() {
+        return profileSelectionFinished;
+    }
+
+    /**
+     * @return Name of the profile selected with the last selectProfile call or null if the profile does not exist.
+     */
+    public String getSelectedProfileName() {
+        return selectedProfileName;
+    }
+
+    /**
+     * @return Index of the profile selected with the last selectProfile call or PROFILE_INDEX_UNKNOWN if the profile does not exist.
+     */
+    public int getSelectedProfileIndex() {
+        return selectedProfileIndex;
+    }
+
     // Dialog data
 
     public void clearDialogData() {
         sendBroadcast(INTENT_CLEAR_DIALOG_DATA);
     }
 
+    // Random data
+
+    /**
+     * Makes the random values reproducible, so a failing test can be replayed with identical inputs.
+     * The random sequences start again on every call, even if the seed has not changed.
+     *
+     * @param seed Seed of the random values.
+     */
+    public void setRandomSeed(long seed) {
+        setRandomSeed(seed, 0);
+    }
+
+    /**
+     * Tests which run in parallel with the same seed should use different shards. The values of different shards do not overlap,
+     * e.g. the generated emails never collide.
+     *
+     * @param seed       Seed of the random values.
+     * @param shardIndex Non-negative index of the shard.
+     */
+    public void setRandomSeed(long seed, int shardIndex) {
+        Bundle extras = new Bundle();
+        extras.putLong(INTENT_EXTRA_RANDOM_SEED, seed);
+        extras.putInt(INTENT_EXTRA_RANDOM_SHARD, shardIndex);
+        sendBroadcast(INTENT_SET_RANDOM_SEED, extras);
+    }
+
+    /**
+     * Random values are not reproducible anymore.
+     */
+    public void clearRandomSeed() {
+        sendBroadcast(INTENT_SET_RANDOM_SEED);
+    }
+
+    // Filling without dialog
+
+    /**
+     * Fills the view in the foreground window with the first configuration item for this id, without showing FillTheForm dialog.
+     * The result needs to be confirmed from FillTheForm service.
+     * If you are using this method - be sure to use FillViewIdlingResource in your Espresso test.
+     *
+     * @param viewId Id of the view as defined in the configuration file.
+     */
+    public void fillView(@NonNull String viewId) {
+        fillView(viewId, null, 0);
+    }
+
+    /**
+     * @param viewId  Id of the view as defined in the configuration file.
+     * @param profile Profile of the configuration item or null for any profile.
+     * @param entry   Index of the configuration item among the items with this id and profile, starting with 0.
+     * @see #fillView(String)
+     */
+    public void fillView(@NonNull final String viewId, final String profile, final int entry) {
+        fillViewFinished = false;
+        fillViewStartTime = SystemClock.elapsedRealtime();
+        notifyIdlingResources();
+        if (sendServiceRequest(INTENT_REPORT_FILL_VIEW_RESULT, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.fillView(requestId, viewId, profile, entry, serviceCallback);
+            }
+        })) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        extras.putString(INTENT_EXTRA_VIEW_ID, viewId);
+        extras.putString(INTENT_EXTRA_PROFILE_NAME, profile);
+        extras.putInt(INTENT_EXTRA_ENTRY, entry);
+        sendBroadcast(INTENT_FILL_VIEW, extras);
+    }
+
+    /**
+     * Fills all views in the foreground window which have a configuration item, without showing FillTheForm dialog.
+     * The result needs to be confirmed from FillTheForm service.
+     * If you are using this method - be sure to use FillViewIdlingResource in your Espresso test.
+     */
+    public void fillAll() {
+        fillAll(null);
+    }
+
+    /**
+     * @param profile Preferred profile of the configuration items or null for the first item of every id.
+     * @see #fillAll()
+     */
+    public void fillAll(final String profile) {
+        fillViewFinished = false;
+        fillViewStartTime = SystemClock.elapsedRealtime();
+        notifyIdlingResources();
+        if (sendServiceRequest(INTENT_REPORT_FILL_ALL_RESULT, new ServiceRequest() {
+            @Override
+            public void send(IFillTheFormService service, int requestId) throws RemoteException {
+                service.fillAll(requestId, profile, serviceCallback);
+            }
+        })) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        extras.putString(INTENT_EXTRA_PROFILE_NAME, profile);
+        sendBroadcast(INTENT_FILL_ALL, extras);
+    }
+
+    boolean isFillViewFinished() {
+        return fillViewFinished;
+    }
+
+    /**
+     * @return True if the view has been filled with the last fillView call.
+     */
+    public boolean isFillViewSuccessful() {
+        return fillViewSuccessful;
+    }
+
+    /**
+     * @return Reason why the last fillView call failed or null if it was successful.
+     */
+    public String getFillViewErrorMessage() {
+        return fillViewErrorMessage;
+    }
+
+    /**
+     * @return Time in microseconds which FillTheForm service needed to fill the view with the last fillView call.
+     */
+    public long getFillViewLatencyMicros() {
+        return fillViewLatencyMicros;
+    }
+
+    /**
+     * @return Time in milliseconds from sending the last fillView request until receiving its result.
+     */
+    public long getFillViewRoundTripMillis() {
+        return fillViewRoundTripMillis;
+    }
+
+    /**
+     * @return Number of views filled with the last fillAll call.
+     */
+    public int getFilledFieldsCount() {
+        return filledFieldsCount;
+    }
+
     // Broadcast actions
 
     private void sendBroadcast(String action) {
@@ -15,36 +15,18 @@
  */
 package com.hrs.filltheformcompanion;
 
-import android.support.test.espresso.IdlingResource;
-
 /**
  * NumberOfProfilesIdlingResource is used when combining FillTheFormCompanion with Espresso.
  * The goal is to wait until the FillTheFormCompanion gets number of profiles from FillTheForm service.
  */
-public class NumberOfProfilesIdlingResource implements IdlingResource {
-    private final FillTheFormCompanion companion;
-    private ResourceCallback resourceCallback;
+public class NumberOfProfilesIdlingResource extends CompanionIdlingResource {
 
     public NumberOfProfilesIdlingResource(FillTheFormCompanion companion) {
-        this.companion = companion;
-    }
-
-    @Override
-    public String getName() {
-        return NumberOfProfilesIdlingResource.class.getName();
-    }
-
-    @Override
-    public boolean isIdleNow() {
-        boolean idle = companion.isNumberOfProfilesUpdated();
-        if (idle) {
-            resourceCallback.onTransitionToIdle();
-        }
-        return idle;
+        super(companion);
     }
 
     @Override
-    public void registerIdleTransitionCallback(ResourceCallback resourceCallback) {
-        this.resourceCallback = resourceCallback;
+    protected boolean isIdle() {
+        return companion.isNumberOfProfilesUpdated();
     }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 HRS GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hrs.filltheformcompanion;
+
+/**
+ * ProfileSelectionIdlingResource is used when combining FillTheFormCompanion with Espresso.
+ * The goal is to wait until FillTheForm service confirms the profile selected with selectProfile.
+ */
+public class ProfileSelectionIdlingResource extends CompanionIdlingResource {
+
+    public ProfileSelectionIdlingResource(FillTheFormCompanion companion) {
+        super(companion);
+    }
+
+    @Override
+    protected boolean isIdle() {
+        return companion.isProfileSelectionFinished();
+    }
+}